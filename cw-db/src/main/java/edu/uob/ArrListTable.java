@@ -3,20 +3,71 @@ package edu.uob;
 import java.util.*;
 
 public class ArrListTable implements TableStructure{
+    //numbers closer than this compare as equal
+    static final double NUMERIC_EPSILON = 0.0001;
+
+    //deleted rows are dropped from the columns once they make up this fraction of the table
+    static final double COMPACT_FRACTION = 0.25;
+
     String tableName;
+
+    //columns are typed, so numbers are held and compared without their text
     List<List<String>> tableData;
+
+    //a view of the id column where idsInColumn is set, so ids are only stored once
+    //tables built from existing columns are given a list of their own
     List<Integer> idValues;
+    boolean idsInColumn;
+
+    //lower case column name to position within tableData
+    Map<String, Integer> columnIndex;
 
     //keeps track of ID values assigned
     int lastAssignedID;
 
+    //secondary indexes - these are rebuilt after rows are removed, as row numbers shift
+    List<AttributeIndex> attributeIndexes;
+    boolean indexesStale;
+
+    //id value to row number, kept up to date by addRow and rebuilt after rows are removed
+    Map<Integer, Integer> idRows;
+    boolean idRowsStale;
+
+    //lookups by id rely on ids being unique, and id ranges on ids increasing down the table
+    boolean idsUnique;
+    boolean idsAscending;
+
+    //false for tables built from existing columns, which need not start with "id"
+    boolean firstColumnIsID;
+
+    //removed rows are only marked as deleted, so row numbers stay the same until compactRows
+    //every pass over the rows skips the deleted ones
+    BitSet deletedRows;
+    int numDeleted;
+
+    //the version of the table read by queries, replaced by writers once their change is complete
+    //columns are chunked lists, so a version only copies the chunks changed after it was taken
+    //versions no longer held by any query are left to the garbage collector
+    volatile ArrListTable publishedSnapshot;
+
     public ArrListTable(String tableName){
         this.tableName = tableName;
         tableData = new ArrayList<List<String>>();
-        idValues = new ArrayList<Integer>();
-        //add "0" to idValues to maintain same length as other cols
-        idValues.add(0);
-        addColumn("id");
+        columnIndex = new HashMap<String, Integer>();
+        TypedColumn idColumn = new TypedColumn("id");
+        tableData.add(idColumn);
+        columnIndex.put("id", 0);
+        idValues = idColumn.asIDValues();
+        idsInColumn = true;
+        attributeIndexes = new ArrayList<AttributeIndex>();
+        indexesStale = false;
+        idRows = new HashMap<Integer, Integer>();
+        idRowsStale = false;
+        idsUnique = idsAscending = true;
+        firstColumnIsID = true;
+        deletedRows = new BitSet();
+        numDeleted = 0;
+        publishedSnapshot = null;
         lastAssignedID = 0;
     }
 
@@ -34,8 +85,7 @@ public class ArrListTable implements TableStructure{
             return false;
 
         //create column and add the column title
-        List<String> newColumn = new ArrayList<String>();
-        newColumn.add(colName);
+        TypedColumn newColumn = new TypedColumn(colName);
 
         //add empty string values as data
         for(int rowCnt = 0; rowCnt < getNumEntries(); rowCnt++){
@@ -43,14 +93,95 @@ public class ArrListTable implements TableStructure{
         }
 
         tableData.add(newColumn);
+        columnIndex.put(colName.toLowerCase(), tableData.size() - 1);
         return true;
     }
 
+    //creates a table from existing columns, which are shared rather than copied
+    //columns may repeat, in which case lookups by name find the first
+    public static ArrListTable fromColumns(String tableName, List<List<String>> columns,
+                                           List<Integer> idValues){
+        ArrListTable newTable = new ArrListTable(tableName);
+        newTable.tableData = new ArrayList<List<String>>(columns);
+        newTable.idValues = idValues;
+        newTable.idsInColumn = false;
+        newTable.rebuildColumnIndex();
+        newTable.idRowsStale = true;
+        newTable.firstColumnIsID = false;
+        return newTable;
+    }
+
+    //the last published version of the table, taking one if none has been published yet
+    public ArrListTable getSnapshot(){
+        ArrListTable snapshot = publishedSnapshot;
+        if(snapshot != null)
+            return snapshot;
+        synchronized(this){
+            if(publishedSnapshot == null)
+                publishedSnapshot = takeSnapshot();
+            return publishedSnapshot;
+        }
+    }
+
+    //called by writers, holding the table, once the table is consistent again
+    public synchronized void publishSnapshot(){
+        publishedSnapshot = takeSnapshot();
+    }
+
+    //the snapshot has the same index definitions, built from its own rows if a query uses them
+    ArrListTable takeSnapshot(){
+        ArrListTable snapshot = new ArrListTable(tableName);
+        snapshot.tableData = new ArrayList<List<String>>(tableData.size());
+        for(List<String> column : tableData){
+            if(column instanceof TypedColumn typedColumn)
+                snapshot.tableData.add(typedColumn.snapshot());
+            else
+                snapshot.tableData.add(ChunkedList.snapshotOf(column));
+        }
+        snapshot.idsInColumn = idsInColumn;
+        if(idsInColumn)
+            snapshot.idValues = ((TypedColumn) snapshot.tableData.get(0)).asIDValues();
+        else
+            snapshot.idValues = ChunkedList.snapshotOf(idValues);
+        snapshot.rebuildColumnIndex();
+        snapshot.lastAssignedID = lastAssignedID;
+        snapshot.firstColumnIsID = firstColumnIsID;
+        snapshot.deletedRows = (BitSet) deletedRows.clone();
+        snapshot.numDeleted = numDeleted;
+        snapshot.idRowsStale = true;
+        for(AttributeIndex index : attributeIndexes)
+            snapshot.attributeIndexes.add(newIndex(index.getColName(), index.getType()));
+        snapshot.indexesStale = !attributeIndexes.isEmpty();
+
+        //snapshots are never changed, so are their own snapshot
+        snapshot.publishedSnapshot = snapshot;
+        return snapshot;
+    }
+
+    //needed whenever columns are removed, as later columns change position
+    void rebuildColumnIndex(){
+        columnIndex.clear();
+        for(int colCnt = 0; colCnt < tableData.size(); colCnt++)
+            columnIndex.putIfAbsent(tableData.get(colCnt).get(0).toLowerCase(), colCnt);
+    }
+
+    //returns -1 if the column does not exist
+    public int getColumnIndex(String colName){
+        Integer colIndex = columnIndex.get(colName.toLowerCase());
+        return colIndex == null ? -1 : colIndex;
+    }
+
     public List<String> getColumn(String colName){
-        for(List<String> column : tableData)
-            if(column.get(0).equalsIgnoreCase(colName))
-                return column;
-        return null;
+        int colIndex = getColumnIndex(colName);
+        return colIndex < 0 ? null : tableData.get(colIndex);
+    }
+
+    public List<String> getColumn(int colIndex){
+        return tableData.get(colIndex);
+    }
+
+    public String getValue(int colIndex, int rowNum){
+        return tableData.get(colIndex).get(rowNum);
     }
 
     //returns true if column successfully removed
@@ -64,16 +195,27 @@ public class ArrListTable implements TableStructure{
         //only remove column if it exists
         if(column != null) {
             tableData.remove(column);
+            rebuildColumnIndex();
+            dropIndexes(colName);
             return true;
         }
         else return false;
     }
 
+    //includes deleted rows which are yet to be compacted
     public int getNumEntries(){
         //minus one to discount the header row
         return idValues.size() - 1;
     }
 
+    public int getNumLiveEntries(){
+        return getNumEntries() - numDeleted;
+    }
+
+    public boolean isRowDeleted(int rowNum){
+        return deletedRows.get(rowNum);
+    }
+
     //includes "id" in number of attributes
     public int getNumAttributes(){
         return tableData.size();
@@ -101,13 +243,15 @@ public class ArrListTable implements TableStructure{
            
             //then copy and add to idValues
             idColumn.add(rowValues[0]);
-            idValues.add(idValue);
+            if(!idsInColumn)
+                idValues.add(idValue);
             //note - no updating of lastAssignedID - must be handled separately
         }else{
             //otherwise must generate id value
             lastAssignedID++;
             idColumn.add(Integer.toString(lastAssignedID));
-            idValues.add(lastAssignedID);
+            if(!idsInColumn)
+                idValues.add(lastAssignedID);
         }
         
         //add the values
@@ -116,10 +260,75 @@ public class ArrListTable implements TableStructure{
         for(int colCnt = 1; colCnt < getNumAttributes(); colCnt++){
             tableData.get(colCnt).add(rowValues[colCnt - (idProvided ? 0 : 1)]);
         }
+
+        if(!idRowsStale)
+            addIDRow(getNumEntries());
+
+        if(!indexesStale)
+            for(AttributeIndex index : attributeIndexes)
+                index.addValue(getColumn(index.getColName()).get(getNumEntries()), getNumEntries());
         
         return true;
     }
     
+    //adds rows without id values as one batch - every row is checked first, so either all are added or none
+    //the ids are given out as one range, and each column is then extended by every row at once
+    public boolean addRows(List<String[]> rows){
+        for(String[] rowValues : rows)
+            if(getNumAttributes() - 1 != rowValues.length)
+                return false;
+
+        int firstRow = getNumEntries() + 1;
+        addIDRange(rows.size());
+        for(int colCnt = 1; colCnt < getNumAttributes(); colCnt++){
+            List<String> column = tableData.get(colCnt);
+            for(String[] rowValues : rows)
+                column.add(rowValues[colCnt - 1]);
+        }
+        indexRowsFrom(firstRow);
+        return true;
+    }
+
+    //adds rows given column by column without id values, e.g. as read by LOAD DATA
+    //each column is extended in one step, rather than a row at a time
+    public boolean addColumnValues(List<List<String>> columnValues, int numRows){
+        if(columnValues.size() != getNumAttributes() - 1)
+            return false;
+        for(List<String> values : columnValues)
+            if(values.size() != numRows)
+                return false;
+
+        int firstRow = getNumEntries() + 1;
+        addIDRange(numRows);
+        for(int colCnt = 1; colCnt < getNumAttributes(); colCnt++)
+            tableData.get(colCnt).addAll(columnValues.get(colCnt - 1));
+        indexRowsFrom(firstRow);
+        return true;
+    }
+
+    //gives out the next ids as one range, adding them to the id column
+    void addIDRange(int numRows){
+        int firstID = lastAssignedID + 1;
+        lastAssignedID += numRows;
+        List<String> idColumn = getColumn("id");
+        for(int idValue = firstID; idValue <= lastAssignedID; idValue++){
+            idColumn.add(Integer.toString(idValue));
+            if(!idsInColumn)
+                idValues.add(idValue);
+        }
+    }
+
+    //adds the rows from firstRow to the end of the table to the id lookup and indexes
+    void indexRowsFrom(int firstRow){
+        for(int rowNum = firstRow; rowNum <= getNumEntries(); rowNum++){
+            if(!idRowsStale)
+                addIDRow(rowNum);
+            if(!indexesStale)
+                for(AttributeIndex index : attributeIndexes)
+                    index.addValue(getColumn(index.getColName()).get(rowNum), rowNum);
+        }
+    }
+    
     public String[] getRow(int rowNum){
         String[] myRow = new String[getNumAttributes()];
         
@@ -135,13 +344,20 @@ public class ArrListTable implements TableStructure{
         if(fromTable.getNumAttributes() != toTable.getNumAttributes())
             return false;
         
-        //copy row over
+        //copy row over, keeping typed values as they are
         for(int colCnt = 0; colCnt < fromTable.getNumAttributes(); colCnt++){
-            toTable.tableData.get(colCnt).add(fromTable.tableData.get(colCnt).get(rowNum));
+            List<String> fromColumn = fromTable.tableData.get(colCnt);
+            List<String> toColumn = toTable.tableData.get(colCnt);
+            if(fromColumn instanceof TypedColumn typedFrom && toColumn instanceof TypedColumn typedTo)
+                typedTo.addFrom(typedFrom, rowNum);
+            else
+                toColumn.add(fromColumn.get(rowNum));
         }
         
         //also copy id value over
-        toTable.idValues.add(fromTable.idValues.get(rowNum));
+        if(!toTable.idsInColumn)
+            toTable.idValues.add(fromTable.idValues.get(rowNum));
+        toTable.idRowsStale = true;
         
         return true;
     }
@@ -157,7 +373,7 @@ public class ArrListTable implements TableStructure{
     	
     	//copy rows only selected rows over
     	for(int rowCnt = 1; rowCnt <= getNumEntries(); rowCnt++)
-    	    if(selectionList[rowCnt - 1])
+    	    if(selectionList[rowCnt - 1] && !isRowDeleted(rowCnt))
     	        copyRow(this, selectionTable, rowCnt);
     	
         return selectionTable;
@@ -169,35 +385,27 @@ public class ArrListTable implements TableStructure{
         if(getNumEntries() != selectionList.length)
             return false;
 
+        //columns found once per attribute rather than per row
         for(int attrCount = 0; attrCount < nameValPair[0].length; attrCount++){
             List<String> myCol = getColumn(nameValPair[0][attrCount]);
+            List<AttributeIndex> colIndexes = getIndexes(nameValPair[0][attrCount]);
             
             for(int rowCnt = 1; rowCnt <= getNumEntries(); rowCnt++)
-                if(selectionList[rowCnt - 1])
+                if(selectionList[rowCnt - 1] && !isRowDeleted(rowCnt)){
+                    for(AttributeIndex index : colIndexes)
+                        index.removeValue(myCol.get(rowCnt), rowCnt);
                     myCol.set(rowCnt, nameValPair[1][attrCount]);
+                    for(AttributeIndex index : colIndexes)
+                        index.addValue(myCol.get(rowCnt), rowCnt);
+                }
         }
         
         return true;
     }
 
+    //see TableRenderer for the layout
     public String printTable(){
-        String outputString = "";
-        for(int rowCnt = 0; rowCnt <= getNumEntries(); rowCnt++){
-            for(int colCnt = 0; colCnt < getNumAttributes(); colCnt++){
-                //remove quote marks from string literals
-                String valToPrint = removeStrLitQuotes(tableData.get(colCnt).get(rowCnt));
-                
-                //do not display NULL values - instead display empty column
-                if(valToPrint.equalsIgnoreCase("NULL"))
-                    valToPrint = "";
-                
-                outputString += valToPrint;
-                if(colCnt < getNumAttributes() - 1)
-                    outputString += "\t".repeat(getColumnTabs(colCnt, rowCnt));
-            }
-            outputString += "\n";
-        }
-        return outputString;
+        return new TableRenderer(this).renderAll();
     }
 
     public static String removeStrLitQuotes(String strIn){
@@ -210,122 +418,343 @@ public class ArrListTable implements TableStructure{
         return strIn;
     }
     
-    //gets tab spacing for printing table with aligned columns
-    public int getColumnTabs(int colNum, int rowNum){
-        int tabWidth = 4;
-        int maxColWidth = 0;
-        int maxColTabWidth;
-        int colWidth;
-        int colTabWidth;
-
-        for(int rowCnt = 0; rowCnt <= getNumEntries(); rowCnt++)
-            if(tableData.get(colNum).get(rowCnt).length() > maxColWidth)
-                maxColWidth = tableData.get(colNum).get(rowCnt).length();
-
-        colWidth = tableData.get(colNum).get(rowNum).length();
-
-        //number of tabs to "contain" maximum width entry
-        maxColTabWidth = (int) Math.ceil(((double) maxColWidth + 1)/tabWidth);
-
-        //number of tabs to "contain" given entry
-        colTabWidth = (int) Math.ceil(((double) colWidth + 1)/tabWidth);
-
-        return maxColTabWidth - colTabWidth + 1;
-    }
-    
-    public ConditionResult evaluateCondition(String colName, String comparator, String condValue,
+    public ConditionResult evaluateCondition(int colIndex, CondOperator operator, CondValue condValue,
                                              int rowNum){
-        //get the relevant table value
-        String tabValue = getColumn(colName).get(rowNum);
-        
-        //find out type of the provided value
-        double doubValue = 0;
-        DataType typeOfValue = DataType.STRING;
-        try{
-            doubValue = Double.parseDouble(condValue);
-            typeOfValue = DataType.DOUBLE;
+        //numbers in typed columns are compared as they are held, without parsing
+        List<String> column = tableData.get(colIndex);
+        if(column instanceof TypedColumn typedColumn && typedColumn.isNumeric()
+                && operator != CondOperator.LIKE && !typedColumn.isNull(rowNum)){
+            if(!condValue.isNumeric)
+                return ConditionResult.INVALID;
+            return compareNumerics(typedColumn.getDouble(rowNum), operator, condValue.numericValue);
         }
-        catch(NumberFormatException notDouble){}
+
+        //get the relevant table value
+        String tabValue = column.get(rowNum);
+        return evaluateValues(tabValue, operator, condValue);
+    }
+
+    //compares a single table value against a condition value
+    public static ConditionResult evaluateValues(String tabValue, CondOperator operator,
+                                                 CondValue condValue){
+        //"LIKE" only works with strings
+        if(operator == CondOperator.LIKE)
+            return compareStrings(tabValue, operator, condValue);
 
         //find out type of the table value
         double doubTabVal = 0;
-        DataType typeOfTabVal = DataType.STRING;
-        try{
-            doubTabVal = Double.parseDouble(tabValue);
-            typeOfTabVal = DataType.DOUBLE;
+        boolean tabValNumeric = false;
+        if(mightBeNumeric(tabValue)){
+            try{
+                doubTabVal = Double.parseDouble(tabValue);
+                tabValNumeric = true;
+            }
+            catch(NumberFormatException notDouble){}
         }
-        catch(NumberFormatException notDouble){}
-        
+
         //cannot compare numeric and string types
-        if( ((typeOfValue == DataType.STRING && typeOfTabVal != DataType.STRING)
-            || (typeOfValue != DataType.STRING && typeOfTabVal == DataType.STRING))
-            && !comparator.equalsIgnoreCase("LIKE"))
+        if(tabValNumeric != condValue.isNumeric)
             return ConditionResult.INVALID;
-        
-        //determine type of comparison being performed
-        DataType comparisonType = DataType.STRING; //default compares strings
-        if(comparator.equalsIgnoreCase("LIKE"))
-            comparisonType = DataType.STRING; //"LIKE" only works with strings
-        else if(typeOfValue == DataType.DOUBLE && typeOfTabVal == DataType.DOUBLE)
-            comparisonType = DataType.DOUBLE; //comparing doubles
-        
-        if(comparisonType == DataType.DOUBLE)
-            return compareNumerics(doubTabVal, comparator, doubValue);
-        else return compareStrings(tabValue, comparator, condValue);
+
+        if(tabValNumeric)
+            return compareNumerics(doubTabVal, operator, condValue.numericValue);
+        else return compareStrings(tabValue, operator, condValue);
+    }
+
+    //false for values which parseDouble would certainly reject e.g. quoted strings
+    //saves throwing an exception for every string value compared
+    static boolean mightBeNumeric(String tabValue){
+        if(tabValue.isEmpty())
+            return false;
+        char firstChar = tabValue.charAt(0);
+        return Character.isDigit(firstChar) || firstChar <= ' ' || "+-.NI".indexOf(firstChar) >= 0;
     }
     
-    public ConditionResult compareNumerics(double tabValue, String comparator, double condValue){
-        double epsilon = 0.0001;
-        if(comparator.equals("==") && Math.abs(tabValue - condValue) < epsilon){
+    public static ConditionResult compareNumerics(double tabValue, CondOperator operator, double condValue){
+        double epsilon = NUMERIC_EPSILON;
+        if(operator == CondOperator.EQUALS && Math.abs(tabValue - condValue) < epsilon){
             return ConditionResult.TRUE;
-        }else if(comparator.equals(">") && tabValue > condValue){
+        }else if(operator == CondOperator.GREATER && tabValue > condValue){
             return ConditionResult.TRUE;
-        }else if(comparator.equals("<") && tabValue < condValue){
+        }else if(operator == CondOperator.LESS && tabValue < condValue){
             return ConditionResult.TRUE;
-        }else if(comparator.equals(">=") && tabValue >= condValue){
+        }else if(operator == CondOperator.GREATER_EQUALS && tabValue >= condValue){
             return ConditionResult.TRUE;
-        }else if(comparator.equals("<=") && tabValue <= condValue){
+        }else if(operator == CondOperator.LESS_EQUALS && tabValue <= condValue){
             return ConditionResult.TRUE;
-        }else if(comparator.equals("!=") && Math.abs(tabValue - condValue) > epsilon){
+        }else if(operator == CondOperator.NOT_EQUALS && Math.abs(tabValue - condValue) > epsilon){
             return ConditionResult.TRUE;
         }else return ConditionResult.FALSE;
     }
 
-    public ConditionResult compareStrings(String colName, String comparator, String condValue){
-        if(comparator.equals("==") && colName.equalsIgnoreCase(condValue)){
+    public static ConditionResult compareStrings(String tabValue, CondOperator operator,
+                                                 CondValue condValue){
+        String condText = condValue.valueText;
+        if(operator == CondOperator.EQUALS && tabValue.equalsIgnoreCase(condText)){
             return ConditionResult.TRUE;
-        }else if(comparator.equals(">") && colName.compareToIgnoreCase(condValue) > 0){
+        }else if(operator == CondOperator.GREATER && tabValue.compareToIgnoreCase(condText) > 0){
             return ConditionResult.TRUE;
-        }else if(comparator.equals("<") && colName.compareToIgnoreCase(condValue) < 0){
+        }else if(operator == CondOperator.LESS && tabValue.compareToIgnoreCase(condText) < 0){
             return ConditionResult.TRUE;
-        }else if(comparator.equals(">=") && colName.compareToIgnoreCase(condValue) >= 0){
+        }else if(operator == CondOperator.GREATER_EQUALS && tabValue.compareToIgnoreCase(condText) >= 0){
             return ConditionResult.TRUE;
-        }else if(comparator.equals("<=") && colName.compareToIgnoreCase(condValue) <= 0){
+        }else if(operator == CondOperator.LESS_EQUALS && tabValue.compareToIgnoreCase(condText) <= 0){
             return ConditionResult.TRUE;
-        }else if(comparator.equals("!=") && !colName.equalsIgnoreCase(condValue)){
+        }else if(operator == CondOperator.NOT_EQUALS && !tabValue.equalsIgnoreCase(condText)){
             return ConditionResult.TRUE;
-        }else if(comparator.equalsIgnoreCase("LIKE")){
-            condValue = removeStrLitQuotes(condValue);
-            if(colName.contains(condValue)) //"contains" is case sensitive
+        }else if(operator == CondOperator.LIKE){
+            if(tabValue.contains(condValue.likeText)) //"contains" is case sensitive
                 return ConditionResult.TRUE;
         }
         return ConditionResult.FALSE;
     }
     
+    //returns false if the column does not exist or already has an index of this type
+    public boolean createIndex(String colName, IndexType indexType){
+        if(!checkAttributeExists(colName) || getIndex(colName, indexType) != null)
+            return false;
+
+        AttributeIndex newIndex = newIndex(getColumn(colName).get(0), indexType);
+        buildIndex(newIndex);
+        attributeIndexes.add(newIndex);
+        return true;
+    }
+
+    static AttributeIndex newIndex(String colName, IndexType indexType){
+        if(indexType == IndexType.HASH)
+            return new HashIndex(colName);
+        return new SortedIndex(colName);
+    }
+
+    //removes every index on the column - returns false if there were none
+    public boolean dropIndexes(String colName){
+        return attributeIndexes.removeIf(index -> index.getColName().equalsIgnoreCase(colName));
+    }
+
+    //returns null if the column has no index of this type
+    public AttributeIndex getIndex(String colName, IndexType indexType){
+        for(AttributeIndex index : getIndexes(colName))
+            if(index.getType() == indexType)
+                return index;
+        return null;
+    }
+
+    public List<AttributeIndex> getIndexes(String colName){
+        refreshIndexes();
+        List<AttributeIndex> colIndexes = new ArrayList<AttributeIndex>();
+        for(AttributeIndex index : attributeIndexes)
+            if(index.getColName().equalsIgnoreCase(colName))
+                colIndexes.add(index);
+        return colIndexes;
+    }
+
+    public List<AttributeIndex> getIndexes(){
+        return attributeIndexes;
+    }
+
+    //hash indexes are preferred for equality, only sorted indexes can answer ranges
+    public BitSet findCandidateRows(int colIndex, CondOperator operator, CondValue condValue){
+        if(colIndex == 0 && firstColumnIsID){
+            BitSet idCandidates = findIDCandidates(operator, condValue);
+            if(idCandidates != null){
+                idCandidates.andNot(deletedRows);
+                return idCandidates;
+            }
+        }
+
+        String colName = tableData.get(colIndex).get(0);
+        AttributeIndex index = null;
+        if(operator == CondOperator.EQUALS || operator == CondOperator.NOT_EQUALS)
+            index = getIndex(colName, IndexType.HASH);
+        if(index == null)
+            index = getIndex(colName, IndexType.SORTED);
+        if(index == null)
+            return null;
+
+        //indexes keep deleted rows until the table is compacted
+        BitSet candidates = index.findCandidates(operator, condValue);
+        if(candidates != null)
+            candidates.andNot(deletedRows);
+        return candidates;
+    }
+
+    //returns 0 if there is no row with the id
+    //where ids repeat, this is one of the rows holding it
+    public int getRowNum(int idValue){
+        refreshIDRows();
+        Integer rowNum = idRows.get(idValue);
+        return rowNum == null ? 0 : rowNum;
+    }
+
+    //selects the rows holding any of the given ids
+    public boolean[] selectIDs(Set<Integer> selectedIDs){
+        boolean[] selection = new boolean[getNumEntries()];
+        refreshIDRows();
+        if(idsUnique){
+            for(int idValue : selectedIDs)
+                if(getRowNum(idValue) > 0)
+                    selection[getRowNum(idValue) - 1] = true;
+        }else{
+            for(int rowCnt = 1; rowCnt <= getNumEntries(); rowCnt++)
+                selection[rowCnt - 1] = !isRowDeleted(rowCnt)
+                        && selectedIDs.contains(idValues.get(rowCnt));
+        }
+        return selection;
+    }
+
+    //candidate rows for a condition on id - equality is a single lookup and ranges are
+    //found by binary search, each widened a little as the condition is still checked per row
+    //returns null if the rows cannot be narrowed down
+    BitSet findIDCandidates(CondOperator operator, CondValue condValue){
+        if(operator == CondOperator.LIKE || operator == CondOperator.NOT_EQUALS)
+            return null;
+        refreshIDRows();
+
+        //ids are numbers, so are never true for string values
+        BitSet candidates = new BitSet();
+        if(!condValue.isNumeric)
+            return candidates;
+        double condID = condValue.numericValue;
+
+        if(operator == CondOperator.EQUALS){
+            if(!idsUnique)
+                return null;
+            long nearestID = Math.round(condID);
+            if(Math.abs(nearestID - condID) < 2 * NUMERIC_EPSILON && nearestID == (int) nearestID
+                    && getRowNum((int) nearestID) > 0)
+                candidates.set(getRowNum((int) nearestID));
+            return candidates;
+        }
+
+        if(!idsAscending)
+            return null;
+        int firstRow = 1;
+        int lastRow = getNumEntries();
+        if(operator == CondOperator.GREATER || operator == CondOperator.GREATER_EQUALS)
+            firstRow = findFirstRowAbove(condID - 1);
+        else
+            lastRow = findFirstRowAbove(condID + 1) - 1;
+        if(firstRow <= lastRow)
+            candidates.set(firstRow, lastRow + 1);
+        return candidates;
+    }
+
+    //binary search for the first row with an id above the value
+    //gives one past the last row if there is none
+    int findFirstRowAbove(double value){
+        int lowRow = 1;
+        int highRow = getNumEntries() + 1;
+        while(lowRow < highRow){
+            int midRow = (lowRow + highRow) >>> 1;
+            if(idValues.get(midRow) > value)
+                highRow = midRow;
+            else
+                lowRow = midRow + 1;
+        }
+        return lowRow;
+    }
+
+    void addIDRow(int rowNum){
+        int idValue = idValues.get(rowNum);
+        if(idRows.put(idValue, rowNum) != null)
+            idsUnique = false;
+        if(rowNum > 1 && idValue <= idValues.get(rowNum - 1))
+            idsAscending = false;
+    }
+
+    //sessions reading the table together may all find it stale, so only one rebuilds it
+    synchronized void refreshIDRows(){
+        if(!idRowsStale)
+            return;
+        idRows.clear();
+        idsUnique = idsAscending = true;
+        for(int rowCnt = 1; rowCnt <= getNumEntries(); rowCnt++)
+            if(!isRowDeleted(rowCnt))
+                addIDRow(rowCnt);
+        idRowsStale = false;
+    }
+
+    synchronized void refreshIndexes(){
+        if(!indexesStale)
+            return;
+        for(AttributeIndex index : attributeIndexes)
+            buildIndex(index);
+        indexesStale = false;
+    }
+
+    void buildIndex(AttributeIndex index){
+        index.clear();
+        List<String> column = getColumn(index.getColName());
+        for(int rowCnt = 1; rowCnt <= getNumEntries(); rowCnt++)
+            if(!isRowDeleted(rowCnt))
+                index.addValue(column.get(rowCnt), rowCnt);
+    }
+
+    //marks the row as deleted, leaving it in place until the table is compacted
+    //returns false for the header row or a row which is already deleted
     public boolean removeRow(int rowNum){
         //cannot remove the "header" row
-        if(rowNum == 0)
+        if(rowNum == 0 || isRowDeleted(rowNum))
             return false;
-        
-        //remove the row
-        for(int colCnt = 0; colCnt < getNumAttributes(); colCnt++)
-            tableData.get(colCnt).remove(rowNum);
-        
-        //finally remove id value
-        idValues.remove(rowNum);
-        
+
+        deletedRows.set(rowNum);
+        numDeleted++;
+
+        //lookups by id only ever find live rows
+        Integer idValue = idValues.get(rowNum);
+        if(!idRowsStale && Integer.valueOf(rowNum).equals(idRows.get(idValue)))
+            idRows.remove(idValue);
+        return true;
+    }
+
+    //deletes every selected row, compacting the table if enough rows are now deleted
+    public boolean removeRows(boolean[] selectionList){
+        if(getNumEntries() != selectionList.length)
+            return false;
+
+        for(int rowCnt = 1; rowCnt <= getNumEntries(); rowCnt++)
+            if(selectionList[rowCnt - 1])
+                removeRow(rowCnt);
+
+        if(numDeleted > COMPACT_FRACTION * getNumEntries())
+            compactRows();
         return true;
     }
+
+    //drops deleted rows from every column in a single pass, so live rows move up
+    public void compactRows(){
+        if(numDeleted == 0)
+            return;
+
+        for(List<String> column : tableData){
+            if(column instanceof TypedColumn typedColumn)
+                typedColumn.removeRows(deletedRows);
+            else
+                compactList(column);
+        }
+        if(!idsInColumn)
+            compactList(idValues);
+
+        deletedRows.clear();
+        numDeleted = 0;
+
+        //row numbers have changed
+        idRowsStale = true;
+        if(!attributeIndexes.isEmpty())
+            indexesStale = true;
+    }
+
+    <T> void compactList(List<T> rowValues){
+        int writeRow = 1;
+        for(int rowCnt = 1; rowCnt < rowValues.size(); rowCnt++){
+            if(isRowDeleted(rowCnt))
+                continue;
+            if(writeRow != rowCnt)
+                rowValues.set(writeRow, rowValues.get(rowCnt));
+            writeRow++;
+        }
+        rowValues.subList(writeRow, rowValues.size()).clear();
+    }
     
     public String getTableName(){
         return tableName;
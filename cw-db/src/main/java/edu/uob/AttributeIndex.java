@@ -0,0 +1,60 @@
+package edu.uob;
+
+import java.util.*;
+
+//index over the values of one column, mapping values to the row numbers holding them
+//numeric and string values are kept apart, as they are never compared with each other
+//lookups give candidate rows - every row which could satisfy the condition, which is then
+//still evaluated, so an index never changes the result of a query
+public abstract class AttributeIndex{
+    String colName;
+
+    public AttributeIndex(String colName){
+        this.colName = colName;
+    }
+
+    public String getColName(){
+        return colName;
+    }
+
+    public abstract IndexType getType();
+
+    public abstract void addValue(String tabValue, int rowNum);
+
+    public abstract void removeValue(String tabValue, int rowNum);
+
+    public abstract void clear();
+
+    //returns null if this index cannot help with the comparison e.g. "LIKE"
+    public abstract BitSet findCandidates(CondOperator operator, CondValue condValue);
+
+    //returns null for values which evaluateValues would not compare as numbers
+    static Double parseNumeric(String tabValue){
+        if(!ArrListTable.mightBeNumeric(tabValue))
+            return null;
+        try{
+            //adding zero turns -0.0 into 0.0, which compares equal to it
+            return Double.parseDouble(tabValue) + 0.0;
+        }
+        catch(NumberFormatException notDouble){ return null; }
+    }
+
+    static <K> void addRow(Map<K, List<Integer>> valueRows, K key, int rowNum){
+        valueRows.computeIfAbsent(key, newKey -> new ArrayList<Integer>(1)).add(rowNum);
+    }
+
+    static <K> void removeRow(Map<K, List<Integer>> valueRows, K key, int rowNum){
+        List<Integer> rows = valueRows.get(key);
+        if(rows == null)
+            return;
+        rows.remove(Integer.valueOf(rowNum));
+        if(rows.isEmpty())
+            valueRows.remove(key);
+    }
+
+    static void addAllRows(Collection<List<Integer>> rowLists, BitSet candidates){
+        for(List<Integer> rows : rowLists)
+            for(int rowNum : rows)
+                candidates.set(rowNum);
+    }
+}
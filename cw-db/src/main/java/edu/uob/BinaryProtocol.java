@@ -0,0 +1,264 @@
+package edu.uob;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+//length prefixed binary frames, for clients which would rather not parse text tables
+//a client asks for it by sending PREAMBLE as its first bytes, which the server sends back to accept
+//request frame - int length, then the command in UTF-8
+//response frame - int length, byte status, then a message or a result set
+//result set - int columns, int rows, the name and type of each column, then each column in turn
+//a column is a bitmap of NULL rows followed by its values, as longs, doubles or length prefixed strings
+//string values are sent without their quote marks and NULL values as zero or empty
+public class BinaryProtocol{
+    //a text command never starts with a NUL byte
+    static final byte[] PREAMBLE = {0, 'D', 'B', '1'};
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    static final byte NO_RESULT_SET = 0;
+    static final byte HAS_RESULT_SET = 1;
+
+    static final byte TYPE_INTEGER = 1;
+    static final byte TYPE_DOUBLE = 2;
+    static final byte TYPE_STRING = 3;
+
+    //a request longer than this cannot be within the token limit
+    static final int MAX_REQUEST_BYTES = 1024 * 1024;
+
+    //a decoded response, as seen by a binary client
+    public static class ResultSet{
+        boolean success;
+        String message;
+        String[] columnNames;
+        DataType[] columnTypes;
+        int numRows;
+
+        //long[], double[] or String[] for each column
+        Object[] columnValues;
+        BitSet[] nullRows;
+
+        public boolean isSuccess(){
+            return success;
+        }
+
+        public String getMessage(){
+            return message;
+        }
+
+        public boolean hasRows(){
+            return columnNames != null;
+        }
+
+        public int getNumRows(){
+            return numRows;
+        }
+
+        public int getNumColumns(){
+            return columnNames.length;
+        }
+
+        public String getColumnName(int colIndex){
+            return columnNames[colIndex];
+        }
+
+        public DataType getColumnType(int colIndex){
+            return columnTypes[colIndex];
+        }
+
+        //rows are numbered from 0 - returns null for NULL values
+        public Object getValue(int colIndex, int rowIndex){
+            if(nullRows[colIndex].get(rowIndex))
+                return null;
+            if(columnTypes[colIndex] == DataType.INTEGER)
+                return ((long[]) columnValues[colIndex])[rowIndex];
+            if(columnTypes[colIndex] == DataType.DOUBLE)
+                return ((double[]) columnValues[colIndex])[rowIndex];
+            return ((String[]) columnValues[colIndex])[rowIndex];
+        }
+    }
+
+    public static boolean isPreamble(byte[] bytes){
+        return Arrays.equals(bytes, PREAMBLE);
+    }
+
+    public static byte[] encodeRequest(String command){
+        byte[] commandBytes = command.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[4 + commandBytes.length];
+        writeInt(frame, 0, commandBytes.length);
+        System.arraycopy(commandBytes, 0, frame, 4, commandBytes.length);
+        return frame;
+    }
+
+    public static byte[] encodeResult(CommandResult result){
+        ByteArrayOutputStream frameBytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(frameBytes);
+        try{
+            output.writeInt(0);
+            output.writeByte(result.isSuccess() ? STATUS_OK : STATUS_ERROR);
+            if(result.getResultTable() == null){
+                output.writeByte(NO_RESULT_SET);
+                writeString(output, result.getMessage());
+            }else{
+                output.writeByte(HAS_RESULT_SET);
+                writeResultSet(output, result.getResultTable());
+            }
+        }
+        catch(IOException arrayExc){
+            //writing to a byte array cannot fail
+            throw new UncheckedIOException(arrayExc);
+        }
+        byte[] frame = frameBytes.toByteArray();
+        writeInt(frame, 0, frame.length - 4);
+        return frame;
+    }
+
+    //column types are found from the stored values
+    static void writeResultSet(DataOutputStream output, TableStructure table) throws IOException {
+        int[] liveRows = new int[table.getNumLiveEntries()];
+        int numRows = 0;
+        for(int rowCnt = 1; rowCnt <= table.getNumEntries(); rowCnt++)
+            if(!table.isRowDeleted(rowCnt))
+                liveRows[numRows++] = rowCnt;
+
+        List<List<String>> columns = new ArrayList<List<String>>();
+        DataType[] columnTypes = new DataType[table.getNumAttributes()];
+        for(int colCnt = 0; colCnt < table.getNumAttributes(); colCnt++){
+            List<String> values = new ArrayList<String>(numRows);
+            for(int rowCnt = 0; rowCnt < numRows; rowCnt++)
+                values.add(table.getValue(colCnt, liveRows[rowCnt]));
+            columns.add(values);
+            columnTypes[colCnt] = DataType.inferType(values);
+        }
+
+        output.writeInt(columns.size());
+        output.writeInt(numRows);
+        for(int colCnt = 0; colCnt < columns.size(); colCnt++){
+            writeString(output, table.getValue(colCnt, 0));
+            output.writeByte(getTypeCode(columnTypes[colCnt]));
+        }
+        for(int colCnt = 0; colCnt < columns.size(); colCnt++)
+            writeColumn(output, columns.get(colCnt), columnTypes[colCnt]);
+    }
+
+    static void writeColumn(DataOutputStream output, List<String> values, DataType colType)
+            throws IOException {
+        BitSet nullRows = new BitSet(values.size());
+        for(int rowCnt = 0; rowCnt < values.size(); rowCnt++)
+            if(values.get(rowCnt).equals(DataType.NULL_VALUE))
+                nullRows.set(rowCnt);
+        output.write(Arrays.copyOf(nullRows.toByteArray(), (values.size() + 7) / 8));
+
+        for(int rowCnt = 0; rowCnt < values.size(); rowCnt++){
+            String value = values.get(rowCnt);
+            boolean isNull = nullRows.get(rowCnt);
+            if(colType == DataType.INTEGER)
+                output.writeLong(isNull ? 0 : Long.parseLong(value));
+            else if(colType == DataType.DOUBLE)
+                output.writeDouble(isNull ? 0 : Double.parseDouble(value));
+            else
+                writeString(output, isNull ? "" : ArrListTable.removeStrLitQuotes(value));
+        }
+    }
+
+    public static ResultSet readResult(DataInputStream input) throws IOException {
+        input.readInt();
+        ResultSet resultSet = new ResultSet();
+        resultSet.success = (input.readByte() == STATUS_OK);
+        if(input.readByte() == NO_RESULT_SET){
+            resultSet.message = readString(input);
+            return resultSet;
+        }
+
+        int numColumns = input.readInt();
+        int numRows = input.readInt();
+        resultSet.message = "";
+        resultSet.numRows = numRows;
+        resultSet.columnNames = new String[numColumns];
+        resultSet.columnTypes = new DataType[numColumns];
+        resultSet.columnValues = new Object[numColumns];
+        resultSet.nullRows = new BitSet[numColumns];
+        for(int colCnt = 0; colCnt < numColumns; colCnt++){
+            resultSet.columnNames[colCnt] = readString(input);
+            resultSet.columnTypes[colCnt] = getDataType(input.readByte());
+        }
+
+        for(int colCnt = 0; colCnt < numColumns; colCnt++){
+            byte[] nullBytes = new byte[(numRows + 7) / 8];
+            input.readFully(nullBytes);
+            resultSet.nullRows[colCnt] = BitSet.valueOf(nullBytes);
+            DataType colType = resultSet.columnTypes[colCnt];
+            if(colType == DataType.INTEGER){
+                long[] values = new long[numRows];
+                for(int rowCnt = 0; rowCnt < numRows; rowCnt++)
+                    values[rowCnt] = input.readLong();
+                resultSet.columnValues[colCnt] = values;
+            }else if(colType == DataType.DOUBLE){
+                double[] values = new double[numRows];
+                for(int rowCnt = 0; rowCnt < numRows; rowCnt++)
+                    values[rowCnt] = input.readDouble();
+                resultSet.columnValues[colCnt] = values;
+            }else{
+                String[] values = new String[numRows];
+                for(int rowCnt = 0; rowCnt < numRows; rowCnt++)
+                    values[rowCnt] = readString(input);
+                resultSet.columnValues[colCnt] = values;
+            }
+        }
+        return resultSet;
+    }
+
+    //returns null at the end of the stream
+    public static String readRequest(DataInputStream input) throws IOException {
+        int frameLength;
+        try{ frameLength = input.readInt(); }
+        catch(EOFException endOfStream){ return null; }
+        if(frameLength < 0 || frameLength > MAX_REQUEST_BYTES)
+            throw new IOException("Request too long");
+        byte[] commandBytes = new byte[frameLength];
+        input.readFully(commandBytes);
+        return new String(commandBytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(valueBytes.length);
+        output.write(valueBytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        byte[] valueBytes = new byte[input.readInt()];
+        input.readFully(valueBytes);
+        return new String(valueBytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInt(byte[] bytes, int offset, int value){
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    static int readInt(byte[] bytes, int offset){
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+            | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    static byte getTypeCode(DataType colType){
+        if(colType == DataType.INTEGER)
+            return TYPE_INTEGER;
+        if(colType == DataType.DOUBLE)
+            return TYPE_DOUBLE;
+        return TYPE_STRING;
+    }
+
+    static DataType getDataType(byte typeCode){
+        if(typeCode == TYPE_INTEGER)
+            return DataType.INTEGER;
+        if(typeCode == TYPE_DOUBLE)
+            return DataType.DOUBLE;
+        return DataType.STRING;
+    }
+}
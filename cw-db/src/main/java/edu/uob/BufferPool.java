@@ -0,0 +1,37 @@
+package edu.uob;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+//direct buffers of one size, kept for reuse as they are costly to allocate
+//buffers beyond the pool limit are simply dropped when given back
+public class BufferPool{
+    int bufferSize;
+    int maxPooled;
+    Queue<ByteBuffer> freeBuffers;
+
+    public BufferPool(int bufferSize, int maxPooled){
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        freeBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    }
+
+    //the buffer is cleared, ready to be filled
+    public ByteBuffer acquire(){
+        ByteBuffer buffer = freeBuffers.poll();
+        if(buffer == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer){
+        if(freeBuffers.size() < maxPooled)
+            freeBuffers.offer(buffer);
+    }
+
+    public int getNumPooled(){
+        return freeBuffers.size();
+    }
+}
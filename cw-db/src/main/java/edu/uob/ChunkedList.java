@@ -0,0 +1,128 @@
+package edu.uob;
+
+import java.util.*;
+
+//list held in fixed size chunks, so that versions of a table can share the chunks they have in common
+//a shared chunk is copied before it is first changed, so older versions never see the change
+//only the list being changed copies chunks - the versions it was shared with are only ever read
+public class ChunkedList<T> extends AbstractList<T> implements RandomAccess{
+    static final int CHUNK_SHIFT = 7;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    Object[][] chunks;
+    //set for chunks which another version may be reading
+    boolean[] chunkShared;
+    int numValues;
+
+    public ChunkedList(){
+        chunks = new Object[4][];
+        chunkShared = new boolean[4];
+        numValues = 0;
+    }
+
+    public ChunkedList(Collection<? extends T> values){
+        this();
+        addAll(values);
+    }
+
+    //a version of any list which shares chunks with the list where it can
+    public static <T> ChunkedList<T> snapshotOf(List<T> list){
+        if(list instanceof ChunkedList<T> chunkedList)
+            return chunkedList.snapshot();
+        return new ChunkedList<T>(list);
+    }
+
+    //copies only the chunk references - every chunk is then shared by both lists
+    public ChunkedList<T> snapshot(){
+        int numChunks = getNumChunks();
+        Arrays.fill(chunkShared, 0, numChunks, true);
+        ChunkedList<T> snapshot = new ChunkedList<T>();
+        snapshot.chunks = Arrays.copyOf(chunks, Math.max(numChunks, 1));
+        snapshot.chunkShared = new boolean[snapshot.chunks.length];
+        Arrays.fill(snapshot.chunkShared, true);
+        snapshot.numValues = numValues;
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index){
+        Objects.checkIndex(index, numValues);
+        return (T) chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+    }
+
+    public T set(int index, T value){
+        T oldValue = get(index);
+        writableChunk(index >>> CHUNK_SHIFT)[index & (CHUNK_SIZE - 1)] = value;
+        return oldValue;
+    }
+
+    //values are only ever added at the end of a table column
+    //adding elsewhere shifts the later values along one at a time
+    public void add(int index, T value){
+        Objects.checkIndex(index, numValues + 1);
+        int chunkNum = numValues >>> CHUNK_SHIFT;
+        if(chunkNum == chunks.length){
+            chunks = Arrays.copyOf(chunks, chunkNum * 2);
+            chunkShared = Arrays.copyOf(chunkShared, chunkNum * 2);
+        }
+        if(chunks[chunkNum] == null){
+            chunks[chunkNum] = new Object[CHUNK_SIZE];
+            chunkShared[chunkNum] = false;
+        }
+        numValues++;
+        modCount++;
+
+        for(int valCnt = numValues - 1; valCnt > index; valCnt--)
+            set(valCnt, get(valCnt - 1));
+        set(index, value);
+    }
+
+    public T remove(int index){
+        T oldValue = get(index);
+        for(int valCnt = index; valCnt < numValues - 1; valCnt++)
+            set(valCnt, get(valCnt + 1));
+        removeRange(numValues - 1, numValues);
+        return oldValue;
+    }
+
+    //removing from the end drops whole chunks without touching the values before
+    protected void removeRange(int fromIndex, int toIndex){
+        int numRemoved = toIndex - fromIndex;
+        for(int valCnt = fromIndex; valCnt < numValues - numRemoved; valCnt++)
+            set(valCnt, get(valCnt + numRemoved));
+
+        int newSize = numValues - numRemoved;
+        int numChunks = (newSize + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        for(int chunkCnt = numChunks; chunkCnt < getNumChunks(); chunkCnt++){
+            chunks[chunkCnt] = null;
+            chunkShared[chunkCnt] = false;
+        }
+        //clear the rest of the last chunk, so values added later start from empty slots
+        if((newSize & (CHUNK_SIZE - 1)) != 0){
+            Object[] lastChunk = writableChunk(numChunks - 1);
+            Arrays.fill(lastChunk, newSize & (CHUNK_SIZE - 1), CHUNK_SIZE, null);
+        }
+        numValues = newSize;
+        modCount++;
+    }
+
+    public void clear(){
+        removeRange(0, numValues);
+    }
+
+    public int size(){
+        return numValues;
+    }
+
+    int getNumChunks(){
+        return (numValues + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    }
+
+    Object[] writableChunk(int chunkNum){
+        if(chunkShared[chunkNum]){
+            chunks[chunkNum] = chunks[chunkNum].clone();
+            chunkShared[chunkNum] = false;
+        }
+        return chunks[chunkNum];
+    }
+}
@@ -0,0 +1,66 @@
+package edu.uob;
+
+import java.io.*;
+
+//outcome of a command, kept apart from how it is sent back to the client
+//queries keep their result table, so that it can be rendered as text or encoded as binary
+public class CommandResult{
+    boolean success;
+
+    //the full text response, for commands which do not return a table
+    String responseText;
+
+    //rows returned by SELECT or JOIN, otherwise null
+    TableStructure resultTable;
+
+    CommandResult(boolean success, String responseText, TableStructure resultTable){
+        this.success = success;
+        this.responseText = responseText;
+        this.resultTable = resultTable;
+    }
+
+    //from a text response beginning "[OK]" or "[ERROR]"
+    public static CommandResult fromResponse(String responseText){
+        return new CommandResult(responseText.startsWith("[OK]"), responseText, null);
+    }
+
+    public static CommandResult ofTable(TableStructure resultTable){
+        return new CommandResult(true, null, resultTable);
+    }
+
+    public boolean isSuccess(){
+        return success;
+    }
+
+    public TableStructure getResultTable(){
+        return resultTable;
+    }
+
+    //the response without its "[OK]" or "[ERROR]" line, e.g. the error message
+    public String getMessage(){
+        if(responseText == null)
+            return "";
+        int tagEnd = responseText.indexOf('\n');
+        return tagEnd < 0 ? "" : responseText.substring(tagEnd + 1);
+    }
+
+    //the response as sent by the text protocol
+    public String toText(){
+        if(resultTable != null)
+            return "[OK]\n" + new TableRenderer(resultTable).renderAll();
+        return responseText;
+    }
+
+    //as toText, but written a batch of rows at a time, so a large result is never held as one string
+    //a blocking writer holds back the next batch until a slow client has read the last one
+    public void writeText(Writer writer, int batchRows) throws IOException {
+        if(resultTable == null){
+            writer.write(responseText);
+            return;
+        }
+        writer.write("[OK]\n");
+        TableRenderer renderer = new TableRenderer(resultTable);
+        while(renderer.hasMoreRows())
+            renderer.writeRows(writer, batchRows);
+    }
+}
@@ -0,0 +1,30 @@
+package edu.uob;
+
+//comparators allowed within a WHERE condition
+public enum CondOperator{
+    EQUALS("=="),
+    GREATER(">"),
+    LESS("<"),
+    GREATER_EQUALS(">="),
+    LESS_EQUALS("<="),
+    NOT_EQUALS("!="),
+    LIKE("LIKE");
+
+    private String operatorText;
+
+    CondOperator(String operatorText){
+        this.operatorText = operatorText;
+    }
+
+    //returns null if the text is not a comparator
+    public static CondOperator fromText(String operatorText){
+        for(CondOperator operator : values())
+            if(operator.operatorText.equalsIgnoreCase(operatorText))
+                return operator;
+        return null;
+    }
+
+    public String getText(){
+        return operatorText;
+    }
+}
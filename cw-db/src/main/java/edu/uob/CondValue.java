@@ -0,0 +1,33 @@
+package edu.uob;
+
+//the value from a WHERE condition, parsed once rather than for every row it is compared with
+public class CondValue{
+    String valueText;
+
+    //text without string literal quotes, as matched by "LIKE"
+    String likeText;
+
+    boolean isNumeric;
+    double numericValue;
+
+    public CondValue(String valueText){
+        setText(valueText);
+    }
+
+    //a prepared command's condition keeps its values, which are set again for each run
+    public void setText(String valueText){
+        this.valueText = valueText;
+        likeText = ArrListTable.removeStrLitQuotes(valueText);
+        isNumeric = false;
+        numericValue = 0;
+        try{
+            numericValue = Double.parseDouble(valueText);
+            isNumeric = true;
+        }
+        catch(NumberFormatException notDouble){}
+    }
+
+    public String getText(){
+        return valueText;
+    }
+}
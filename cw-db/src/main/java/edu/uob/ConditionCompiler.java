@@ -0,0 +1,135 @@
+package edu.uob;
+
+import java.util.*;
+
+//turns the condition part of a parse tree into predicates for one table
+//columns are found, values parsed and comparators looked up once per query rather than per row
+public class ConditionCompiler{
+    //compares one column against one value
+    static class SimplePredicate implements RowPredicate{
+        TableStructure table;
+        String attribute;
+        int colIndex;
+        CondOperator operator;
+        CondValue condValue;
+
+        //whether the value is a placeholder of a prepared command
+        boolean isParameter;
+
+        SimplePredicate(TableStructure table, String attribute, CondOperator operator, CondValue condValue){
+            this.table = table;
+            this.attribute = attribute;
+            colIndex = table.getColumnIndex(attribute);
+            this.operator = operator;
+            this.condValue = condValue;
+            isParameter = false;
+        }
+
+        public ConditionResult evaluate(int rowNum){
+            return table.evaluateCondition(colIndex, operator, condValue, rowNum);
+        }
+
+        public boolean matches(int rowNum){
+            return evaluate(rowNum) == ConditionResult.TRUE;
+        }
+
+        public BitSet findCandidates(){
+            return table.findCandidateRows(colIndex, operator, condValue);
+        }
+    }
+
+    //joins two conditions with "AND" or "OR"
+    //an invalid comparison on either side makes the whole condition invalid
+    static class CompoundPredicate implements RowPredicate{
+        RowPredicate firstCond;
+        RowPredicate secondCond;
+        boolean isAnd;
+
+        CompoundPredicate(RowPredicate firstCond, boolean isAnd, RowPredicate secondCond){
+            this.firstCond = firstCond;
+            this.isAnd = isAnd;
+            this.secondCond = secondCond;
+        }
+
+        public ConditionResult evaluate(int rowNum){
+            ConditionResult firstResult = firstCond.evaluate(rowNum);
+            if(firstResult == ConditionResult.INVALID)
+                return ConditionResult.INVALID;
+            ConditionResult secondResult = secondCond.evaluate(rowNum);
+            if(secondResult == ConditionResult.INVALID)
+                return ConditionResult.INVALID;
+
+            boolean condTrue;
+            if(isAnd)
+                condTrue = firstResult == ConditionResult.TRUE && secondResult == ConditionResult.TRUE;
+            else
+                condTrue = firstResult == ConditionResult.TRUE || secondResult == ConditionResult.TRUE;
+            return condTrue ? ConditionResult.TRUE : ConditionResult.FALSE;
+        }
+
+        //"AND" stops at the first side which is not true
+        //"OR" stops at an invalid first side, but a true first side still needs a valid second side
+        public boolean matches(int rowNum){
+            if(isAnd)
+                return firstCond.matches(rowNum) && secondCond.matches(rowNum);
+
+            ConditionResult firstResult = firstCond.evaluate(rowNum);
+            if(firstResult == ConditionResult.INVALID)
+                return false;
+            if(firstResult == ConditionResult.TRUE)
+                return secondCond.evaluate(rowNum) != ConditionResult.INVALID;
+            return secondCond.matches(rowNum);
+        }
+
+        //a row can only match "AND" if it could match both sides, and "OR" if it could match either
+        public BitSet findCandidates(){
+            BitSet firstCandidates = firstCond.findCandidates();
+            BitSet secondCandidates = secondCond.findCandidates();
+            if(firstCandidates == null || secondCandidates == null)
+                return isAnd ? (firstCandidates == null ? secondCandidates : firstCandidates) : null;
+
+            if(isAnd)
+                firstCandidates.and(secondCandidates);
+            else
+                firstCandidates.or(secondCandidates);
+            return firstCandidates;
+        }
+    }
+
+    //returns null if there is no condition to compile
+    public static RowPredicate compile(Node condNode, TableStructure table){
+        return compile(condNode, table, null);
+    }
+
+    //as above, also adding each comparison in order to comparisons - unless it is null
+    public static RowPredicate compile(Node condNode, TableStructure table, List<SimplePredicate> comparisons){
+        if(condNode == null)
+            return null;
+
+        RuleName ruleName = condNode.nodeRule.ruleName;
+        if(ruleName == RuleName.SIMPLE_COND){
+            String attribute = condNode.childNodes.get(0).leafToken.tokenText;
+            String comparator = condNode.childNodes.get(1).leafToken.tokenText;
+            Node valueLeaf = condNode.childNodes.get(2).childNodes.get(0);
+            SimplePredicate comparison = new SimplePredicate(table, attribute,
+                    CondOperator.fromText(comparator), new CondValue(valueLeaf.leafToken.tokenText));
+            comparison.isParameter = (valueLeaf.nodeRule == SQLSimpGrammar.placeholderLit);
+            if(comparisons != null)
+                comparisons.add(comparison);
+            return comparison;
+        }
+
+        if(ruleName == RuleName.COMP_WITH_SIMP || ruleName == RuleName.COMP_WITH_BRACKET){
+            String boolOperator = condNode.childNodes.get(1).leafToken.tokenText;
+            RowPredicate firstCond = compile(condNode.childNodes.get(0), table, comparisons);
+            return new CompoundPredicate(firstCond, boolOperator.equalsIgnoreCase("AND"),
+                    compile(condNode.childNodes.get(2), table, comparisons));
+        }
+
+        //conditions and bracketed conditions wrap a single condition
+        for(Node childNode : condNode.childNodes)
+            if(childNode.nodeRule.ruleType != RuleType.TERM)
+                return compile(childNode, table, comparisons);
+        return null;
+    }
+}
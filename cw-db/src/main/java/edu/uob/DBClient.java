@@ -6,12 +6,26 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class DBClient {
 
     private static final char END_OF_TRANSMISSION = 4;
 
     public static void main(String[] args) throws IOException {
+        //"--batch <file>" sends every line of the file as a command, without waiting between them
+        if (args.length == 2 && args[0].equals("--batch")) {
+            List<String> commands = Files.readAllLines(Paths.get(args[1]));
+            try (Socket socket = new Socket("localhost", 8888)) {
+                sendBatch(socket, commands, System.out::print);
+            }
+            return;
+        }
+
         BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
         Socket socket = new Socket("localhost", 8888);
         BufferedReader socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
@@ -35,4 +49,43 @@ public class DBClient {
             incomingMessage = socketReader.readLine();
         }
     }
+
+    //pipelines the commands, passing each response (ending with a newline) to the handler in order
+    //commands are written from a second thread, so neither end can stall with a full socket buffer
+    public static void sendBatch(Socket socket, List<String> commands, Consumer<String> responseHandler) throws IOException {
+        BufferedReader socketReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        BufferedWriter socketWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()), 64 * 1024);
+        AtomicReference<IOException> sendFailure = new AtomicReference<IOException>();
+        Thread sender = new Thread(() -> {
+            try {
+                for (String command : commands)
+                    socketWriter.write(command + "\n");
+                socketWriter.flush();
+            } catch (IOException e) {
+                sendFailure.set(e);
+            }
+        }, "batch-sender");
+        sender.start();
+
+        StringBuilder response = new StringBuilder();
+        for (int responseCnt = 0; responseCnt < commands.size(); responseCnt++) {
+            String incomingMessage = socketReader.readLine();
+            while (incomingMessage != null && !incomingMessage.contains("" + END_OF_TRANSMISSION + "")) {
+                response.append(incomingMessage).append('\n');
+                incomingMessage = socketReader.readLine();
+            }
+            if (incomingMessage == null)
+                throw new IOException("Server disconnected (end-of-stream)");
+            responseHandler.accept(response.toString());
+            response.setLength(0);
+        }
+
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sendFailure.get() != null)
+            throw sendFailure.get();
+    }
 }
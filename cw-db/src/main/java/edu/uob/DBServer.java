@@ -1,28 +1,87 @@
 package edu.uob;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.file.Paths;
 import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** This class implements the DB server. */
 public class DBServer {
 
     private static final char END_OF_TRANSMISSION = 4;
+
+    //rows of a query result rendered between writes to the client
+    static final int STREAM_BATCH_ROWS = 256;
+
     private String storageFolderPath;
 
-    //handles all database related queries
+    //cached tables, logs and the flusher, shared by every connection
+    TableStore tableStore;
+
+    //session used by handleCommand - each network connection gets a session of its own
     DatabaseHandler databaseHandler;
 
+    //set by the "--nio" option
+    boolean useSelector;
+
     public static void main(String args[]) throws IOException {
         DBServer server = new DBServer();
-        server.blockingListenOn(8888);
+        if(!server.applyOptions(args)){
+            System.out.println("Usage: DBServer [--nio] [--durability=fsync_per_command|group_commit|no_fsync]"
+                    + " [--group-commit-millis=<millis>]");
+            server.close();
+            return;
+        }
+
+        //make sure changed tables are written out when the server is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        if(server.useSelector)
+            server.selectorListenOn(8888);
+        else
+            server.concurrentListenOn(8888);
+    }
+
+    //"--nio" serves every connection from one selector thread instead of a thread each
+    //"--durability" chooses when the table logs are forced to disk, by default never (no_fsync)
+    //"--group-commit-millis" sets how often they are forced under group_commit
+    //returns false, changing nothing, if any option is not recognised
+    public boolean applyOptions(String[] args){
+        boolean selectorChosen = false;
+        DurabilityMode durabilityMode = DurabilityMode.NO_FSYNC;
+        long groupCommitMillis = LogManager.DEFAULT_GROUP_COMMIT_MILLIS;
+
+        for(String option : args){
+            String optionValue = option.substring(option.indexOf('=') + 1);
+            try{
+                if(option.equals("--nio"))
+                    selectorChosen = true;
+                else if(option.startsWith("--durability="))
+                    durabilityMode = DurabilityMode.valueOf(optionValue.toUpperCase().replace('-', '_'));
+                else if(option.startsWith("--group-commit-millis=")){
+                    groupCommitMillis = Long.parseLong(optionValue);
+                    if(groupCommitMillis <= 0)
+                        return false;
+                }
+                else return false;
+            }
+            catch(IllegalArgumentException badValue){ return false; }
+        }
+
+        useSelector = selectorChosen;
+        tableStore.setDurabilityMode(durabilityMode, groupCommitMillis);
+        return true;
     }
 
     /**
@@ -37,8 +96,10 @@ public class DBServer {
             System.out.println("Can't seem to create database storage folder " + storageFolderPath);
         }
 
-        //create DatabaseHandler object
-        databaseHandler = new DatabaseHandler(storageFolderPath);
+        //create the shared tables and the default session
+        tableStore = new TableStore(storageFolderPath);
+        databaseHandler = new DatabaseHandler(tableStore);
+        useSelector = false;
     }
 
     /**
@@ -52,6 +113,103 @@ public class DBServer {
         return databaseHandler.respondToCommand(command);
     }
 
+    //a new session with no database selected, sharing this server's tables
+    public DatabaseHandler openSession(){
+        return new DatabaseHandler(tableStore);
+    }
+
+    //writes out any changed tables and closes the table logs
+    public void close(){
+        tableStore.close();
+    }
+
+    //handles every connection on its own pooled thread, each with its own session
+    //so one client waiting between commands does not hold up the others
+    public void concurrentListenOn(int portNumber) throws IOException {
+        ExecutorService connectionPool = Executors.newCachedThreadPool();
+        try (ServerSocket s = new ServerSocket(portNumber)) {
+            System.out.println("Server listening on port " + portNumber);
+            while (!Thread.interrupted()) {
+                try {
+                    Socket socket = s.accept();
+                    connectionPool.execute(() -> handleSessionConnection(socket));
+                } catch (IOException e) {
+                    System.err.println("Server encountered a non-fatal IO error:");
+                    e.printStackTrace();
+                    System.err.println("Continuing...");
+                }
+            }
+        } finally {
+            connectionPool.shutdownNow();
+        }
+    }
+
+    //for many mostly idle connections - see SelectorServer
+    public void selectorListenOn(int portNumber) throws IOException {
+        SelectorServer selectorServer = new SelectorServer(this, portNumber);
+        System.out.println("Server listening on port " + selectorServer.getPort());
+        selectorServer.run();
+    }
+
+    //serves one client until it disconnects
+    //clients opening with the binary preamble are served binary frames, others the text protocol
+    void handleSessionConnection(Socket socket) {
+        DatabaseHandler session = openSession();
+        try (Socket s = socket;
+        BufferedInputStream input = new BufferedInputStream(s.getInputStream());
+        BufferedOutputStream output = new BufferedOutputStream(s.getOutputStream())) {
+
+            System.out.println("Connection established: " + s.getInetAddress());
+            if (readBinaryPreamble(input)) {
+                output.write(BinaryProtocol.PREAMBLE);
+                output.flush();
+                handleBinaryCommands(session, new DataInputStream(input), output);
+                return;
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output));
+            String incomingCommand;
+            //commands are not echoed to the console, as every session would wait on it in turn
+            while ((incomingCommand = reader.readLine()) != null) {
+                //query results go out as they are rendered, rather than as one string
+                session.runCommand(incomingCommand).writeText(writer, STREAM_BATCH_ROWS);
+                writer.write("\n" + END_OF_TRANSMISSION + "\n");
+                //pipelined commands already read are answered together in one flush
+                if (!reader.ready())
+                    writer.flush();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("Connection closed after IO error: " + e.getMessage());
+        }
+    }
+
+    //only the first byte is waited for, as a text client may send a command shorter than the preamble
+    //a text command is left unread
+    static boolean readBinaryPreamble(BufferedInputStream input) throws IOException {
+        input.mark(1);
+        if (input.read() != BinaryProtocol.PREAMBLE[0]) {
+            input.reset();
+            return false;
+        }
+        byte[] preamble = new byte[BinaryProtocol.PREAMBLE.length];
+        input.readNBytes(preamble, 1, preamble.length - 1);
+        if (!BinaryProtocol.isPreamble(preamble))
+            throw new IOException("Unknown protocol");
+        return true;
+    }
+
+    void handleBinaryCommands(DatabaseHandler session, DataInputStream input, OutputStream output) throws IOException {
+        String incomingCommand;
+        while ((incomingCommand = BinaryProtocol.readRequest(input)) != null) {
+            output.write(BinaryProtocol.encodeResult(session.runCommand(incomingCommand)));
+            if (input.available() == 0)
+                output.flush();
+        }
+        output.flush();
+    }
+
     //  === Methods below handle networking aspects of the project - you will not need to change these ! ===
 
     public void blockingListenOn(int portNumber) throws IOException {
@@ -0,0 +1,213 @@
+package edu.uob;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+//reads the rows of a tab separated file for LOAD DATA - one row per line, with a value for every column but id
+//the file is split into chunks on line boundaries, which are parsed in parallel into columns of their own
+//the chunks' columns are then joined in order, so the table can take each column in one step
+//values are kept as a command would give them - text which is not already a literal is quoted, and
+//an empty value is NULL - and blank lines are skipped
+public class DataLoader{
+    //smallest part of the file worth parsing on another thread
+    static final int MIN_CHUNK_CHARS = 64 * 1024;
+
+    //values which are stored as they are
+    static final List<Rule> literalRules = List.of(SQLSimpGrammar.integerLit, SQLSimpGrammar.floatLit,
+            SQLSimpGrammar.boolLit, SQLSimpGrammar.nullLiteral, SQLSimpGrammar.stringLit);
+
+    //the lines from chunkStart up to chunkEnd, parsed into columns
+    class ParsedChunk implements Callable<ParsedChunk>{
+        int chunkStart;
+        int chunkEnd;
+        List<List<String>> chunkColumns;
+        int chunkRows;
+
+        //position of the first line which is not a valid row, or -1
+        int errorPosition;
+
+        ParsedChunk(int chunkStart, int chunkEnd){
+            this.chunkStart = chunkStart;
+            this.chunkEnd = chunkEnd;
+            chunkColumns = new ArrayList<List<String>>(numValues);
+            for(int colCnt = 0; colCnt < numValues; colCnt++)
+                chunkColumns.add(new ArrayList<String>());
+            chunkRows = 0;
+            errorPosition = -1;
+        }
+
+        public ParsedChunk call(){
+            int lineStart = chunkStart;
+            while(lineStart < chunkEnd){
+                int lineEnd = fileText.indexOf('\n', lineStart);
+                if(lineEnd < 0 || lineEnd > chunkEnd)
+                    lineEnd = chunkEnd;
+                if(!parseLine(lineStart, lineEnd)){
+                    errorPosition = lineStart;
+                    return this;
+                }
+                lineStart = lineEnd + 1;
+            }
+            return this;
+        }
+
+        boolean parseLine(int lineStart, int lineEnd){
+            if(lineEnd > lineStart && fileText.charAt(lineEnd - 1) == '\r')
+                lineEnd--;
+            if(lineEnd == lineStart)
+                return true;
+            if(numValues == 0)
+                return false;
+
+            //the whole line is checked before any of it is added
+            String[] rowValues = new String[numValues];
+            int valueStart = lineStart;
+            for(int valueCnt = 0; valueCnt < numValues; valueCnt++){
+                int valueEnd = fileText.indexOf('\t', valueStart);
+                boolean lastValue = (valueCnt == numValues - 1);
+                if(valueEnd < 0 || valueEnd > lineEnd)
+                    valueEnd = lineEnd;
+                else if(lastValue)
+                    return false;
+                if(valueEnd == lineEnd && !lastValue)
+                    return false;
+
+                rowValues[valueCnt] = toStoredValue(fileText.substring(valueStart, valueEnd));
+                if(rowValues[valueCnt] == null)
+                    return false;
+                valueStart = valueEnd + 1;
+            }
+
+            for(int colCnt = 0; colCnt < numValues; colCnt++)
+                chunkColumns.get(colCnt).add(rowValues[colCnt]);
+            chunkRows++;
+            return true;
+        }
+    }
+
+    String fileText;
+
+    //values in each row - the columns of the table other than id
+    int numValues;
+
+    //most rows the table can still take
+    int maxRows;
+
+    //every row once loaded, column by column
+    List<List<String>> columns;
+    int numRows;
+
+    //set when the file cannot be loaded
+    String errorMessage;
+
+    public DataLoader(int numValues, int maxRows){
+        this.numValues = numValues;
+        this.maxRows = maxRows;
+        fileText = null;
+        columns = new ArrayList<List<String>>(numValues);
+        numRows = 0;
+        errorMessage = null;
+    }
+
+    //returns null if the value would not be a valid literal within a command
+    static String toStoredValue(String value){
+        if(value.isEmpty())
+            return "NULL";
+        for(Rule literalRule : literalRules)
+            if(literalRule.checkText(value))
+                return value;
+        String quotedValue = "'" + value + "'";
+        return SQLSimpGrammar.stringLit.checkText(quotedValue) ? quotedValue : null;
+    }
+
+    //returns false, setting errorMessage, if the file cannot be read or any line is not a valid row
+    public boolean loadFile(File dataFile){
+        try{
+            if(!withinRowLimit(dataFile)){
+                errorMessage = "Table entry limit exceeded.";
+                return false;
+            }
+            fileText = Files.readString(dataFile.toPath(), StandardCharsets.UTF_8);
+        }
+        catch(IOException readExc){
+            errorMessage = "Could not read data file.";
+            return false;
+        }
+
+        List<Callable<ParsedChunk>> chunkTasks = new ArrayList<Callable<ParsedChunk>>();
+        for(int[] chunkBounds : splitChunks())
+            chunkTasks.add(new ParsedChunk(chunkBounds[0], chunkBounds[1]));
+
+        List<ParsedChunk> parsedChunks = new ArrayList<ParsedChunk>(chunkTasks.size());
+        try{
+            for(Future<ParsedChunk> chunkResult : ForkJoinPool.commonPool().invokeAll(chunkTasks))
+                parsedChunks.add(chunkResult.get());
+        }
+        catch(InterruptedException | ExecutionException parseExc){
+            errorMessage = "Could not parse data file.";
+            return false;
+        }
+
+        for(ParsedChunk parsedChunk : parsedChunks){
+            if(parsedChunk.errorPosition >= 0){
+                int lineNumber = findLineNumber(parsedChunk.errorPosition);
+                errorMessage = "Invalid row on line " + lineNumber + " of data file.";
+                return false;
+            }
+            numRows += parsedChunk.chunkRows;
+        }
+        joinChunks(parsedChunks);
+        return true;
+    }
+
+    //counts the rows while streaming the file, stopping once there are too many
+    //so that a huge file is never held in memory or parsed
+    boolean withinRowLimit(File dataFile) throws IOException{
+        try(BufferedReader dataReader = Files.newBufferedReader(dataFile.toPath(), StandardCharsets.UTF_8)){
+            int rowCount = 0;
+            String line;
+            while((line = dataReader.readLine()) != null)
+                if(!line.isEmpty() && ++rowCount > maxRows)
+                    return false;
+        }
+        return true;
+    }
+
+    //chunks end at a line break, so no line is split between two of them
+    List<int[]> splitChunks(){
+        int numChunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4,
+                fileText.length() / MIN_CHUNK_CHARS));
+        int chunkLength = fileText.length() / numChunks + 1;
+
+        List<int[]> chunkBounds = new ArrayList<int[]>(numChunks);
+        int chunkStart = 0;
+        while(chunkStart < fileText.length()){
+            int chunkEnd = fileText.indexOf('\n', Math.min(chunkStart + chunkLength, fileText.length() - 1));
+            chunkEnd = (chunkEnd < 0 ? fileText.length() : chunkEnd + 1);
+            chunkBounds.add(new int[]{chunkStart, chunkEnd});
+            chunkStart = chunkEnd;
+        }
+        return chunkBounds;
+    }
+
+    void joinChunks(List<ParsedChunk> parsedChunks){
+        for(int colCnt = 0; colCnt < numValues; colCnt++){
+            List<String> column = new ArrayList<String>(numRows);
+            for(ParsedChunk parsedChunk : parsedChunks)
+                column.addAll(parsedChunk.chunkColumns.get(colCnt));
+            columns.add(column);
+        }
+    }
+
+    //only needed for reporting an error
+    int findLineNumber(int position){
+        int lineNumber = 1;
+        for(int charPos = 0; charPos < position; charPos++)
+            if(fileText.charAt(charPos) == '\n')
+                lineNumber++;
+        return lineNumber;
+    }
+}
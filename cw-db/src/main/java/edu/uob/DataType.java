@@ -1,6 +1,47 @@
 package edu.uob;
 
+import java.util.*;
+
+//types of column sent in binary result sets
+//values are only sent as numbers if they print back to exactly the same text
+//so a column mixing integers and decimals is sent as strings, as "65" would come back as "65.0"
 public enum DataType{
+    INTEGER,
     DOUBLE,
     STRING;
+
+    static final String NULL_VALUE = "NULL";
+
+    //finds the type which holds every value in the list
+    public static DataType inferType(List<String> values){
+        DataType colType = null;
+        for(String value : values){
+            DataType valueType = inferType(value);
+            if(valueType == null || valueType == colType)
+                continue;
+            if(colType != null)
+                return STRING;
+            colType = valueType;
+        }
+        return colType == null ? INTEGER : colType;
+    }
+
+    //returns null for NULL, which fits any type as it is sent as a null
+    public static DataType inferType(String value){
+        if(value.equals(NULL_VALUE))
+            return null;
+        if(!ArrListTable.mightBeNumeric(value))
+            return STRING;
+        try{
+            if(Long.toString(Long.parseLong(value)).equals(value))
+                return INTEGER;
+        }
+        catch(NumberFormatException notLong){}
+        try{
+            if(Double.toString(Double.parseDouble(value)).equals(value))
+                return DOUBLE;
+        }
+        catch(NumberFormatException notDouble){}
+        return STRING;
+    }
 }
@@ -1,28 +1,92 @@
 package edu.uob;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 public class DatabaseHandler{
+    //commands are limited to this many tokens
+    static final int MAX_COMMAND_TOKENS = 1000;
+
+    //an INSERT of many rows is limited by its length instead - the most either server takes in one request
+    static final int MAX_INSERT_LENGTH = 1024 * 1024;
+
+    //rows each table may hold
+    static final int MAX_TABLE_ROWS = 1000;
+
     String fileSep = File.separator;
     
     //folder within which all data is stored
     String parentFolderPath;
     
-    //database file information
+    //database file information - each session selects its own database
     String databaseName;
     String databasePath;
     File databaseFile;
     
     //table handler - deals with all table operations
     TableHandler tableHandler;
+
+    //state shared with every other session
+    TableStore tableStore;
+
+    //tables kept in memory between commands
+    TableCache tableCache;
+
+    //logs of changes made to tables since they were last saved
+    LogManager logManager;
+
+    //rewrites changed table files in the background
+    TableFlusher tableFlusher;
+
+    //parsed commands of this session, so repeated commands only have their literals bound
+    PlanCache planCache;
+
+    //commands prepared by this session, by lower case name
+    Map<String, PreparedCommand> preparedCommands;
     
     public DatabaseHandler(String parentFolderPath){
-        this.parentFolderPath = parentFolderPath;
+        this(new TableStore(parentFolderPath));
+    }
+
+    public DatabaseHandler(String parentFolderPath, long cacheMemoryBudget){
+        this(new TableStore(parentFolderPath, cacheMemoryBudget));
+    }
+
+    //a new session over tables shared with other sessions, with no database selected
+    public DatabaseHandler(TableStore tableStore){
+        this.tableStore = tableStore;
+        parentFolderPath = tableStore.parentFolderPath;
         databaseName = databasePath = null;
         databaseFile = null;
+        tableCache = tableStore.tableCache;
+        logManager = tableStore.logManager;
+        tableFlusher = tableStore.tableFlusher;
         tableHandler = new TableHandler(parentFolderPath);
         tableHandler.setDatabaseName(null);
+        tableHandler.setLogManager(logManager);
+        tableHandler.setTableFlusher(tableFlusher);
+        planCache = new PlanCache();
+        preparedCommands = new HashMap<String, PreparedCommand>();
+    }
+
+    public long getPlanCacheHits(){
+        return planCache.getHits();
+    }
+
+    public long getPlanCacheMisses(){
+        return planCache.getMisses();
+    }
+
+    public void setDurabilityMode(DurabilityMode durabilityMode, long groupCommitMillis){
+        tableStore.setDurabilityMode(durabilityMode, groupCommitMillis);
+    }
+
+    //closes the shared tables, so should only be called once no other session is running
+    public void close(){
+        tableStore.close();
     }
 
     //updates databaseName, databasePath, databaseFile
@@ -56,6 +120,10 @@ public class DatabaseHandler{
         if(!fileOfDB.exists())
             return false;
         
+        //stop writing to any logs or table files within the database
+        tableFlusher.discardDatabase(selectedDB);
+        logManager.closeLogsInFolder(fileOfDB);
+
         //delete any subfiles if present
         File [] subFiles = fileOfDB.listFiles();
         if(subFiles != null)
@@ -64,6 +132,9 @@ public class DatabaseHandler{
         
         //delete directory
         fileOfDB.delete();
+
+        //no tables from the deleted database should remain cached
+        tableCache.invalidateDatabase(selectedDB);
         
         //if you deleted the "current" database
         //then set all file references to null
@@ -78,83 +149,169 @@ public class DatabaseHandler{
     
     //returns false if errors encountered responding to command
     public String respondToCommand(String commandStr){
-        //string to tokens
-        List<Token> commandToks = Tokeniser.extractTokens(commandStr);
+        return runCommand(commandStr).toText();
+    }
 
-        //if token list too long ignore request
-        if(commandToks.size() > 1000)
-            return "[ERROR]\nCommand length exceeds limit.\n";
-        
-        //tokens to parse tree
-        Node parseTree = SQLSimpGrammar.command.parseTokens(commandToks, 0);
-        
-        //parsing failure means return false
-        if(parseTree == null)
-            return "[ERROR]\nParsing failure. Please check command syntax.\n";
+    //as respondToCommand, but keeping any result table for the binary protocol
+    public CommandResult runCommand(String commandStr){
+        //a command of a shape already seen is bound to its plan, skipping tokenising and parsing
+        StringBuilder shapeBuilder = new StringBuilder(commandStr.length());
+        List<Token> literals = Tokeniser.extractLiterals(commandStr, shapeBuilder);
+        String commandShape = shapeBuilder.toString();
+        SQLCommand command = planCache.bindPlan(commandShape, literals);
 
-        //check reserved words are not being used
-        if(!parseTree.checkNoReservedWordsUsed())
-            return "[ERROR]\nCannot use SQL reserved words for attribute, table or database names.\n";
+        if(command == null){
+            //string to tokens
+            List<Token> commandToks = Tokeniser.extractTokens(commandStr);
+
+            //if token list too long ignore request
+            if(commandToks.size() > MAX_COMMAND_TOKENS && !isInsertWithinLimit(commandStr, commandToks))
+                return CommandResult.fromResponse("[ERROR]\nCommand length exceeds limit.\n");
+
+            //tokens to a parse tree
+            Node parseTree = new Parser(commandToks, 0).parseRule(SQLSimpGrammar.command);
+
+            //parsing failure means return false
+            if(parseTree == null)
+                return CommandResult.fromResponse("[ERROR]\nParsing failure. Please check command syntax.\n");
+            command = SQLCommand.fromParseTree(parseTree);
+            if(command == null)
+                return CommandResult.fromResponse("[ERROR]\nCommand Execution Failure\n");
+
+            //check reserved words are not being used
+            if(!command.checkNoReservedWordsUsed())
+                return CommandResult.fromResponse(
+                    "[ERROR]\nCannot use SQL reserved words for attribute, table or database names.\n");
+
+            //a prepared command keeps its tree, so it must not be shared with the plan cache
+            if(command.commandType != SQLCommand.CommandType.PREPARE)
+                planCache.putPlan(commandShape, parseTree, literals.size());
+        }
+
+        //EXECUTE runs the prepared command with its values
+        if(command.commandType == SQLCommand.CommandType.EXECUTE){
+            SQLCommand.ExecuteCommand executeCommand = (SQLCommand.ExecuteCommand) command;
+            PreparedCommand prepared = preparedCommands.get(executeCommand.statementName.toLowerCase());
+            if(prepared == null)
+                return CommandResult.fromResponse("[ERROR]\nPrepared command does not exist.\n");
+            command = prepared.bind(executeCommand.values);
+            if(command == null)
+                return CommandResult.fromResponse("[ERROR]\nWrong number of values for prepared command.\n");
+        }
+
+        //commands only wait for others using the same tables, and readers never wait for each other
+        List<Lock> heldLocks = lockForCommand(command);
+        try{
+            return executeCommand(command);
+        }finally{
+            tableStore.lockManager.unlockAll(heldLocks);
+        }
+    }
+
+    static boolean isInsertWithinLimit(String commandStr, List<Token> commandToks){
+        return SQLSimpGrammar.insertLit.checkToken(commandToks.get(0)) && commandStr.length() <= MAX_INSERT_LENGTH;
+    }
+
+    //creating or dropping a database or table waits for every other command
+    //otherwise commands changing a table lock it exclusively, while SELECT and JOIN read snapshots
+    List<Lock> lockForCommand(SQLCommand command){
+        LockManager lockManager = tableStore.lockManager;
+        if(command.changesCatalog())
+            return lockManager.lockCatalog();
+
+        //without a database the command fails before reading any table
+        List<String> tableNames = new ArrayList<String>();
+        if(databaseName != null && !command.isReadOnly())
+            for(String tableName : command.tableNames)
+                tableNames.add(tableName.toLowerCase());
+        return lockManager.lockTables(databaseName, tableNames, true);
+    }
+
+    public CommandResult executeCommand(SQLCommand command){
+        switch(command.commandType){
+            case USE:
+                return CommandResult.fromResponse(useCommand(command));
+            case CREATE_DATABASE:
+                return CommandResult.fromResponse(createDatabaseCommand(command));
+            case DROP_DATABASE:
+                return CommandResult.fromResponse(dropDatabaseCommand(command));
+            case FLUSH:
+                return CommandResult.fromResponse(flushCommand());
+            case PREPARE:
+                return CommandResult.fromResponse(prepareCommand((SQLCommand.PrepareCommand) command));
+            case EXECUTE:
+                return CommandResult.fromResponse("[ERROR]\nCommand Execution Failure\n");
+            default:
+        }
 
-        if(parseTree.findByRuleName(RuleName.USE) != null)
-            return useCommand(parseTree);
-        
-        else if(parseTree.findByRuleName(RuleName.CREATE_DB) != null)
-            return createDatabaseCommand(parseTree);
-        
-        else if(parseTree.findByRuleName(RuleName.DROP_DB) != null)
-            return dropDatabaseCommand(parseTree);
-        
         //attempting non-database commands without database specified gives error
-        else if(databaseName == null)
-            return "[ERROR]\nPlease specify database.\n";
+        if(databaseName == null)
+            return CommandResult.fromResponse("[ERROR]\nPlease specify database.\n");
         
-        String nameOfTable = parseTree.findTokenString(RuleName.TABLE_NAME).toLowerCase();
-        boolean tableExists = tableHandler.checkTableExists(nameOfTable);
+        String nameOfTable = command.getTableName();
+        boolean tableExists = tableCache.containsTable(databaseName, nameOfTable)
+            || tableHandler.checkTableExists(nameOfTable);
         
-        if(parseTree.findByRuleName(RuleName.CREATE_TABLE) != null)
-            return createTableCommand(parseTree, nameOfTable, tableExists);
+        if(command.commandType == SQLCommand.CommandType.CREATE_TABLE)
+            return CommandResult.fromResponse(createTableCommand((SQLCommand.CreateTableCommand) command,
+                nameOfTable, tableExists));
         
         //all the commands below need tableExists to be true
         if(!tableExists)
-            return "[ERROR]\nTable does not exist. Check database correctly set.\n";
+            return CommandResult.fromResponse("[ERROR]\nTable does not exist. Check database correctly set.\n");
         
-        if(parseTree.findByRuleName(RuleName.DROP_TABLE) != null)
-            return dropTableCommand(nameOfTable);
+        if(command.commandType == SQLCommand.CommandType.DROP_TABLE)
+            return CommandResult.fromResponse(dropTableCommand(nameOfTable));
         
         //load the table for the subsequent commands
         tableHandler.setTableName(nameOfTable);
-        tableHandler.loadTable();
-        
-        if(parseTree.findByRuleName(RuleName.ALTER) != null)
-            return alterCommand(parseTree);
-
-        else if(parseTree.findByRuleName(RuleName.JOIN) != null)
-            return joinCommand(parseTree);
-
-        //for all remaining commands the attributes must exist
-        //check all attributes within the command exist
-        if(!parseTree.checkAttributesExist(tableHandler.currTable))
-            return "[ERROR]\nNot all specified attributes exist.\n";
-
-        if(parseTree.findByRuleName(RuleName.INSERT) != null)
-            return insertCommand(parseTree);
-        
-        else if(parseTree.findByRuleName(RuleName.SELECT) != null)
-            return selectCommand(parseTree);
-        
-        else if(parseTree.findByRuleName(RuleName.UPDATE) != null)
-            return updateCommand(parseTree);
+        if(command.isReadOnly())
+            loadSnapshot(tableHandler);
+        else
+            loadCachedTable(tableHandler);
 
-        else if(parseTree.findByRuleName(RuleName.DELETE) != null)
-            return deleteCommand(parseTree);
+        //for inserts, selects, updates and deletes the attributes must exist
+        if(command.commandType == SQLCommand.CommandType.INSERT
+            || command.commandType == SQLCommand.CommandType.SELECT
+            || command.commandType == SQLCommand.CommandType.UPDATE
+            || command.commandType == SQLCommand.CommandType.DELETE)
+            if(!command.checkAttributesExist(tableHandler.currTable))
+                return CommandResult.fromResponse("[ERROR]\nNot all specified attributes exist.\n");
 
-        else
-            return "[ERROR]\nCommand Execution Failure\n";          
+        //each command type has its own class
+        switch(command.commandType){
+            case ALTER:
+                return CommandResult.fromResponse(alterCommand((SQLCommand.AlterCommand) command));
+            case JOIN:
+                return joinCommand((SQLCommand.JoinCommand) command);
+            case CREATE_INDEX:
+                return CommandResult.fromResponse(createIndexCommand((SQLCommand.CreateIndexCommand) command));
+            case DROP_INDEX:
+                return CommandResult.fromResponse(dropIndexCommand((SQLCommand.DropIndexCommand) command));
+            case INSERT:
+                return CommandResult.fromResponse(insertCommand((SQLCommand.InsertCommand) command));
+            case SELECT:
+                return selectCommand((SQLCommand.SelectCommand) command);
+            case UPDATE:
+                return CommandResult.fromResponse(updateCommand((SQLCommand.UpdateCommand) command));
+            case DELETE:
+                return CommandResult.fromResponse(deleteCommand((SQLCommand.DeleteCommand) command));
+            case LOAD:
+                return CommandResult.fromResponse(loadDataCommand((SQLCommand.LoadCommand) command));
+            default:
+                return CommandResult.fromResponse("[ERROR]\nCommand Execution Failure\n");
+        }
     }
     
-    public String useCommand(Node parseTree){
-        String nameOfDB = parseTree.findTokenString(RuleName.DB_NAME).toLowerCase();
+    //replaces any command prepared with the same name
+    public String prepareCommand(SQLCommand.PrepareCommand command){
+        preparedCommands.put(command.statementName.toLowerCase(),
+            new PreparedCommand(command.preparedCommand, command.numParameters));
+        return "[OK]\n";
+    }
+
+    public String useCommand(SQLCommand command){
+        String nameOfDB = command.databaseName.toLowerCase();
 
         //get a file object to check if database exists
         File fileOfDB = new File(parentFolderPath + fileSep + nameOfDB);
@@ -168,8 +325,8 @@ public class DatabaseHandler{
         }
     }
     
-    public String createDatabaseCommand(Node parseTree){
-        String nameOfDB = parseTree.findTokenString(RuleName.DB_NAME).toLowerCase();
+    public String createDatabaseCommand(SQLCommand command){
+        String nameOfDB = command.databaseName.toLowerCase();
 
         //get a file object to check if database exists
         File fileOfDB = new File(parentFolderPath + fileSep + nameOfDB);
@@ -183,28 +340,33 @@ public class DatabaseHandler{
         }
     }
     
-    public String dropDatabaseCommand(Node parseTree){
-        String nameOfDB = parseTree.findTokenString(RuleName.DB_NAME).toLowerCase();
+    public String dropDatabaseCommand(SQLCommand command){
+        String nameOfDB = command.databaseName.toLowerCase();
         if(!deleteDatabaseDir(nameOfDB))
             return "[ERROR]\nPlease check database exists.\n";
+        tableStore.lockManager.removeDatabaseLocks(nameOfDB);
+        return "[OK]\n";
+    }
+    
+    //writes out all changed tables rather than waiting for the flusher
+    public String flushCommand(){
+        if(!tableFlusher.flushAll())
+            return "[ERROR]\nFailed to write out all tables.\n";
         return "[OK]\n";
     }
     
-    public String createTableCommand(Node parseTree, String nameOfTable, boolean tableExists){
+    public String createTableCommand(SQLCommand.CreateTableCommand command, String nameOfTable,
+                                     boolean tableExists){
         //check whether table already exists
         if(tableExists)
             return "[ERROR]\nTable already exists.\n";
         
-        //get all the attributes from the command
-        List<String> tableAttributes = parseTree.getAttributesOrVals(RuleName.ATTRIBUTE);
-        String[] attributeArray = getStringArray(tableAttributes);
-        
         //then set the table name in table handler
         tableHandler.setTableName(nameOfTable);
         
         //create table with attributes if that is the command
-        if(parseTree.findByRuleName(RuleName.CR_TABLE_ATTR) != null)
-            tableHandler.createTable(attributeArray);
+        if(command.columnNames != null)
+            tableHandler.createTable(getStringArray(command.columnNames));
         else
             tableHandler.createTable();
         return "[OK]\n";
@@ -215,24 +377,31 @@ public class DatabaseHandler{
         //then remove all references within tableHandler
         if(nameOfTable.equals(tableHandler.getTableName()))
             tableHandler.setDatabaseName(databaseName);
+
+        tableFlusher.discardTable(databaseName, nameOfTable);
+        tableCache.invalidateTable(databaseName, nameOfTable);
+        tableStore.lockManager.removeTableLock(databaseName, nameOfTable);
         
         if(tableHandler.deleteTable(nameOfTable))
             return "[OK]\n";
         else return "[ERROR]\nCould not delete table.\n";
     }
     
-    public String alterCommand(Node parseTree){
-        String alterationType = parseTree.findTokenString(RuleName.ALTERATION_TYPE);
-        String colName = parseTree.findTokenString(RuleName.ATTRIBUTE);
+    public String alterCommand(SQLCommand.AlterCommand command){
+        String colName = command.columnName;
         
-        if(alterationType.equalsIgnoreCase("ADD")){
+        if(command.isAdd){
             if(tableHandler.currTable.checkAttributeExists(colName)){
                 return "[ERROR]\nColumn already exists.\n";
             }else if(tableHandler.currTable.getNumAttributes() >= 100)
                 return "[ERROR]\nTable attribute limit exceeded.\n";
             else{
-                tableHandler.currTable.addColumn(colName);
-                tableHandler.saveTable();
+                synchronized(tableHandler.currTable){
+                    tableHandler.currTable.addColumn(colName);
+                    tableHandler.saveTable();
+                }
+                tableFlusher.discardTable(databaseName, tableHandler.getTableName());
+                tableCache.invalidateTable(databaseName, tableHandler.getTableName());
                 return "[OK]\n";
             }    
         }
@@ -244,202 +413,276 @@ public class DatabaseHandler{
             }else if(colName.equalsIgnoreCase("ID")){
                 return "[ERROR]\nCannot delete ID column.\n";
             }else{
-                tableHandler.currTable.removeColumn(colName);
-                tableHandler.saveTable();
+                synchronized(tableHandler.currTable){
+                    tableHandler.currTable.removeColumn(colName);
+                    tableHandler.saveTable();
+                    //any indexes on the column went with it
+                    tableHandler.saveIndexes();
+                }
+                tableFlusher.discardTable(databaseName, tableHandler.getTableName());
+                tableCache.invalidateTable(databaseName, tableHandler.getTableName());
                 return "[OK]\n";
             } 
         }
     }
     
-    public String insertCommand(Node parseTree){
-        //get all the values from the command
-        List<String> tableVals = parseTree.getAttributesOrVals(RuleName.VALUE);
-        String[] valueArray = getStringArray(tableVals);
+    public String createIndexCommand(SQLCommand.CreateIndexCommand command){
+        String colName = command.columnName;
+        IndexType indexType = command.indexType;
+
+        if(!tableHandler.currTable.checkAttributeExists(colName))
+            return "[ERROR]\nColumn does not exist.\n";
+
+        synchronized(tableHandler.currTable){
+            if(!tableHandler.currTable.createIndex(colName, indexType))
+                return "[ERROR]\nIndex already exists.\n";
+            tableHandler.currTable.publishSnapshot();
+            if(!tableHandler.saveIndexes())
+                return "[ERROR]\nCould not save index.\n";
+        }
+        return "[OK]\n";
+    }
+
+    //drops every index on the column
+    public String dropIndexCommand(SQLCommand.DropIndexCommand command){
+        String colName = command.columnName;
+
+        synchronized(tableHandler.currTable){
+            if(!tableHandler.currTable.dropIndexes(colName))
+                return "[ERROR]\nNo index exists on that column.\n";
+            tableHandler.currTable.publishSnapshot();
+            if(!tableHandler.saveIndexes())
+                return "[ERROR]\nCould not save index.\n";
+        }
+        return "[OK]\n";
+    }
+    
+    //all the rows are added together, logged as one record and published as one snapshot
+    public String insertCommand(SQLCommand.InsertCommand command){
+        List<String[]> rows = command.getRows();
 
         //cannot insert if row limit exceeded
-        if(tableHandler.currTable.getNumEntries() >= 1000)
+        if(tableHandler.currTable.getNumLiveEntries() + rows.size() > MAX_TABLE_ROWS)
             return "[ERROR]\nTable entry limit exceeded.\n";
         
-        if(tableHandler.currTable.addRow(valueArray, false)){
-            tableHandler.saveTable();
+        //the flusher may be writing the table out at the same time
+        boolean rowsAdded;
+        synchronized(tableHandler.currTable){
+            int firstRow = tableHandler.currTable.getNumEntries() + 1;
+            rowsAdded = tableHandler.currTable.addRows(rows);
+            if(rowsAdded){
+                tableHandler.logInserts(firstRow);
+                tableHandler.currTable.publishSnapshot();
+            }
+        }
+
+        if(rowsAdded){
+            tableCache.refreshTable(databaseName, tableHandler.getTableName());
             return "[OK]\n";
         }else{
             return "[ERROR]\nFailed to add values. Check number of columns correct.\n";
         }
     }
     
-    public String selectCommand(Node parseTree){
-        //create an array of all true values
-        boolean selectAll[] = new boolean[tableHandler.currTable.getNumEntries()];
-        Arrays.fill(selectAll, true);
-        
-        //create a copy of the table
-        TableStructure outputTable = tableHandler.currTable.selectRows(selectAll);
-        
-        if(parseTree.findByRuleName(RuleName.SELECT_COND) != null){
-            //evaluate the condition for each row
-            boolean condSelection[] = generateSelection(parseTree);
+    //the whole file is read and checked before the table is changed, then the table is saved once
+    //relative paths are within the folder holding the databases
+    public String loadDataCommand(SQLCommand.LoadCommand command){
+        File dataFile = getDataFile(command.filePath);
+        if(dataFile == null)
+            return "[ERROR]\nData file must be within the databases folder.\n";
+
+        //the loader stops before parsing a file with more rows than the table can take
+        int maxRows = MAX_TABLE_ROWS - tableHandler.currTable.getNumLiveEntries();
+        DataLoader dataLoader = new DataLoader(tableHandler.currTable.getNumAttributes() - 1, maxRows);
+        if(!dataLoader.loadFile(dataFile))
+            return "[ERROR]\n" + dataLoader.errorMessage + "\n";
 
-            //perform the selection
-            outputTable = outputTable.selectRows(condSelection);
+        boolean tableSaved;
+        synchronized(tableHandler.currTable){
+            tableHandler.currTable.addColumnValues(dataLoader.columns, dataLoader.numRows);
+            tableSaved = tableHandler.saveTable();
+            tableHandler.currTable.publishSnapshot();
         }
-        
-        //get the attributes for filtering the columns
-        Node wildAttrList = parseTree.findByRuleName(RuleName.WILD_ATTR_LIST);
-        List<String> attributesList = wildAttrList.getAttributesOrVals(RuleName.ATTRIBUTE);
+        tableFlusher.discardTable(databaseName, tableHandler.getTableName());
+        tableCache.refreshTable(databaseName, tableHandler.getTableName());
+        return tableSaved ? "[OK]\n" : "[ERROR]\nCould not save table.\n";
+    }
+    
+    //resolves the path against the databases folder, returning null if it would lead outside of it
+    //so that a client can only load files which were placed with the databases
+    File getDataFile(String filePath){
+        try{
+            File parentFolder = new File(parentFolderPath).getCanonicalFile();
+            File dataFile = parentFolder.toPath().resolve(filePath).toFile().getCanonicalFile();
+            if(!dataFile.toPath().startsWith(parentFolder.toPath()) || dataFile.equals(parentFolder))
+                return null;
+            return dataFile;
+        }
+        catch(IOException | InvalidPathException pathExc){
+            return null;
+        }
+    }
+
+    public CommandResult selectCommand(SQLCommand.SelectCommand command){
+        //evaluate the condition for each row, or select every row
+        boolean selection[];
+        if(command.condition != null){
+            selection = generateSelection(compileCondition(command, command.condition));
+        }else{
+            selection = new boolean[tableHandler.currTable.getNumEntries()];
+            Arrays.fill(selection, true);
+        }
+
+        //the selected rows are copied once, straight from the snapshot
+        TableStructure outputTable = tableHandler.currTable.selectRows(selection);
         
         //filter table by columns specified if no asterisk in command
-        if(parseTree.findByRuleName(RuleName.ASTERISK_LITERAL) == null){
-            ArrListTable attrTable = new ArrListTable("");
-            
-            //remove "id" column added by default in constructor
-            attrTable.tableData.remove(0);
-            
+        if(command.columnNames != null){
             //add all selected columns in order
-            for(String colName : attributesList)
-                attrTable.tableData.add(outputTable.getColumn(colName));
+            List<List<String>> selectedColumns = new ArrayList<List<String>>();
+            for(String colName : command.columnNames)
+                selectedColumns.add(outputTable.getColumn(colName));
             
-            //finally - add the idValues list and update reference
-            attrTable.idValues = outputTable.getIDValues();
-            outputTable = attrTable;
+            //the idValues list is shared with the selection
+            outputTable = ArrListTable.fromColumns("", selectedColumns, outputTable.getIDValues());
         }
                 
-        //print table
-        return "[OK]\n" + outputTable.printTable();
+        return CommandResult.ofTable(outputTable);
     }
     
-    public String updateCommand(Node parseTree){
-        //get the name value list node
-        Node nameValPair = parseTree.findByRuleName(RuleName.NAME_VALUE_LIST);
-        
-        //get the attributes within name value list
-        List<String> attributesList = nameValPair.getAttributesOrVals(RuleName.ATTRIBUTE);
-        String[] attrArray = getStringArray(attributesList);
-
+    public String updateCommand(SQLCommand.UpdateCommand command){
         //prevent "ID" from being changed
-        for(String attr : attributesList)
+        for(String attr : command.columnNames)
             if(attr.equalsIgnoreCase("ID"))
                 return "[ERROR]\nThe ID column cannot be changed.\n";
 
-        //get the values within name value list
-        List<String> valuesList = nameValPair.getAttributesOrVals(RuleName.VALUE);
-        String[] valueArray = getStringArray(valuesList);
-        
         //get 2d array of attributes and values
-        String[][] nameValPairs = {attrArray, valueArray};
+        String[][] nameValPairs = {getStringArray(command.columnNames), getStringArray(command.values)};
         
         //perform conditional selection
-        boolean[] condSelection = generateSelection(parseTree);
+        boolean[] condSelection = generateSelection(compileCondition(command, command.condition));
 
         //finally - update the values
-        tableHandler.currTable.updateTable(condSelection, nameValPairs);
-        tableHandler.saveTable();
+        synchronized(tableHandler.currTable){
+            tableHandler.currTable.updateTable(condSelection, nameValPairs);
+            tableHandler.logUpdate(condSelection, nameValPairs);
+            tableHandler.currTable.publishSnapshot();
+        }
+        tableCache.refreshTable(databaseName, tableHandler.getTableName());
         return "[OK]\n";
     }
     
-    public String deleteCommand(Node parseTree){
+    public String deleteCommand(SQLCommand.DeleteCommand command){
         //evaluate the condition for each row
-        boolean condSelection[] = generateSelection(parseTree);
-
-        //delete the matching rows
-        //go in reverse order to avoid messing up the progression with rowCnt
-        for(int rowCnt = tableHandler.currTable.getNumEntries(); rowCnt >= 1; rowCnt--)
-            if(condSelection[rowCnt - 1])
-                tableHandler.currTable.removeRow(rowCnt);
+        boolean condSelection[] = generateSelection(compileCondition(command, command.condition));
+        List<Integer> deletedIDs = tableHandler.getSelectedIDs(condSelection);
 
-        tableHandler.saveTable();
+        //mark the matching rows as deleted in a single pass
+        synchronized(tableHandler.currTable){
+            tableHandler.currTable.removeRows(condSelection);
+            tableHandler.logDelete(deletedIDs);
+            tableHandler.currTable.publishSnapshot();
+        }
+        tableCache.refreshTable(databaseName, tableHandler.getTableName());
         
         return "[OK]\n";
     }
     
-    public String joinCommand(Node parseTree){
-        //get the table names
-        List <String> tableNames = parseTree.getAttributesOrVals(RuleName.TABLE_NAME);
-
+    public CommandResult joinCommand(SQLCommand.JoinCommand command){
         //convert table names to lowercase
-        tableNames.set(0, tableNames.get(0).toLowerCase());
-        tableNames.set(1, tableNames.get(1).toLowerCase());
+        List<String> tableNames = new ArrayList<String>(2);
+        tableNames.add(command.tableNames.get(0).toLowerCase());
+        tableNames.add(command.tableNames.get(1).toLowerCase());
 
         //check tables exist
         if(!tableHandler.checkTableExists(tableNames.get(0))
             || !tableHandler.checkTableExists(tableNames.get(1)))
-            return "[ERROR]\nCheck both tables exist within database.\n";
+            return CommandResult.fromResponse("[ERROR]\nCheck both tables exist within database.\n");
 
         //load both tables
         TableHandler handler1 = new TableHandler(databaseName, tableNames.get(0), parentFolderPath);
         TableHandler handler2 = new TableHandler(databaseName, tableNames.get(1), parentFolderPath);
-        handler1.loadTable();
-        handler2.loadTable();
+        loadSnapshot(handler1);
+        loadSnapshot(handler2);
         
-        //get the attribute names
-        List <String> attrNames = parseTree.getAttributesOrVals(RuleName.ATTRIBUTE);
-        String attr1 = attrNames.get(0);
-        String attr2 = attrNames.get(1);
+        String attr1 = command.firstAttribute;
+        String attr2 = command.secondAttribute;
         
         //check attributes exist
         if(!handler1.currTable.checkAttributeExists(attr1)
             || !handler2.currTable.checkAttributeExists(attr2))
-            return "[ERROR]\nNon-existent attribute(s) within table(s).\n";
+            return CommandResult.fromResponse("[ERROR]\nNon-existent attribute(s) within table(s).\n");
 
-        //create table for join result
-        String[] attrArray = getJoinedRow(handler1.currTable, handler2.currTable,
-                0, 0, true);
-        TableStructure joinTable = new ArrListTable("", attrArray);
-        
-        //go over all the rows from both tables an perform join
-        for(int rowCnt1 = 1; rowCnt1 <= handler1.currTable.getNumEntries(); rowCnt1++)
-            for(int rowCnt2 = 1; rowCnt2 <= handler2.currTable.getNumEntries(); rowCnt2++){
-                String valueTable1 = handler1.currTable.getColumn(attr1).get(rowCnt1);
-                String valueTable2 = handler2.currTable.getColumn(attr2).get(rowCnt2);
-                //perform simple string comparison as discussed in Teams
-                if(valueTable1.equals(valueTable2))
-                    joinTable.addRow(getJoinedRow(handler1.currTable, handler2.currTable,
-                            rowCnt1, rowCnt2, false), false);
-            }
-        
-        //finally - remove the attributes used to perform the join
-        //but only remove them if they are not "id"
-        if(!attr1.equalsIgnoreCase("ID"))
-            joinTable.removeColumn(handler1.getTableName() + "." + attr1);
-        if(!attr2.equalsIgnoreCase("ID"))
-            joinTable.removeColumn(handler2.getTableName() + "." + attr2);
-        
-        return "[OK]\n" + joinTable.printTable();        
+        //hash join, projecting only the columns which appear in the result
+        ArrListTable joinTable = new HashJoin(handler1.currTable, attr1, handler2.currTable, attr2)
+                .joinTables();
+        return CommandResult.ofTable(joinTable);
     }
     
-    //note this excludes id columns from the join
-    public String[] getJoinedRow(TableStructure table1, TableStructure table2, int rowCnt1,
-                                 int rowCnt2, boolean prependName){
-        String[] row1 = table1.getRow(rowCnt1);
-        String[] row2 = table2.getRow(rowCnt2);
-        String tableName1 = table1.getTableName();
-        String tableName2 = table2.getTableName();
-        
-        //prepend all table attributes with respective table names
-        if(prependName){
-            for(int attCnt = 0; attCnt < row1.length; attCnt++)
-                row1[attCnt] = tableName1 + "." + row1[attCnt];
-            for(int attCnt = 0; attCnt < row2.length; attCnt++)
-                row2[attCnt] = tableName2 + "." + row2[attCnt];
+    //loads the handler's table from the cache, falling back to the table file
+    //returns false if the table had to be read from file and the load failed
+    public boolean loadCachedTable(TableHandler handler){
+        //sessions reading the same table at once should only load it once
+        synchronized(tableStore.lockManager.getTableLock(databaseName, handler.getTableName())){
+            ArrListTable cachedTable = tableCache.getTable(databaseName, handler.getTableName());
+            if(cachedTable != null){
+                handler.currTable = cachedTable;
+                return true;
+            }
+
+            //only cache tables which were loaded completely
+            if(!handler.loadTable())
+                return false;
+            tableCache.putTable(databaseName, handler.currTable);
+            return true;
         }
-        
-        String[] joinedRow = new String[row1.length + row2.length - 2];
-        System.arraycopy(row1, 1, joinedRow, 0, row1.length - 1);
-        System.arraycopy(row2, 1, joinedRow, row1.length - 1, row2.length - 1);
-        return joinedRow;
     }
-    
-    public boolean[] generateSelection(Node parseTree){
+
+    //points the handler at the last published version of its table, which is never changed
+    //the table lock is only taken if the table has to be loaded from file
+    public boolean loadSnapshot(TableHandler handler){
+        ArrListTable cachedTable = tableCache.getTable(databaseName, handler.getTableName());
+        if(cachedTable == null){
+            Lock readLock = tableStore.lockManager
+                .getTableLock(databaseName, handler.getTableName()).readLock();
+            readLock.lock();
+            try{
+                if(!loadCachedTable(handler))
+                    return false;
+            }finally{
+                readLock.unlock();
+            }
+            cachedTable = handler.currTable;
+        }
+        handler.currTable = cachedTable.getSnapshot();
+        return true;
+    }
+
+    //compiles the CONDITION node of the command for the current table
+    //prepared commands keep theirs compiled between runs
+    RowPredicate compileCondition(SQLCommand command, Node condNode){
+        if(command.prepared != null)
+            return command.prepared.getCondition(tableHandler.currTable);
+        return ConditionCompiler.compile(condNode, tableHandler.currTable);
+    }
+
+    //evaluates a condition compiled once for this table for each row
+    public boolean[] generateSelection(RowPredicate condition){
         boolean condSelection[] = new boolean[tableHandler.currTable.getNumEntries()];
-        
-        //evaluate the condition for each row
-        for(int rowCnt = 1; rowCnt <= tableHandler.currTable.getNumEntries(); rowCnt++){
-            ConditionResult rowResult = parseTree.checkConditionsTrue(tableHandler.currTable, rowCnt);
-            if(rowResult == ConditionResult.TRUE)
-                condSelection[rowCnt - 1] = true;
-            else if(rowResult == ConditionResult.FALSE || rowResult == ConditionResult.INVALID)
-                condSelection[rowCnt - 1] = false;
+        if(condition == null)
+            return condSelection;
+
+        //where indexes narrow down the rows only those rows are checked
+        //deleted rows are never selected
+        BitSet candidateRows = condition.findCandidates();
+        if(candidateRows == null){
+            candidateRows = new BitSet();
+            candidateRows.set(1, tableHandler.currTable.getNumEntries() + 1);
         }
+        for(int rowCnt = candidateRows.nextSetBit(1); rowCnt >= 0;
+                rowCnt = candidateRows.nextSetBit(rowCnt + 1))
+            if(!tableHandler.currTable.isRowDeleted(rowCnt))
+                condSelection[rowCnt - 1] = condition.matches(rowCnt);
         
         return condSelection;
     }
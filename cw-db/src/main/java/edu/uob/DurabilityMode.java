@@ -0,0 +1,7 @@
+package edu.uob;
+
+public enum DurabilityMode{
+    FSYNC_PER_COMMAND, //log forced to disk before each command returns
+    GROUP_COMMIT, //each command waits for the log to be forced by a background thread every few milliseconds
+    NO_FSYNC; //log left to the operating system to write out
+}
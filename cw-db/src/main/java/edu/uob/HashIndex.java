@@ -0,0 +1,81 @@
+package edu.uob;
+
+import java.util.*;
+
+//answers "==" and "!=" only
+//numbers are hashed by which band of width epsilon they fall in, so that values equal
+//within epsilon are always found in the same or a neighbouring band
+public class HashIndex extends AttributeIndex{
+    Map<Long, List<Integer>> numericRows;
+
+    //strings are hashed with their case folded, as string comparisons ignore case
+    Map<String, List<Integer>> stringRows;
+
+    public HashIndex(String colName){
+        super(colName);
+        numericRows = new HashMap<Long, List<Integer>>();
+        stringRows = new HashMap<String, List<Integer>>();
+    }
+
+    public IndexType getType(){
+        return IndexType.HASH;
+    }
+
+    static long getBand(double numValue){
+        return (long) Math.floor(numValue / ArrListTable.NUMERIC_EPSILON);
+    }
+
+    static String foldCase(String strValue){
+        StringBuilder foldedValue = new StringBuilder(strValue.length());
+        strValue.codePoints().forEach(codePoint -> foldedValue.appendCodePoint(
+                Character.toLowerCase(Character.toUpperCase(codePoint))));
+        return foldedValue.toString();
+    }
+
+    public void addValue(String tabValue, int rowNum){
+        Double numValue = parseNumeric(tabValue);
+        if(numValue != null)
+            addRow(numericRows, getBand(numValue), rowNum);
+        else
+            addRow(stringRows, foldCase(tabValue), rowNum);
+    }
+
+    public void removeValue(String tabValue, int rowNum){
+        Double numValue = parseNumeric(tabValue);
+        if(numValue != null)
+            removeRow(numericRows, getBand(numValue), rowNum);
+        else
+            removeRow(stringRows, foldCase(tabValue), rowNum);
+    }
+
+    public void clear(){
+        numericRows.clear();
+        stringRows.clear();
+    }
+
+    public BitSet findCandidates(CondOperator operator, CondValue condValue){
+        BitSet candidates = new BitSet();
+        if(operator == CondOperator.EQUALS){
+            if(condValue.isNumeric){
+                long condBand = getBand(condValue.numericValue);
+                for(long band = condBand - 1; band <= condBand + 1; band++)
+                    addRows(numericRows.getOrDefault(band, List.of()), candidates);
+            }
+            else addRows(stringRows.getOrDefault(foldCase(condValue.valueText), List.of()),
+                    candidates);
+            return candidates;
+        }
+
+        //nearly every row of the same kind is unequal, so all of them are candidates
+        if(operator == CondOperator.NOT_EQUALS){
+            addAllRows((condValue.isNumeric ? numericRows : stringRows).values(), candidates);
+            return candidates;
+        }
+        return null;
+    }
+
+    static void addRows(List<Integer> rows, BitSet candidates){
+        for(int rowNum : rows)
+            candidates.set(rowNum);
+    }
+}
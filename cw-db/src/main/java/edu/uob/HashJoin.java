@@ -0,0 +1,139 @@
+package edu.uob;
+
+import java.util.*;
+
+//equi-join of two tables on one attribute each, using exact string comparison of values
+//the smaller table is hashed and the other one probes it, so each row is only read once
+//output rows keep the order of a nested loop - table 1 row order, then table 2 row order
+public class HashJoin{
+    TableStructure table1;
+    TableStructure table2;
+    int joinCol1;
+    int joinCol2;
+
+    //matching row numbers from each table, one pair per output row
+    int[] matchedRows1;
+    int[] matchedRows2;
+    int numMatches;
+
+    public HashJoin(TableStructure table1, String attr1, TableStructure table2, String attr2){
+        this.table1 = table1;
+        this.table2 = table2;
+        joinCol1 = table1.getColumnIndex(attr1);
+        joinCol2 = table2.getColumnIndex(attr2);
+        matchedRows1 = new int[16];
+        matchedRows2 = new int[16];
+        numMatches = 0;
+    }
+
+    //returns null if either attribute does not exist
+    public ArrListTable joinTables(){
+        if(joinCol1 < 0 || joinCol2 < 0)
+            return null;
+
+        if(table1.getNumLiveEntries() <= table2.getNumLiveEntries())
+            buildOnFirstTable();
+        else
+            buildOnSecondTable();
+        return projectMatches();
+    }
+
+    //maps each value in the join column to the rows holding it, in row order
+    //deleted rows are skipped here and when probing, so they never match
+    static Map<String, List<Integer>> buildHashTable(TableStructure table, int joinCol){
+        Map<String, List<Integer>> hashTable = new HashMap<String, List<Integer>>();
+        for(int rowCnt = 1; rowCnt <= table.getNumEntries(); rowCnt++)
+            if(!table.isRowDeleted(rowCnt))
+                hashTable.computeIfAbsent(table.getValue(joinCol, rowCnt),
+                        newValue -> new ArrayList<Integer>(1)).add(rowCnt);
+        return hashTable;
+    }
+
+    //probing with table 1 gives the matches already in nested loop order
+    void buildOnSecondTable(){
+        Map<String, List<Integer>> hashTable = buildHashTable(table2, joinCol2);
+        for(int rowCnt1 = 1; rowCnt1 <= table1.getNumEntries(); rowCnt1++){
+            if(table1.isRowDeleted(rowCnt1))
+                continue;
+            List<Integer> rows2 = hashTable.get(table1.getValue(joinCol1, rowCnt1));
+            if(rows2 == null)
+                continue;
+            for(int rowCnt2 : rows2)
+                addMatch(rowCnt1, rowCnt2);
+        }
+    }
+
+    //probing with table 2 finds the matches grouped by table 2 row
+    //so they are collected against each table 1 row and then read out in table 1 order
+    void buildOnFirstTable(){
+        Map<String, List<Integer>> hashTable = buildHashTable(table1, joinCol1);
+        List<List<Integer>> rowMatches = new ArrayList<List<Integer>>(table1.getNumEntries() + 1);
+        for(int rowCnt1 = 0; rowCnt1 <= table1.getNumEntries(); rowCnt1++)
+            rowMatches.add(null);
+        for(int rowCnt2 = 1; rowCnt2 <= table2.getNumEntries(); rowCnt2++){
+            if(table2.isRowDeleted(rowCnt2))
+                continue;
+            List<Integer> rows1 = hashTable.get(table2.getValue(joinCol2, rowCnt2));
+            if(rows1 == null)
+                continue;
+            for(int rowCnt1 : rows1){
+                if(rowMatches.get(rowCnt1) == null)
+                    rowMatches.set(rowCnt1, new ArrayList<Integer>(1));
+                rowMatches.get(rowCnt1).add(rowCnt2);
+            }
+        }
+
+        for(int rowCnt1 = 1; rowCnt1 <= table1.getNumEntries(); rowCnt1++){
+            if(rowMatches.get(rowCnt1) == null)
+                continue;
+            for(int rowCnt2 : rowMatches.get(rowCnt1))
+                addMatch(rowCnt1, rowCnt2);
+        }
+    }
+
+    void addMatch(int rowCnt1, int rowCnt2){
+        if(numMatches == matchedRows1.length){
+            matchedRows1 = Arrays.copyOf(matchedRows1, numMatches * 2);
+            matchedRows2 = Arrays.copyOf(matchedRows2, numMatches * 2);
+        }
+        matchedRows1[numMatches] = rowCnt1;
+        matchedRows2[numMatches] = rowCnt2;
+        numMatches++;
+    }
+
+    //builds the result column by column, leaving out both id columns and the join columns
+    //attributes are prefixed with their table name and the result gets new ids from 1
+    ArrListTable projectMatches(){
+        List<List<String>> columns = new ArrayList<List<String>>();
+        List<Integer> idValues = new ArrayList<Integer>(numMatches + 1);
+
+        List<String> idColumn = new ArrayList<String>(numMatches + 1);
+        idColumn.add("id");
+        idValues.add(0);
+        for(int matchCnt = 1; matchCnt <= numMatches; matchCnt++){
+            idColumn.add(Integer.toString(matchCnt));
+            idValues.add(matchCnt);
+        }
+        columns.add(idColumn);
+
+        addProjectedColumns(columns, table1, joinCol1, matchedRows1);
+        addProjectedColumns(columns, table2, joinCol2, matchedRows2);
+
+        ArrListTable joinTable = ArrListTable.fromColumns("", columns, idValues);
+        joinTable.lastAssignedID = numMatches;
+        return joinTable;
+    }
+
+    void addProjectedColumns(List<List<String>> columns, TableStructure table, int joinCol,
+                             int[] matchedRows){
+        for(int colCnt = 1; colCnt < table.getNumAttributes(); colCnt++){
+            if(colCnt == joinCol)
+                continue;
+            List<String> column = new ArrayList<String>(numMatches + 1);
+            column.add(table.getTableName() + "." + table.getValue(colCnt, 0));
+            for(int matchCnt = 0; matchCnt < numMatches; matchCnt++)
+                column.add(table.getValue(colCnt, matchedRows[matchCnt]));
+            columns.add(column);
+        }
+    }
+}
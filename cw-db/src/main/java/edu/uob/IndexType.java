@@ -0,0 +1,7 @@
+package edu.uob;
+
+//hash indexes answer "==" and "!=", sorted indexes also answer range comparisons
+public enum IndexType{
+    HASH,
+    SORTED
+}
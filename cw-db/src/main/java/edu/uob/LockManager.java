@@ -0,0 +1,67 @@
+package edu.uob;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+//reader-writer locks for each table, so commands on different tables or reading the same table run together
+//tables are always locked in name order, so commands locking more than one table cannot deadlock
+//changes to which tables exist lock the whole catalog, which is always taken before any table lock
+public class LockManager{
+    //shared by every table command, held exclusively while databases or tables are created or dropped
+    ReentrantReadWriteLock catalogLock;
+
+    //keyed by database and table name, as in TableCache
+    Map<String, ReentrantReadWriteLock> tableLocks;
+
+    public LockManager(){
+        catalogLock = new ReentrantReadWriteLock();
+        tableLocks = new ConcurrentHashMap<String, ReentrantReadWriteLock>();
+    }
+
+    public ReentrantReadWriteLock getTableLock(String databaseName, String tableName){
+        return tableLocks.computeIfAbsent(TableCache.getKey(databaseName, tableName),
+                newKey -> new ReentrantReadWriteLock());
+    }
+
+    //takes the catalog lock then each table's lock, shared if only reading
+    //returns the locks taken, to be given back to unlockAll
+    public List<Lock> lockTables(String databaseName, List<String> tableNames, boolean exclusive){
+        List<Lock> heldLocks = new ArrayList<Lock>();
+        Lock catalogRead = catalogLock.readLock();
+        catalogRead.lock();
+        heldLocks.add(catalogRead);
+
+        //a table named twice (e.g. joined with itself) is only locked once
+        for(String tableName : new TreeSet<String>(tableNames)){
+            ReentrantReadWriteLock tableLock = getTableLock(databaseName, tableName);
+            Lock heldLock = exclusive ? tableLock.writeLock() : tableLock.readLock();
+            heldLock.lock();
+            heldLocks.add(heldLock);
+        }
+        return heldLocks;
+    }
+
+    //waits for every table command to finish
+    public List<Lock> lockCatalog(){
+        Lock catalogWrite = catalogLock.writeLock();
+        catalogWrite.lock();
+        return new ArrayList<Lock>(List.of(catalogWrite));
+    }
+
+    //releases in the reverse order to which the locks were taken
+    public void unlockAll(List<Lock> heldLocks){
+        for(int lockCnt = heldLocks.size() - 1; lockCnt >= 0; lockCnt--)
+            heldLocks.get(lockCnt).unlock();
+    }
+
+    //only called with the catalog locked, so no command can be holding the locks removed
+    public void removeDatabaseLocks(String databaseName){
+        String keyPrefix = TableCache.getKey(databaseName, "");
+        tableLocks.keySet().removeIf(tableKey -> tableKey.startsWith(keyPrefix));
+    }
+
+    public void removeTableLock(String databaseName, String tableName){
+        tableLocks.remove(TableCache.getKey(databaseName, tableName));
+    }
+}
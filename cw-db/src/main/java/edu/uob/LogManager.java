@@ -0,0 +1,125 @@
+package edu.uob;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+//keeps the table logs open between commands and applies the durability mode
+public class LogManager{
+    static final long DEFAULT_GROUP_COMMIT_MILLIS = 20;
+
+    volatile DurabilityMode durabilityMode;
+    volatile long groupCommitMillis;
+
+    //open logs keyed by log file path
+    Map<String, TableLog> openLogs;
+
+    //only created for group commit
+    ScheduledExecutorService groupCommitter;
+
+    public LogManager(){
+        this(DurabilityMode.NO_FSYNC, DEFAULT_GROUP_COMMIT_MILLIS);
+    }
+
+    public LogManager(DurabilityMode durabilityMode, long groupCommitMillis){
+        openLogs = new ConcurrentHashMap<String, TableLog>();
+        groupCommitter = null;
+        setDurabilityMode(durabilityMode, groupCommitMillis);
+    }
+
+    public synchronized void setDurabilityMode(DurabilityMode durabilityMode, long groupCommitMillis){
+        this.durabilityMode = durabilityMode;
+        this.groupCommitMillis = groupCommitMillis;
+
+        //stop any previous group commit thread, forcing out whatever it had pending
+        if(groupCommitter != null){
+            groupCommitter.shutdown();
+            groupCommitter = null;
+            syncAll();
+        }
+
+        if(durabilityMode == DurabilityMode.GROUP_COMMIT){
+            groupCommitter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread commitThread = new Thread(runnable, "group-commit");
+                commitThread.setDaemon(true);
+                return commitThread;
+            });
+            groupCommitter.scheduleAtFixedRate(this::syncAll, groupCommitMillis,
+                    groupCommitMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public DurabilityMode getDurabilityMode(){
+        return durabilityMode;
+    }
+
+    //returns null if the log cannot be opened
+    public TableLog getLog(File logFile, File tableFile){
+        String logKey = logFile.getAbsolutePath();
+        TableLog tableLog = openLogs.get(logKey);
+        if(tableLog != null)
+            return tableLog;
+
+        tableLog = new TableLog(logFile, tableFile.length());
+        if(!tableLog.open())
+            return null;
+        openLogs.put(logKey, tableLog);
+        return tableLog;
+    }
+
+    //appends a record and makes it as durable as the mode requires
+    //under group commit the committer waits for the next batched sync, so one force covers many commands
+    public boolean appendRecord(TableLog tableLog, String record){
+        long recordNumber = tableLog.append(record);
+        if(recordNumber < 0)
+            return false;
+        if(durabilityMode == DurabilityMode.FSYNC_PER_COMMAND)
+            return tableLog.sync();
+        if(durabilityMode == DurabilityMode.GROUP_COMMIT)
+            return tableLog.awaitSync(recordNumber, groupCommitMillis);
+        return true;
+    }
+
+    //empties the log once the snapshot has been rewritten
+    public boolean truncateLog(File logFile, File tableFile){
+        TableLog tableLog = openLogs.get(logFile.getAbsolutePath());
+        if(tableLog == null)
+            return !logFile.exists() || logFile.delete();
+        return tableLog.truncate(tableFile.length());
+    }
+
+    public boolean deleteLog(File logFile){
+        closeLog(logFile);
+        return !logFile.exists() || logFile.delete();
+    }
+
+    public void closeLog(File logFile){
+        TableLog tableLog = openLogs.remove(logFile.getAbsolutePath());
+        if(tableLog != null){
+            tableLog.sync();
+            tableLog.close();
+        }
+    }
+
+    //closes every log within a database folder e.g. before the folder is deleted
+    public void closeLogsInFolder(File databaseFolder){
+        String folderPrefix = databaseFolder.getAbsolutePath() + File.separator;
+        for(String logKey : new ArrayList<String>(openLogs.keySet()))
+            if(logKey.startsWith(folderPrefix))
+                closeLog(new File(logKey));
+    }
+
+    public void syncAll(){
+        for(TableLog tableLog : openLogs.values())
+            tableLog.sync();
+    }
+
+    public synchronized void close(){
+        if(groupCommitter != null){
+            groupCommitter.shutdown();
+            groupCommitter = null;
+        }
+        for(String logKey : new ArrayList<String>(openLogs.keySet()))
+            closeLog(new File(logKey));
+    }
+}
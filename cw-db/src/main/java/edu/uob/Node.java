@@ -19,7 +19,8 @@ public class Node{
     public Node(Node parentNode, boolean isLeaf, Rule nodeRule, Token leafToken){
         //assign parent and child nodes
         this.parentNode = parentNode;
-        childNodes = new ArrayList<Node>();
+        //leaves never have children, and no rule has more than a few
+        childNodes = isLeaf ? Collections.<Node>emptyList() : new ArrayList<Node>(4);
 
         //assign other variables
         this.isLeaf = isLeaf;
@@ -79,60 +80,6 @@ public class Node{
         return true;
     }
     
-    public ConditionResult checkConditionsTrue(TableStructure table, int rowNum){
-        //if it's a terminal node return "no condition"
-        if(nodeRule.ruleType == RuleType.TERM){
-            return ConditionResult.NO_CONDITION;
-        }
-        
-        //if you are a simple condition, evaluate and return
-        else if(nodeRule.ruleName == RuleName.SIMPLE_COND){
-            String attribute = childNodes.get(0).leafToken.tokenText;
-            String comparator = childNodes.get(1).leafToken.tokenText;
-            String value = childNodes.get(2).childNodes.get(0).leafToken.tokenText;
-            return table.evaluateCondition(attribute, comparator, value, rowNum);
-        }
-        
-        
-        //if you are a compound condition
-        else if(nodeRule.ruleName == RuleName.COMP_WITH_SIMP
-                || nodeRule.ruleName == RuleName.COMP_WITH_BRACKET){
-            //get the results of the child conditions
-            ConditionResult firstCond = childNodes.get(0).checkConditionsTrue(table, rowNum);
-            String comparator = childNodes.get(1).leafToken.tokenText;
-            ConditionResult secondCond = childNodes.get(2).checkConditionsTrue(table, rowNum);
-            
-            //invalid comparison from either sub conditions is returned
-            if(firstCond == ConditionResult.INVALID || secondCond == ConditionResult.INVALID)
-                return ConditionResult.INVALID;
-            
-            //finally evaluate the compound condition
-            if(comparator.equalsIgnoreCase("AND")){
-                if(firstCond == ConditionResult.TRUE && secondCond == ConditionResult.TRUE)
-                    return ConditionResult.TRUE;
-            }else if(comparator.equalsIgnoreCase("OR")){
-                if(firstCond == ConditionResult.TRUE || secondCond == ConditionResult.TRUE)
-                    return ConditionResult.TRUE;
-            }
-            
-            return ConditionResult.FALSE;
-        }
-        
-        //if it's non-terminal, check all child nodes
-        //return the highest priority condition result
-        else{
-            ConditionResult topResult = ConditionResult.NO_CONDITION;
-            ConditionResult childResult;
-            for(Node childNode : childNodes){
-                childResult = childNode.checkConditionsTrue(table, rowNum);
-                if(childResult.getVal() > topResult.getVal())
-                    topResult = childResult;
-            }
-            
-            return topResult;
-        }
-    }
-    
     //finds the first node within tree of given rule types
     public Node findByRuleName(RuleName findName){
         if(nodeRule.ruleName == findName)
@@ -194,19 +141,19 @@ public class Node{
 
         //check table name (if provided)
         if(tableName != null)
-            if(SQLSimpGrammar.reservedWords.contains(tableName.toUpperCase()))
+            if(SQLSimpGrammar.isReservedWord(tableName))
                 return false;
 
         //check database name (if provided)
         if(databaseName != null)
-            if(SQLSimpGrammar.reservedWords.contains(databaseName.toUpperCase()))
+            if(SQLSimpGrammar.isReservedWord(databaseName))
                 return false;
 
         List<String> attributes = getAttributesOrVals(RuleName.ATTRIBUTE);
 
         //check all attributes
         for(String attribute : attributes)
-            if(SQLSimpGrammar.reservedWords.contains(attribute.toUpperCase()))
+            if(SQLSimpGrammar.isReservedWord(attribute))
                 return false;
 
         return true;
@@ -0,0 +1,259 @@
+package edu.uob;
+
+import java.util.*;
+
+//recursive descent parser over the rules of SQLSimpGrammar, building the same trees as before
+//each "or" rule is decided from the tokens ahead, so no rule is ever tried twice over the same tokens
+//alternatives sharing their first rules (e.g. SELECT with and without WHERE) share one parse of them
+//where backtracking would have fallen back to the shorter alternative, the token after it never fits
+//the rules which follow, so failing straight away gives the same result
+public class Parser{
+    List<Token> tokens;
+
+    //position of the next token to parse
+    int position;
+
+    //"?" is only taken as a value within the command being prepared
+    boolean allowPlaceholders;
+
+    public Parser(List<Token> tokens, int startingToken){
+        this.tokens = tokens;
+        position = startingToken;
+        allowPlaceholders = false;
+    }
+
+    //parses a whole command into its typed form, or returns null if it does not fit the grammar
+    public static SQLCommand parseCommand(List<Token> tokens){
+        Node parseTree = new Parser(tokens, 0).parseRule(SQLSimpGrammar.command);
+        return parseTree == null ? null : SQLCommand.fromParseTree(parseTree);
+    }
+
+    public int getPosition(){
+        return position;
+    }
+
+    //returns null if the tokens do not fit the rule
+    public Node parseRule(Rule rule){
+        if(position >= tokens.size())
+            return null;
+        if(rule.ruleType == RuleType.TERM)
+            return parseTerminal(rule);
+        if(rule.ruleType == RuleType.SEQ){
+            Node seqNode = newNode(rule);
+            return parseSubRules(seqNode, rule.subRules, 0) ? seqNode : null;
+        }
+        return parseAlternative(rule);
+    }
+
+    Node parseTerminal(Rule rule){
+        if(!matches(rule, 0))
+            return null;
+        Node leafNode = new Node(null, true, rule, tokens.get(position));
+        position++;
+        return leafNode;
+    }
+
+    //parses the sub rules from fromRule onwards, adding them to the parent node
+    boolean parseSubRules(Node parentNode, List<Rule> subRules, int fromRule){
+        for(int ruleCnt = fromRule; ruleCnt < subRules.size(); ruleCnt++){
+            Node subNodeTree = parseRule(subRules.get(ruleCnt));
+            if(subNodeTree == null)
+                return false;
+            parentNode.addChild(subNodeTree);
+        }
+        return true;
+    }
+
+    Node parseAlternative(Rule rule){
+        Rule chosenRule;
+        switch(rule.ruleName){
+            case CONDITION:
+                return parseCondition(rule);
+            case SELECT:
+                return parseFactored(rule, SQLSimpGrammar.selectCond, SQLSimpGrammar.selectNoCond);
+            case CREATE_TABLE:
+                return parseFactored(rule, SQLSimpGrammar.crTableAttr, SQLSimpGrammar.crTableNoAttr);
+            case ATTR_LIST:
+                return parseList(rule, SQLSimpGrammar.attrListRec, SQLSimpGrammar.attribute);
+            case VALUE_LIST:
+                return parseList(rule, SQLSimpGrammar.valListRec, SQLSimpGrammar.value);
+            case VALUE_ROWS:
+                return parseList(rule, SQLSimpGrammar.valRowsRec, SQLSimpGrammar.valRow);
+            case NAME_VALUE_LIST:
+                return parseList(rule, SQLSimpGrammar.nameValListRec, SQLSimpGrammar.nameValPair);
+            case EXECUTE:
+                return parseFactored(rule, SQLSimpGrammar.executeParams, SQLSimpGrammar.executeNoParams);
+            case PREPARABLE:
+                //the prepared command runs to the end, so placeholders can be left allowed
+                allowPlaceholders = true;
+                chosenRule = chooseByFirstToken(rule);
+                break;
+            case CREATE:
+                if(matches(SQLSimpGrammar.DBLit, 1))
+                    chosenRule = SQLSimpGrammar.createDB;
+                else if(matches(SQLSimpGrammar.tableLit, 1))
+                    chosenRule = SQLSimpGrammar.createTable;
+                else
+                    chosenRule = SQLSimpGrammar.createIndex;
+                break;
+            case CREATE_INDEX:
+                chosenRule = matches(SQLSimpGrammar.indexType, 1)
+                        ? SQLSimpGrammar.crIndexTyped : SQLSimpGrammar.crIndexUntyped;
+                break;
+            case DROP:
+                if(matches(SQLSimpGrammar.DBLit, 1))
+                    chosenRule = SQLSimpGrammar.dropDB;
+                else if(matches(SQLSimpGrammar.tableLit, 1))
+                    chosenRule = SQLSimpGrammar.dropTable;
+                else
+                    chosenRule = SQLSimpGrammar.dropIndex;
+                break;
+            case WILD_ATTR_LIST:
+                chosenRule = matches(SQLSimpGrammar.asteriskLit, 0)
+                        ? SQLSimpGrammar.asteriskLit : SQLSimpGrammar.attrList;
+                break;
+            case VALUE:
+                chosenRule = chooseValue();
+                break;
+            default:
+                //otherwise every alternative starts with a different keyword
+                chosenRule = chooseByFirstToken(rule);
+        }
+        if(chosenRule == null)
+            return null;
+
+        Node subNodeTree = parseRule(chosenRule);
+        if(subNodeTree == null)
+            return null;
+        Node orNode = newNode(rule);
+        orNode.addChild(subNodeTree);
+        return orNode;
+    }
+
+    //the literal is picked by token type - its terminal rule still checks the text
+    Rule chooseValue(){
+        Token currToken = tokens.get(position);
+        switch(currToken.tokenType){
+            case STRING:
+                return SQLSimpGrammar.stringLit;
+            case FLOAT:
+                return SQLSimpGrammar.floatLit;
+            case INTEGER:
+                return SQLSimpGrammar.integerLit;
+            case KEYWORD:
+                return SQLSimpGrammar.boolLit.checkToken(currToken)
+                        ? SQLSimpGrammar.boolLit : SQLSimpGrammar.nullLiteral;
+            case OPERATOR:
+                return allowPlaceholders ? SQLSimpGrammar.placeholderLit : null;
+            default:
+                return null;
+        }
+    }
+
+    Rule chooseByFirstToken(Rule rule){
+        for(Rule subRule : rule.subRules)
+            if(matches(getFirstTerminal(subRule), 0))
+                return subRule;
+        return null;
+    }
+
+    static Rule getFirstTerminal(Rule rule){
+        while(rule.ruleType != RuleType.TERM)
+            rule = rule.subRules.get(0);
+        return rule;
+    }
+
+    //the longer alternative starts with the rules of the shorter one, or with the shorter rule itself
+    //those rules are parsed once, then the longer alternative is taken if the rule after them fits
+    Node parseFactored(Rule rule, Rule longerRule, Rule shorterRule){
+        boolean shorterIsFirst = (longerRule.subRules.get(0) == shorterRule);
+        int numShared = shorterIsFirst ? 1 : shorterRule.subRules.size();
+
+        Node sharedNode = newNode(longerRule);
+        if(!parseSubRules(sharedNode, longerRule.subRules.subList(0, numShared), 0))
+            return null;
+
+        Node chosenNode;
+        if(matches(getFirstTerminal(longerRule.subRules.get(numShared)), 0)){
+            if(!parseSubRules(sharedNode, longerRule.subRules, numShared))
+                return null;
+            chosenNode = sharedNode;
+        }else if(shorterIsFirst){
+            chosenNode = sharedNode.childNodes.get(0);
+        }else{
+            chosenNode = newNode(shorterRule);
+            for(Node childNode : sharedNode.childNodes)
+                chosenNode.addChild(childNode);
+        }
+
+        Node orNode = newNode(rule);
+        orNode.addChild(chosenNode);
+        return orNode;
+    }
+
+    //a list of items separated by commas, as the right recursive tree parseFactored would build
+    //it is built in a loop rather than by recursion, so a long list such as the rows of an INSERT
+    //never nests deeply within the parser
+    Node parseList(Rule listRule, Rule recurRule, Rule itemRule){
+        Node firstList = newNode(listRule);
+        Node currList = firstList;
+        while(true){
+            Node itemNode = parseRule(itemRule);
+            if(itemNode == null)
+                return null;
+            if(!matches(SQLSimpGrammar.commaLit, 0)){
+                currList.addChild(itemNode);
+                return firstList;
+            }
+
+            Node recurNode = newNode(recurRule);
+            recurNode.addChild(itemNode);
+            recurNode.addChild(parseTerminal(SQLSimpGrammar.commaLit));
+            Node nextList = newNode(listRule);
+            recurNode.addChild(nextList);
+            currList.addChild(recurNode);
+            currList = nextList;
+        }
+    }
+
+    //a bracketed or simple condition, followed by a boolean operator for a compound condition
+    Node parseCondition(Rule rule){
+        boolean startsBracketed = tokens.get(position).tokenText.equals("(");
+        Node firstCond = parseRule(startsBracketed ? SQLSimpGrammar.bracketCond : SQLSimpGrammar.simpleCond);
+        if(firstCond == null)
+            return null;
+
+        //a compound condition is chosen as the old parser did, by a "naked" boolean operator later on
+        //after the brackets just parsed, this is almost always found or ruled out by the next token
+        boolean isCompound;
+        if(startsBracketed){
+            isCompound = Rule.findNakedBool(tokens, position);
+        }else{
+            if(position >= tokens.size())
+                return null;
+            isCompound = SQLSimpGrammar.boolOperator.checkToken(tokens.get(position));
+        }
+
+        Node condNode = firstCond;
+        if(isCompound){
+            condNode = newNode(startsBracketed ? SQLSimpGrammar.compoundStartBr : SQLSimpGrammar.compoundStartSimp);
+            condNode.addChild(firstCond);
+            if(!parseSubRules(condNode, List.of(SQLSimpGrammar.boolOperator, SQLSimpGrammar.condition), 0))
+                return null;
+        }
+
+        Node orNode = newNode(rule);
+        orNode.addChild(condNode);
+        return orNode;
+    }
+
+    //whether the token the given number of places ahead fits a terminal rule
+    boolean matches(Rule terminal, int offset){
+        int tokenPos = position + offset;
+        return tokenPos < tokens.size() && terminal.checkToken(tokens.get(tokenPos));
+    }
+
+    static Node newNode(Rule rule){
+        return new Node(null, false, rule, null);
+    }
+}
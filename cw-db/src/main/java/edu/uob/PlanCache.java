@@ -0,0 +1,132 @@
+package edu.uob;
+
+import java.util.*;
+
+//parsed commands kept by a session, keyed by their shape - the command with each literal as "?"
+//a command of a known shape has its literals bound into the stored parse tree
+//so it is never tokenised or parsed again, e.g. "UPDATE t SET a = 1 WHERE id == 7;" and
+//"UPDATE t SET a = 2 WHERE id == 9;" share one plan
+public class PlanCache{
+    static final int DEFAULT_CAPACITY = 256;
+
+    //longer commands, such as inserts of many rows, are rarely repeated and are not worth the memory
+    static final int MAX_SHAPE_LENGTH = 4096;
+
+    //a parse tree whose literals are all values, so any other literal can take their place
+    static class CommandPlan{
+        Node parseTree;
+
+        //leaves holding the literals, in the order they were scanned
+        List<Node> literalLeaves;
+
+        CommandPlan(Node parseTree, List<Node> literalLeaves){
+            this.parseTree = parseTree;
+            this.literalLeaves = literalLeaves;
+        }
+
+        //returns null if the tree holds a literal other than as a value, e.g. "SELECT 1 FROM t;"
+        static CommandPlan fromParseTree(Node parseTree, int numLiterals){
+            List<Node> literalLeaves = new ArrayList<Node>();
+            if(!findLiteralLeaves(parseTree, literalLeaves) || literalLeaves.size() != numLiterals)
+                return null;
+            return new CommandPlan(parseTree, literalLeaves);
+        }
+
+        static boolean findLiteralLeaves(Node currNode, List<Node> literalLeaves){
+            if(currNode.isLeaf){
+                if(!Tokeniser.isLiteral(currNode.leafToken.tokenType))
+                    return true;
+                literalLeaves.add(currNode);
+                return getLiteralRule(currNode.leafToken) == currNode.nodeRule;
+            }
+            for(Node childNode : currNode.childNodes)
+                if(!findLiteralLeaves(childNode, literalLeaves))
+                    return false;
+            return true;
+        }
+
+        //binds the literals into the tree, returning null if one of them does not fit the grammar
+        //the tree is reused, so the command must be run before the plan is bound again
+        SQLCommand bind(List<Token> literals){
+            if(literals.size() != literalLeaves.size())
+                return null;
+            for(Token literal : literals)
+                if(!getLiteralRule(literal).checkToken(literal))
+                    return null;
+            for(int literalCnt = 0; literalCnt < literals.size(); literalCnt++){
+                Node literalLeaf = literalLeaves.get(literalCnt);
+                literalLeaf.leafToken = literals.get(literalCnt);
+                literalLeaf.nodeRule = getLiteralRule(literalLeaf.leafToken);
+            }
+            return SQLCommand.fromParseTree(parseTree);
+        }
+
+        //the value rule a literal is parsed with
+        static Rule getLiteralRule(Token literal){
+            switch(literal.tokenType){
+                case STRING:
+                    return SQLSimpGrammar.stringLit;
+                case FLOAT:
+                    return SQLSimpGrammar.floatLit;
+                default:
+                    return SQLSimpGrammar.integerLit;
+            }
+        }
+    }
+
+    //access ordered map so that iteration starts at the least recently used plan
+    LinkedHashMap<String, CommandPlan> cachedPlans;
+
+    int capacity;
+
+    long numHits;
+    long numMisses;
+
+    public PlanCache(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PlanCache(int capacity){
+        this.capacity = capacity;
+        cachedPlans = new LinkedHashMap<String, CommandPlan>(16, 0.75f, true);
+        numHits = numMisses = 0;
+    }
+
+    //returns null, counting a miss, if no plan of this shape takes these literals
+    public SQLCommand bindPlan(String commandShape, List<Token> literals){
+        CommandPlan cachedPlan = cachedPlans.get(commandShape);
+        SQLCommand command = (cachedPlan == null ? null : cachedPlan.bind(literals));
+        if(command == null)
+            numMisses++;
+        else
+            numHits++;
+        return command;
+    }
+
+    //only commands which parsed and passed validation should be stored
+    public void putPlan(String commandShape, Node parseTree, int numLiterals){
+        if(commandShape.length() > MAX_SHAPE_LENGTH)
+            return;
+        CommandPlan plan = CommandPlan.fromParseTree(parseTree, numLiterals);
+        if(plan == null)
+            return;
+        cachedPlans.put(commandShape, plan);
+        if(cachedPlans.size() > capacity){
+            Iterator<String> lruIterator = cachedPlans.keySet().iterator();
+            lruIterator.next();
+            lruIterator.remove();
+        }
+    }
+
+    public long getHits(){
+        return numHits;
+    }
+
+    public long getMisses(){
+        return numMisses;
+    }
+
+    public int getNumPlans(){
+        return cachedPlans.size();
+    }
+}
@@ -0,0 +1,116 @@
+package edu.uob;
+
+import java.util.*;
+
+//a command prepared by PREPARE, with "?" in place of values, then run by EXECUTE with the values given
+//it is parsed and checked once, and its condition is compiled once and kept with its columns resolved
+//later runs only set their values into the compiled condition, which is compiled again if the columns move
+public class PreparedCommand{
+    //the command as prepared, with "?" as its values
+    SQLCommand command;
+    int numParameters;
+
+    //positions of "?" within the values of INSERT or UPDATE - these come before any in the condition
+    List<Integer> valueParams;
+    Node condition;
+
+    //the compiled condition, and every comparison within it
+    RowPredicate compiledCondition;
+    List<ConditionCompiler.SimplePredicate> comparisons;
+
+    //values for the placeholders in the condition, from the last bind
+    List<String> conditionValues;
+
+    public PreparedCommand(SQLCommand command, int numParameters){
+        this.command = command;
+        this.numParameters = numParameters;
+        command.prepared = this;
+
+        valueParams = new ArrayList<Integer>();
+        List<String> values = getValues(command);
+        for(int valueCnt = 0; valueCnt < values.size(); valueCnt++)
+            if(values.get(valueCnt).equals("?"))
+                valueParams.add(valueCnt);
+
+        condition = null;
+        if(command.commandType == SQLCommand.CommandType.SELECT)
+            condition = ((SQLCommand.SelectCommand) command).condition;
+        else if(command.commandType == SQLCommand.CommandType.UPDATE)
+            condition = ((SQLCommand.UpdateCommand) command).condition;
+        else if(command.commandType == SQLCommand.CommandType.DELETE)
+            condition = ((SQLCommand.DeleteCommand) command).condition;
+
+        compiledCondition = null;
+        comparisons = new ArrayList<ConditionCompiler.SimplePredicate>();
+        conditionValues = List.of();
+    }
+
+    static List<String> getValues(SQLCommand command){
+        if(command.commandType == SQLCommand.CommandType.INSERT)
+            return ((SQLCommand.InsertCommand) command).values;
+        if(command.commandType == SQLCommand.CommandType.UPDATE)
+            return ((SQLCommand.UpdateCommand) command).values;
+        return List.of();
+    }
+
+    //the command to run with the given values, or null if the number of values is wrong
+    //commands without "?" in their values are run as prepared
+    public SQLCommand bind(List<String> parameters){
+        if(parameters.size() != numParameters)
+            return null;
+        conditionValues = parameters.subList(valueParams.size(), numParameters);
+        if(valueParams.isEmpty())
+            return command;
+
+        List<String> values = new ArrayList<String>(getValues(command));
+        for(int paramCnt = 0; paramCnt < valueParams.size(); paramCnt++)
+            values.set(valueParams.get(paramCnt), parameters.get(paramCnt));
+
+        if(command.commandType == SQLCommand.CommandType.INSERT){
+            SQLCommand.InsertCommand insertCommand = new SQLCommand.InsertCommand();
+            insertCommand.values = values;
+            insertCommand.rowLengths = ((SQLCommand.InsertCommand) command).rowLengths;
+            return copyNames(insertCommand);
+        }
+        SQLCommand.UpdateCommand prepUpdate = (SQLCommand.UpdateCommand) command;
+        SQLCommand.UpdateCommand updateCommand = new SQLCommand.UpdateCommand();
+        updateCommand.columnNames = prepUpdate.columnNames;
+        updateCommand.values = values;
+        updateCommand.condition = prepUpdate.condition;
+        return copyNames(updateCommand);
+    }
+
+    SQLCommand copyNames(SQLCommand boundCommand){
+        boundCommand.tableNames = command.tableNames;
+        boundCommand.attributeNames = command.attributeNames;
+        boundCommand.prepared = this;
+        return boundCommand;
+    }
+
+    //the condition for the table being read, holding the values from the last bind
+    //returns null if there is no condition
+    public RowPredicate getCondition(TableStructure table){
+        if(condition == null)
+            return null;
+        if(compiledCondition == null || !columnsUnchanged(table)){
+            comparisons.clear();
+            compiledCondition = ConditionCompiler.compile(condition, table, comparisons);
+        }
+
+        int paramCnt = 0;
+        for(ConditionCompiler.SimplePredicate comparison : comparisons){
+            comparison.table = table;
+            if(comparison.isParameter)
+                comparison.condValue.setText(conditionValues.get(paramCnt++));
+        }
+        return compiledCondition;
+    }
+
+    //whether each compared column is where it was when the condition was compiled
+    boolean columnsUnchanged(TableStructure table){
+        for(ConditionCompiler.SimplePredicate comparison : comparisons)
+            if(table.getColumnIndex(comparison.attribute) != comparison.colIndex)
+                return false;
+        return true;
+    }
+}
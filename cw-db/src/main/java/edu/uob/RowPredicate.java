@@ -0,0 +1,15 @@
+package edu.uob;
+
+import java.util.*;
+
+//a WHERE condition compiled against a single table
+public interface RowPredicate{
+    ConditionResult evaluate(int rowNum);
+
+    //true only where evaluate gives TRUE - but may skip parts of the condition to find out
+    boolean matches(int rowNum);
+
+    //every row which could match, found through indexes
+    //returns null if the condition cannot be narrowed down without checking every row
+    BitSet findCandidates();
+}
@@ -17,6 +17,10 @@ public class Rule{
     //regex pattern which is checked against for terminal rules
     Pattern terminalCheck;
 
+    //the text a terminal matches when its pattern is a single word or symbol
+    //compared directly, as long commands such as inserts of many rows check these for most tokens
+    String terminalText;
+
     //constructor for "or" and sequential type rules
     public Rule(RuleName ruleName, RuleType ruleType){
         this.ruleName = ruleName;
@@ -28,11 +32,32 @@ public class Rule{
         this.ruleName = ruleName;
         this.ruleType = RuleType.TERM;
         terminalCheck = Pattern.compile(regExStr, Pattern.CASE_INSENSITIVE);
+        terminalText = findTerminalText(regExStr);
+    }
+
+    //returns null unless the pattern only matches one text, ignoring case
+    static String findTerminalText(String regExStr){
+        String regExSymbols = ".^$|?*+()[]{}\\";
+        if(regExStr.matches("[a-zA-Z]+"))
+            return regExStr;
+        if(regExStr.length() == 1 && regExSymbols.indexOf(regExStr.charAt(0)) < 0
+                && !Character.isLetterOrDigit(regExStr.charAt(0)))
+            return regExStr;
+        if(regExStr.length() == 2 && regExStr.charAt(0) == '\\' && regExSymbols.indexOf(regExStr.charAt(1)) >= 0)
+            return regExStr.substring(1);
+        return null;
     }
 
     //for terminal rules only - check whether token valid
     public boolean checkToken(Token token){
-        Matcher matcher = terminalCheck.matcher(token.tokenText);
+        return checkText(token.tokenText);
+    }
+
+    //as checkToken, for text which has not been tokenised e.g. a value read from a data file
+    public boolean checkText(String text){
+        if(terminalText != null)
+            return text.equalsIgnoreCase(terminalText);
+        Matcher matcher = terminalCheck.matcher(text);
         return matcher.matches();
     }
 
@@ -70,100 +95,8 @@ public class Rule{
         return false;
     }
     
-    //try and "map out" tokens against this rule
+    //try and "map out" tokens against this rule - see Parser
     public Node parseTokens(List<Token> tokens, int startingToken){
-        //if you're trying to fit a rule beyond the number of tokens return null
-        if(startingToken >= tokens.size()){
-            return null;
-        }
-
-        Node parentNode = new Node(null, false, this, null);
-
-        //logic for condition sub-rules must be separately handled
-        if(ruleName == RuleName.CONDITION){
-            Node subNodeTree = parseConditionTokens(tokens, startingToken);
-
-            //for a successful match, create the tree and return
-            if(subNodeTree != null){
-                parentNode.addChild(subNodeTree);
-                return parentNode;
-            }
-        }
-
-        //deal with "or" rules by checking whether any one rule works
-        else if(ruleType == RuleType.OR){
-            for(Rule subRule : subRules){
-                Node subNodeTree = subRule.parseTokens(tokens, startingToken);
-
-                //for a successful match, create the tree and return
-                if(subNodeTree != null){
-                    parentNode.addChild(subNodeTree);
-                    return parentNode;
-                }
-            }
-        }
-
-        //deal with "terminal" nodes by checking whether the token matches
-        else if(ruleType == RuleType.TERM){
-            if(checkToken(tokens.get(startingToken))){
-                parentNode.isLeaf = true;
-                parentNode.leafToken = tokens.get(startingToken);
-                return parentNode;
-            }
-        }
-
-        //deal with "sequential" rules by checking all of them work
-        else if(ruleType == RuleType.SEQ){
-            for(Rule subRule : subRules){
-                Node subNodeTree = subRule.parseTokens(tokens, startingToken);
-
-                //a rule failure means we return null
-                if(subNodeTree == null){
-                    return null;
-                }else {
-                    //increase token positional count by tokens parsed
-                    startingToken += Node.getNumberOfLeaves(subNodeTree);
-
-                    //add sub-tree to parent node
-                    parentNode.addChild(subNodeTree);
-                }
-            }
-            return parentNode;
-        }
-
-        //return null if no rules match
-        return null;
-    }
-
-    public Node parseConditionTokens(List<Token> tokens, int startingToken){
-        Node subNodeTree;
-
-        if(tokens.get(startingToken).tokenText.equals("(")){
-            if(Rule.findNakedBool(tokens, startingToken)){
-                //if starts with bracket and "naked" boolean operators exist
-                //then it must be a compound condition starting with bracketed condition
-                subNodeTree = SQLSimpGrammar.compoundStartBr.parseTokens(tokens, startingToken);
-            }else{
-                //if starts with bracket and NO "naked" boolean operators exist
-                //then it must be a bracketed condition
-                subNodeTree = SQLSimpGrammar.bracketCond.parseTokens(tokens, startingToken);
-            }
-        }else{
-            //there should always be at least 4 tokens left to parse the condition
-            //return null if not
-            if(startingToken + 3 >= tokens.size())
-                return null;
-            else if(SQLSimpGrammar.boolOperator.checkToken(tokens.get(startingToken + 3))){
-                //if does not start with bracket and 4th token IS boolean operator
-                //then it must be a compound condition starting with simple condition
-                subNodeTree = SQLSimpGrammar.compoundStartSimp.parseTokens(tokens, startingToken);
-            }else{
-                //if does not start with bracket and 5th token is not boolean operator
-                //then it must be a simple condition
-                subNodeTree = SQLSimpGrammar.simpleCond.parseTokens(tokens, startingToken);
-            }
-        }
-
-        return subNodeTree;
+        return new Parser(tokens, startingToken).parseRule(this);
     }
-}
\ No newline at end of file
+}
@@ -9,9 +9,13 @@ public enum RuleName{
     CREATE_TABLE,
     CR_TABLE_NO_ATTR,
     CR_TABLE_ATTR,
+    CREATE_INDEX,
+    CR_INDEX_TYPED,
+    CR_INDEX_UNTYPED,
     DROP,
     DROP_DB,
     DROP_TABLE,
+    DROP_INDEX,
     ALTER,
     INSERT,
     SELECT,
@@ -20,18 +24,29 @@ public enum RuleName{
     UPDATE,
     DELETE,
     JOIN,
+    FLUSH,
+    PREPARE,
+    PREPARABLE,
+    EXECUTE,
+    EXECUTE_PARAMS,
+    EXECUTE_NO_PARAMS,
+    LOAD,
     NAME_VALUE_LIST,
     NAME_VALUE_RECUR,
     NAME_VALUE_PAIR,
     ALTERATION_TYPE,
     VALUE_LIST,
     VALUE_LIST_RECUR,
+    VALUE_ROWS,
+    VALUE_ROWS_RECUR,
+    VALUE_ROW,
     INTEGER_LITERAL,
     FLOAT_LITERAL,
     BOOLEAN_LITERAL,
     STRING_LITERAL,
     VALUE,
     NULL_LITERAL,
+    PLACEHOLDER,
     WILD_ATTR_LIST,
     ASTERISK_LITERAL,
     ATTR_LIST,
@@ -63,11 +78,21 @@ public enum RuleName{
     JOIN_LITERAL,
     AND_LITERAL,
     ON_LITERAL,
+    FLUSH_LITERAL,
+    INDEX_LITERAL,
+    PREPARE_LITERAL,
+    AS_LITERAL,
+    EXECUTE_LITERAL,
+    USING_LITERAL,
+    LOAD_LITERAL,
+    DATA_LITERAL,
+    INDEX_TYPE,
     COMMA_LITERAL,
     EQUALS_LITERAL,
     OP_PAREN_LITERAL,
     CL_PAREN_LITERAL,
     SPACE_LITERAL,
     DB_NAME,
-    TABLE_NAME;
+    TABLE_NAME,
+    STATEMENT_NAME;
 }
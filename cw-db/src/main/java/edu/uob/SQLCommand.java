@@ -0,0 +1,473 @@
+package edu.uob;
+
+import java.util.*;
+
+//a parsed command, with its names, values and condition held directly rather than searched for in the tree
+//built in one walk of the parse tree, whose shape for each command is fixed by SQLSimpGrammar
+public abstract class SQLCommand{
+    public enum CommandType{
+        USE,
+        CREATE_DATABASE,
+        DROP_DATABASE,
+        FLUSH,
+        CREATE_TABLE,
+        DROP_TABLE,
+        ALTER,
+        CREATE_INDEX,
+        DROP_INDEX,
+        INSERT,
+        SELECT,
+        UPDATE,
+        DELETE,
+        JOIN,
+        PREPARE,
+        EXECUTE,
+        LOAD;
+    }
+
+    CommandType commandType;
+
+    //database and table names as given - JOIN names two tables
+    String databaseName;
+    List<String> tableNames;
+
+    //every attribute named in the command, including those within its condition
+    List<String> attributeNames;
+
+    //set when the command is run by EXECUTE, so its condition is compiled by the prepared command
+    PreparedCommand prepared;
+
+    SQLCommand(CommandType commandType){
+        this.commandType = commandType;
+        databaseName = null;
+        tableNames = new ArrayList<String>(2);
+        attributeNames = new ArrayList<String>();
+        prepared = null;
+    }
+
+    public CommandType getCommandType(){
+        return commandType;
+    }
+
+    //the first table named, in lower case, or null for database commands
+    public String getTableName(){
+        return tableNames.isEmpty() ? null : tableNames.get(0).toLowerCase();
+    }
+
+    //SELECT and JOIN read snapshots, so take no table locks - nor does PREPARE, which reads no tables
+    public boolean isReadOnly(){
+        return commandType == CommandType.SELECT || commandType == CommandType.JOIN
+            || commandType == CommandType.PREPARE;
+    }
+
+    //creating or dropping a database or table waits for every other command
+    public boolean changesCatalog(){
+        return commandType == CommandType.CREATE_DATABASE || commandType == CommandType.DROP_DATABASE
+            || commandType == CommandType.CREATE_TABLE || commandType == CommandType.DROP_TABLE;
+    }
+
+    //returns false if any table, database or column names use reserved words
+    public boolean checkNoReservedWordsUsed(){
+        if(databaseName != null && SQLSimpGrammar.isReservedWord(databaseName))
+            return false;
+        for(String tableName : tableNames)
+            if(SQLSimpGrammar.isReservedWord(tableName))
+                return false;
+        for(String attribute : attributeNames)
+            if(SQLSimpGrammar.isReservedWord(attribute))
+                return false;
+        return true;
+    }
+
+    //returns false if any attribute named by the command is missing from the table
+    public boolean checkAttributesExist(TableStructure table){
+        for(String attribute : attributeNames)
+            if(!table.checkAttributeExists(attribute))
+                return false;
+        return true;
+    }
+
+    static class UseCommand extends SQLCommand{
+        UseCommand(){ super(CommandType.USE); }
+    }
+
+    static class CreateDatabaseCommand extends SQLCommand{
+        CreateDatabaseCommand(){ super(CommandType.CREATE_DATABASE); }
+    }
+
+    static class DropDatabaseCommand extends SQLCommand{
+        DropDatabaseCommand(){ super(CommandType.DROP_DATABASE); }
+    }
+
+    static class FlushCommand extends SQLCommand{
+        FlushCommand(){ super(CommandType.FLUSH); }
+    }
+
+    static class CreateTableCommand extends SQLCommand{
+        //null if the command gives no attribute list
+        List<String> columnNames;
+
+        CreateTableCommand(){ super(CommandType.CREATE_TABLE); }
+    }
+
+    static class DropTableCommand extends SQLCommand{
+        DropTableCommand(){ super(CommandType.DROP_TABLE); }
+    }
+
+    static class AlterCommand extends SQLCommand{
+        boolean isAdd;
+        String columnName;
+
+        AlterCommand(){ super(CommandType.ALTER); }
+    }
+
+    static class CreateIndexCommand extends SQLCommand{
+        IndexType indexType;
+        String columnName;
+
+        CreateIndexCommand(){ super(CommandType.CREATE_INDEX); }
+    }
+
+    static class DropIndexCommand extends SQLCommand{
+        String columnName;
+
+        DropIndexCommand(){ super(CommandType.DROP_INDEX); }
+    }
+
+    static class InsertCommand extends SQLCommand{
+        //the values of every row in order, with the number of values in each row
+        List<String> values;
+        List<Integer> rowLengths;
+
+        InsertCommand(){ super(CommandType.INSERT); }
+
+        public int getNumRows(){
+            return rowLengths.size();
+        }
+
+        //each row as an array, as added to a table
+        public List<String[]> getRows(){
+            List<String[]> rows = new ArrayList<String[]>(rowLengths.size());
+            int rowStart = 0;
+            for(int rowLength : rowLengths){
+                rows.add(values.subList(rowStart, rowStart + rowLength).toArray(new String[rowLength]));
+                rowStart += rowLength;
+            }
+            return rows;
+        }
+    }
+
+    static class SelectCommand extends SQLCommand{
+        //null for "*"
+        List<String> columnNames;
+
+        //the CONDITION node, or null without WHERE
+        Node condition;
+
+        SelectCommand(){ super(CommandType.SELECT); }
+    }
+
+    static class UpdateCommand extends SQLCommand{
+        List<String> columnNames;
+        List<String> values;
+        Node condition;
+
+        UpdateCommand(){ super(CommandType.UPDATE); }
+    }
+
+    static class DeleteCommand extends SQLCommand{
+        Node condition;
+
+        DeleteCommand(){ super(CommandType.DELETE); }
+    }
+
+    static class JoinCommand extends SQLCommand{
+        String firstAttribute;
+        String secondAttribute;
+
+        JoinCommand(){ super(CommandType.JOIN); }
+    }
+
+    //holds the tables and attributes of the prepared command, so they are checked for reserved words
+    static class PrepareCommand extends SQLCommand{
+        String statementName;
+        SQLCommand preparedCommand;
+        int numParameters;
+
+        PrepareCommand(){ super(CommandType.PREPARE); }
+    }
+
+    static class ExecuteCommand extends SQLCommand{
+        String statementName;
+
+        //empty without USING
+        List<String> values;
+
+        ExecuteCommand(){ super(CommandType.EXECUTE); }
+    }
+
+    static class LoadCommand extends SQLCommand{
+        //as given, without its quotes
+        String filePath;
+
+        LoadCommand(){ super(CommandType.LOAD); }
+    }
+
+    //takes the tree from parsing SQLSimpGrammar.command
+    public static SQLCommand fromParseTree(Node commandTree){
+        return fromTypeNode(commandTree.childNodes.get(0).childNodes.get(0));
+    }
+
+    //takes the node chosen by SQLSimpGrammar.commandType
+    //returns null for a rule with no command of its own, rather than guessing one
+    static SQLCommand fromTypeNode(Node typeNode){
+        switch(typeNode.nodeRule.ruleName){
+            case USE:
+                SQLCommand useCommand = new UseCommand();
+                useCommand.databaseName = getLeafText(typeNode, 1);
+                return useCommand;
+            case CREATE:
+                return fromCreateTree(typeNode.childNodes.get(0));
+            case DROP:
+                return fromDropTree(typeNode.childNodes.get(0));
+            case ALTER:
+                AlterCommand alterCommand = new AlterCommand();
+                alterCommand.tableNames.add(getLeafText(typeNode, 2));
+                alterCommand.isAdd = getLeafText(typeNode, 3).equalsIgnoreCase("ADD");
+                alterCommand.columnName = getLeafText(typeNode, 4);
+                alterCommand.attributeNames.add(alterCommand.columnName);
+                return alterCommand;
+            case INSERT:
+                InsertCommand insertCommand = new InsertCommand();
+                insertCommand.tableNames.add(getLeafText(typeNode, 2));
+                insertCommand.values = new ArrayList<String>();
+                insertCommand.rowLengths = new ArrayList<Integer>();
+                addRowValues(typeNode.childNodes.get(4), insertCommand);
+                return insertCommand;
+            case SELECT:
+                return fromSelectTree(typeNode.childNodes.get(0));
+            case UPDATE:
+                return fromUpdateTree(typeNode);
+            case DELETE:
+                DeleteCommand deleteCommand = new DeleteCommand();
+                deleteCommand.tableNames.add(getLeafText(typeNode, 2));
+                deleteCommand.condition = typeNode.childNodes.get(4);
+                addConditionAttributes(deleteCommand.condition, deleteCommand.attributeNames);
+                return deleteCommand;
+            case JOIN:
+                JoinCommand joinCommand = new JoinCommand();
+                joinCommand.tableNames.add(getLeafText(typeNode, 1));
+                joinCommand.tableNames.add(getLeafText(typeNode, 3));
+                joinCommand.firstAttribute = getLeafText(typeNode, 5);
+                joinCommand.secondAttribute = getLeafText(typeNode, 7);
+                joinCommand.attributeNames.add(joinCommand.firstAttribute);
+                joinCommand.attributeNames.add(joinCommand.secondAttribute);
+                return joinCommand;
+            case PREPARE:
+                return fromPrepareTree(typeNode);
+            case EXECUTE:
+                Node executeNode = typeNode.childNodes.get(0);
+                ExecuteCommand executeCommand = new ExecuteCommand();
+                executeCommand.statementName = getLeafText(executeNode, 1);
+                executeCommand.values = new ArrayList<String>();
+                if(executeNode.nodeRule.ruleName == RuleName.EXECUTE_PARAMS)
+                    executeCommand.values = getValues(executeNode.childNodes.get(4));
+                return executeCommand;
+            case LOAD:
+                LoadCommand loadCommand = new LoadCommand();
+                loadCommand.filePath = ArrListTable.removeStrLitQuotes(getLeafText(typeNode, 2));
+                loadCommand.tableNames.add(getLeafText(typeNode, 5));
+                return loadCommand;
+            case FLUSH:
+                return new FlushCommand();
+            default:
+                return null;
+        }
+    }
+
+    static SQLCommand fromCreateTree(Node createNode){
+        if(createNode.nodeRule.ruleName == RuleName.CREATE_DB){
+            SQLCommand createDBCommand = new CreateDatabaseCommand();
+            createDBCommand.databaseName = getLeafText(createNode, 2);
+            return createDBCommand;
+        }
+
+        if(createNode.nodeRule.ruleName == RuleName.CREATE_TABLE){
+            Node tableNode = createNode.childNodes.get(0);
+            CreateTableCommand createTableCommand = new CreateTableCommand();
+            createTableCommand.tableNames.add(getLeafText(tableNode, 2));
+            createTableCommand.columnNames = null;
+            if(tableNode.nodeRule.ruleName == RuleName.CR_TABLE_ATTR){
+                createTableCommand.columnNames = getAttributes(tableNode.childNodes.get(4));
+                createTableCommand.attributeNames.addAll(createTableCommand.columnNames);
+            }
+            return createTableCommand;
+        }
+
+        //typed indexes have the index type before INDEX
+        Node indexNode = createNode.childNodes.get(0);
+        int typeOffset = (indexNode.nodeRule.ruleName == RuleName.CR_INDEX_TYPED ? 1 : 0);
+        CreateIndexCommand createIndexCommand = new CreateIndexCommand();
+        createIndexCommand.indexType = (typeOffset == 0 ? IndexType.HASH
+                : IndexType.valueOf(getLeafText(indexNode, 1).toUpperCase()));
+        createIndexCommand.tableNames.add(getLeafText(indexNode, 3 + typeOffset));
+        createIndexCommand.columnName = getLeafText(indexNode, 5 + typeOffset);
+        createIndexCommand.attributeNames.add(createIndexCommand.columnName);
+        return createIndexCommand;
+    }
+
+    static SQLCommand fromDropTree(Node dropNode){
+        if(dropNode.nodeRule.ruleName == RuleName.DROP_DB){
+            SQLCommand dropDBCommand = new DropDatabaseCommand();
+            dropDBCommand.databaseName = getLeafText(dropNode, 2);
+            return dropDBCommand;
+        }
+        if(dropNode.nodeRule.ruleName == RuleName.DROP_TABLE){
+            SQLCommand dropTableCommand = new DropTableCommand();
+            dropTableCommand.tableNames.add(getLeafText(dropNode, 2));
+            return dropTableCommand;
+        }
+        DropIndexCommand dropIndexCommand = new DropIndexCommand();
+        dropIndexCommand.tableNames.add(getLeafText(dropNode, 3));
+        dropIndexCommand.columnName = getLeafText(dropNode, 5);
+        dropIndexCommand.attributeNames.add(dropIndexCommand.columnName);
+        return dropIndexCommand;
+    }
+
+    static SQLCommand fromSelectTree(Node selectNode){
+        SelectCommand selectCommand = new SelectCommand();
+        selectCommand.tableNames.add(getLeafText(selectNode, 3));
+
+        Node wildAttrNode = selectNode.childNodes.get(1).childNodes.get(0);
+        selectCommand.columnNames = null;
+        if(wildAttrNode.nodeRule.ruleName == RuleName.ATTR_LIST){
+            selectCommand.columnNames = getAttributes(wildAttrNode);
+            selectCommand.attributeNames.addAll(selectCommand.columnNames);
+        }
+
+        selectCommand.condition = null;
+        if(selectNode.nodeRule.ruleName == RuleName.SELECT_COND){
+            selectCommand.condition = selectNode.childNodes.get(5);
+            addConditionAttributes(selectCommand.condition, selectCommand.attributeNames);
+        }
+        return selectCommand;
+    }
+
+    static SQLCommand fromUpdateTree(Node updateNode){
+        UpdateCommand updateCommand = new UpdateCommand();
+        updateCommand.tableNames.add(getLeafText(updateNode, 1));
+        updateCommand.columnNames = new ArrayList<String>();
+        updateCommand.values = new ArrayList<String>();
+
+        //each list node holds a pair, followed by the rest of the list if there is a comma
+        Node listNode = updateNode.childNodes.get(3);
+        while(listNode != null){
+            Node listItem = listNode.childNodes.get(0);
+            Node pairNode = listItem;
+            listNode = null;
+            if(listItem.nodeRule.ruleName == RuleName.NAME_VALUE_RECUR){
+                pairNode = listItem.childNodes.get(0);
+                listNode = listItem.childNodes.get(2);
+            }
+            updateCommand.columnNames.add(getLeafText(pairNode, 0));
+            updateCommand.values.add(getValueText(pairNode.childNodes.get(2)));
+        }
+        updateCommand.attributeNames.addAll(updateCommand.columnNames);
+
+        updateCommand.condition = updateNode.childNodes.get(5);
+        addConditionAttributes(updateCommand.condition, updateCommand.attributeNames);
+        return updateCommand;
+    }
+
+    static SQLCommand fromPrepareTree(Node prepareNode){
+        PrepareCommand prepareCommand = new PrepareCommand();
+        prepareCommand.statementName = getLeafText(prepareNode, 1);
+
+        Node preparedNode = prepareNode.childNodes.get(3).childNodes.get(0);
+        prepareCommand.preparedCommand = fromTypeNode(preparedNode);
+        if(prepareCommand.preparedCommand == null)
+            return null;
+        prepareCommand.numParameters = countPlaceholders(preparedNode);
+        prepareCommand.tableNames.addAll(prepareCommand.preparedCommand.tableNames);
+        prepareCommand.attributeNames.addAll(prepareCommand.preparedCommand.attributeNames);
+        return prepareCommand;
+    }
+
+    //walks the tree without recursion, as the rows of an INSERT nest deeply
+    static int countPlaceholders(Node preparedNode){
+        int numPlaceholders = 0;
+        Deque<Node> nodesToVisit = new ArrayDeque<Node>();
+        nodesToVisit.push(preparedNode);
+        while(!nodesToVisit.isEmpty()){
+            Node currNode = nodesToVisit.pop();
+            if(currNode.isLeaf && currNode.nodeRule == SQLSimpGrammar.placeholderLit)
+                numPlaceholders++;
+            for(Node childNode : currNode.childNodes)
+                nodesToVisit.push(childNode);
+        }
+        return numPlaceholders;
+    }
+
+    //values of each row within a VALUE_ROWS node, in order
+    static void addRowValues(Node rowsNode, InsertCommand insertCommand){
+        while(rowsNode != null){
+            Node rowNode = rowsNode.childNodes.get(0);
+            rowsNode = null;
+            if(rowNode.nodeRule.ruleName == RuleName.VALUE_ROWS_RECUR){
+                rowsNode = rowNode.childNodes.get(2);
+                rowNode = rowNode.childNodes.get(0);
+            }
+            List<String> rowValues = getValues(rowNode.childNodes.get(1));
+            insertCommand.values.addAll(rowValues);
+            insertCommand.rowLengths.add(rowValues.size());
+        }
+    }
+
+    //attributes of an ATTR_LIST node, in order
+    static List<String> getAttributes(Node listNode){
+        List<String> attributes = new ArrayList<String>();
+        while(listNode != null){
+            Node listItem = listNode.childNodes.get(0);
+            listNode = null;
+            if(listItem.nodeRule.ruleName == RuleName.ATTR_LIST_RECUR){
+                listNode = listItem.childNodes.get(2);
+                listItem = listItem.childNodes.get(0);
+            }
+            attributes.add(listItem.leafToken.tokenText);
+        }
+        return attributes;
+    }
+
+    //values of a VALUE_LIST node, in order
+    static List<String> getValues(Node listNode){
+        List<String> values = new ArrayList<String>();
+        while(listNode != null){
+            Node listItem = listNode.childNodes.get(0);
+            listNode = null;
+            if(listItem.nodeRule.ruleName == RuleName.VALUE_LIST_RECUR){
+                listNode = listItem.childNodes.get(2);
+                listItem = listItem.childNodes.get(0);
+            }
+            values.add(getValueText(listItem));
+        }
+        return values;
+    }
+
+    static void addConditionAttributes(Node condNode, List<String> attributes){
+        if(condNode.nodeRule.ruleName == RuleName.ATTRIBUTE){
+            attributes.add(condNode.leafToken.tokenText);
+            return;
+        }
+        for(Node childNode : condNode.childNodes)
+            addConditionAttributes(childNode, attributes);
+    }
+
+    static String getLeafText(Node parentNode, int childIndex){
+        return parentNode.childNodes.get(childIndex).leafToken.tokenText;
+    }
+
+    //a VALUE node wraps the literal's leaf
+    static String getValueText(Node valueNode){
+        return valueNode.childNodes.get(0).leafToken.tokenText;
+    }
+}
@@ -8,6 +8,9 @@ public class SQLSimpGrammar{
             "ALTER", "INSERT", "INTO", "VALUES", "SELECT", "FROM", "WHERE", "UPDATE", "SET", "DELETE",
             "JOIN", "ON", "ADD", "DROP", "LIKE", "AND", "OR");
 
+    //the reserved words again, looked up without changing case
+    static Set<String> reservedWordSet = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
     //create rules for top-level SQL commands
     static Rule command = new Rule(RuleName.COMMAND, RuleType.SEQ);
     static Rule commandType = new Rule(RuleName.COMMAND_TYPE, RuleType.OR);
@@ -17,9 +20,13 @@ public class SQLSimpGrammar{
     static Rule createTable = new Rule(RuleName.CREATE_TABLE, RuleType.OR);
     static Rule crTableNoAttr = new Rule(RuleName.CR_TABLE_NO_ATTR, RuleType.SEQ);
     static Rule crTableAttr = new Rule(RuleName.CR_TABLE_ATTR, RuleType.SEQ);
+    static Rule createIndex = new Rule(RuleName.CREATE_INDEX, RuleType.OR);
+    static Rule crIndexTyped = new Rule(RuleName.CR_INDEX_TYPED, RuleType.SEQ);
+    static Rule crIndexUntyped = new Rule(RuleName.CR_INDEX_UNTYPED, RuleType.SEQ);
     static Rule drop = new Rule(RuleName.DROP, RuleType.OR);
     static Rule dropDB = new Rule(RuleName.DROP_DB, RuleType.SEQ);
     static Rule dropTable = new Rule(RuleName.DROP_TABLE, RuleType.SEQ);
+    static Rule dropIndex = new Rule(RuleName.DROP_INDEX, RuleType.SEQ);
     static Rule alter = new Rule(RuleName.ALTER, RuleType.SEQ);
     static Rule insert = new Rule(RuleName.INSERT, RuleType.SEQ);
     static Rule select = new Rule(RuleName.SELECT, RuleType.OR);
@@ -28,6 +35,13 @@ public class SQLSimpGrammar{
     static Rule update = new Rule(RuleName.UPDATE, RuleType.SEQ);
     static Rule delete = new Rule(RuleName.DELETE, RuleType.SEQ);
     static Rule join = new Rule(RuleName.JOIN, RuleType.SEQ);
+    static Rule flush = new Rule(RuleName.FLUSH, RuleType.SEQ);
+    static Rule prepare = new Rule(RuleName.PREPARE, RuleType.SEQ);
+    static Rule preparable = new Rule(RuleName.PREPARABLE, RuleType.OR);
+    static Rule execute = new Rule(RuleName.EXECUTE, RuleType.OR);
+    static Rule executeParams = new Rule(RuleName.EXECUTE_PARAMS, RuleType.SEQ);
+    static Rule executeNoParams = new Rule(RuleName.EXECUTE_NO_PARAMS, RuleType.SEQ);
+    static Rule load = new Rule(RuleName.LOAD, RuleType.SEQ);
 
     //create intermediate SQL rules
     static Rule nameValList = new Rule(RuleName.NAME_VALUE_LIST, RuleType.OR);
@@ -35,6 +49,9 @@ public class SQLSimpGrammar{
     static Rule nameValPair = new Rule(RuleName.NAME_VALUE_PAIR, RuleType.SEQ);
     static Rule valList = new Rule(RuleName.VALUE_LIST, RuleType.OR);
     static Rule valListRec = new Rule(RuleName.VALUE_LIST_RECUR, RuleType.SEQ);
+    static Rule valRows = new Rule(RuleName.VALUE_ROWS, RuleType.OR);
+    static Rule valRowsRec = new Rule(RuleName.VALUE_ROWS_RECUR, RuleType.SEQ);
+    static Rule valRow = new Rule(RuleName.VALUE_ROW, RuleType.SEQ);
     static Rule value = new Rule(RuleName.VALUE, RuleType.OR);
     static Rule wildAttrList = new Rule(RuleName.WILD_ATTR_LIST, RuleType.OR);
     static Rule attrList = new Rule(RuleName.ATTR_LIST, RuleType.OR);
@@ -47,6 +64,7 @@ public class SQLSimpGrammar{
     static Rule attribute = new Rule(RuleName.ATTRIBUTE, "[a-zA-Z0-9]+");
     static Rule databaseName = new Rule(RuleName.DB_NAME, "[a-zA-Z0-9]+");
     static Rule tableName = new Rule(RuleName.TABLE_NAME, "[a-zA-Z0-9]+");
+    static Rule statementName = new Rule(RuleName.STATEMENT_NAME, "[a-zA-Z0-9]+");
 
     //create terminal rules for valid data types
     static Rule integerLit = new Rule(RuleName.INTEGER_LITERAL, "[+-]?[0-9]+");
@@ -54,6 +72,9 @@ public class SQLSimpGrammar{
     static Rule stringLit;
     static Rule nullLiteral = new Rule(RuleName.NULL_LITERAL, "NULL");
 
+    //stands for a value given later, only within a prepared command
+    static Rule placeholderLit = new Rule(RuleName.PLACEHOLDER, "\\?");
+
     //create terminal rules for valid symbols
     static Rule asteriskLit = new Rule(RuleName.ASTERISK_LITERAL, "\\*");
     static Rule comparator = new Rule(RuleName.COMPARATOR, "==|>|<|>=|<=|!=|LIKE");
@@ -66,6 +87,7 @@ public class SQLSimpGrammar{
 
     //create terminal rules for SQL keywords
     static Rule alterType = new Rule(RuleName.ALTERATION_TYPE, "ADD|DROP");
+    static Rule indexType = new Rule(RuleName.INDEX_TYPE, "HASH|SORTED");
     static Rule boolLit = new Rule(RuleName.BOOLEAN_LITERAL, "TRUE|FALSE");
     static Rule boolOperator = new Rule(RuleName.BOOL_OPERATOR, "AND|OR");
     static Rule useLit = new Rule(RuleName.USE_LITERAL, "USE");
@@ -86,8 +108,18 @@ public class SQLSimpGrammar{
     static Rule joinLit = new Rule(RuleName.JOIN_LITERAL, "JOIN");
     static Rule andLit = new Rule(RuleName.AND_LITERAL, "AND");
     static Rule onLit = new Rule(RuleName.ON_LITERAL, "ON");
+    static Rule flushLit = new Rule(RuleName.FLUSH_LITERAL, "FLUSH");
+    static Rule indexLit = new Rule(RuleName.INDEX_LITERAL, "INDEX");
+    static Rule prepareLit = new Rule(RuleName.PREPARE_LITERAL, "PREPARE");
+    static Rule asLit = new Rule(RuleName.AS_LITERAL, "AS");
+    static Rule executeLit = new Rule(RuleName.EXECUTE_LITERAL, "EXECUTE");
+    static Rule usingLit = new Rule(RuleName.USING_LITERAL, "USING");
+    static Rule loadLit = new Rule(RuleName.LOAD_LITERAL, "LOAD");
+    static Rule dataLit = new Rule(RuleName.DATA_LITERAL, "DATA");
 
     static{
+        reservedWordSet.addAll(reservedWords);
+
         String stringLitRegEx = String.join("", "'[", "!", "#", "\\$", "%", "&", "\\(",
                 "\\)", "\\*", "\\+", ",", "\\-", "\\.", "/", ":", ";", ">", "=", "<", "\\?", "@",
                 "\\[", "\\\\", "\\]", "\\^", "_", "`", "\\{", "\\}", "~", "a-zA-z0-9", " ", "]", "*'");
@@ -95,30 +127,46 @@ public class SQLSimpGrammar{
 
         //set the rule relations as defined by BNF grammar
         command.setSubRules(List.of(commandType, semicolonLit));
-        commandType.setSubRules(List.of(use, create, drop, alter, insert, select, update, delete, join));
+        commandType.setSubRules(List.of(use, create, drop, alter, insert, select, update, delete, join,
+                flush, prepare, execute, load));
         use.setSubRules(List.of(useLit, databaseName));
-        create.setSubRules(List.of(createDB, createTable));
+        create.setSubRules(List.of(createDB, createTable, createIndex));
         createDB.setSubRules(List.of(createLit, DBLit, databaseName));
         createTable.setSubRules(List.of(crTableAttr, crTableNoAttr));
         crTableNoAttr.setSubRules(List.of(createLit, tableLit, tableName));
         crTableAttr.setSubRules(List.of(createLit, tableLit, tableName, opParLit, attrList, clParLit));
-        drop.setSubRules(List.of(dropDB, dropTable));
+        createIndex.setSubRules(List.of(crIndexTyped, crIndexUntyped));
+        crIndexTyped.setSubRules(List.of(createLit, indexType, indexLit, onLit, tableName, opParLit, attribute,
+                clParLit));
+        crIndexUntyped.setSubRules(List.of(createLit, indexLit, onLit, tableName, opParLit, attribute, clParLit));
+        drop.setSubRules(List.of(dropDB, dropTable, dropIndex));
         dropDB.setSubRules(List.of(dropLit, DBLit, databaseName));
         dropTable.setSubRules(List.of(dropLit, tableLit, tableName));
+        dropIndex.setSubRules(List.of(dropLit, indexLit, onLit, tableName, opParLit, attribute, clParLit));
         alter.setSubRules(List.of(alterLit, tableLit, tableName, alterType, attribute));
-        insert.setSubRules(List.of(insertLit, intoLit, tableName, valuesLit, opParLit, valList, clParLit));
+        insert.setSubRules(List.of(insertLit, intoLit, tableName, valuesLit, valRows));
         select.setSubRules(List.of(selectCond, selectNoCond));
         selectNoCond.setSubRules(List.of(selectLit, wildAttrList, fromLit, tableName));
         selectCond.setSubRules(List.of(selectLit, wildAttrList, fromLit, tableName, whereLit, condition));
         update.setSubRules(List.of(updateLit, tableName, setLit, nameValList, whereLit, condition));
         delete.setSubRules(List.of(deleteLit, fromLit, tableName, whereLit, condition));
         join.setSubRules(List.of(joinLit, tableName, andLit, tableName, onLit, attribute, andLit, attribute));
+        flush.setSubRules(List.of(flushLit));
+        prepare.setSubRules(List.of(prepareLit, statementName, asLit, preparable));
+        preparable.setSubRules(List.of(insert, select, update, delete));
+        execute.setSubRules(List.of(executeParams, executeNoParams));
+        executeParams.setSubRules(List.of(executeLit, statementName, usingLit, opParLit, valList, clParLit));
+        executeNoParams.setSubRules(List.of(executeLit, statementName));
+        load.setSubRules(List.of(loadLit, dataLit, stringLit, intoLit, tableLit, tableName));
         nameValList.setSubRules(List.of(nameValListRec, nameValPair));
         nameValListRec.setSubRules(List.of(nameValPair, commaLit, nameValList));
         nameValPair.setSubRules(List.of(attribute, equalsLit, value));
         valList.setSubRules(List.of(valListRec, value));
         valListRec.setSubRules(List.of(value, commaLit, valList));
-        value.setSubRules(List.of(stringLit, boolLit, floatLit, integerLit, nullLiteral));
+        valRows.setSubRules(List.of(valRowsRec, valRow));
+        valRowsRec.setSubRules(List.of(valRow, commaLit, valRows));
+        valRow.setSubRules(List.of(opParLit, valList, clParLit));
+        value.setSubRules(List.of(stringLit, boolLit, floatLit, integerLit, nullLiteral, placeholderLit));
         wildAttrList.setSubRules(List.of(attrList, asteriskLit));
         attrList.setSubRules(List.of(attrListRec, attribute));
         attrListRec.setSubRules(List.of(attribute, commaLit, attrList));
@@ -127,4 +175,8 @@ public class SQLSimpGrammar{
         bracketCond.setSubRules(List.of(opParLit, condition, clParLit));
         simpleCond.setSubRules(List.of(attribute, comparator, value));
     }
-}
\ No newline at end of file
+
+    public static boolean isReservedWord(String word){
+        return reservedWordSet.contains(word);
+    }
+}
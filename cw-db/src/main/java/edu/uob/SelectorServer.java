@@ -0,0 +1,501 @@
+package edu.uob;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+//serves every connection from a single selector thread, so an idle connection holds no thread or buffer
+//commands run on a small pool of workers, as they may wait for table locks or the disk
+//requests are lines ended by a newline, as sent by DBClient, and responses end with the usual EOT line
+//clients may pipeline requests - they are read ahead, run in order and answered in batches
+//clients opening with the binary preamble send and receive BinaryProtocol frames instead
+//text query results are streamed a batch of rows at a time, and no more rows are made while a slow client catches up
+public class SelectorServer implements Runnable{
+    static final char END_OF_TRANSMISSION = 4;
+    static final String RESPONSE_END = "\n" + END_OF_TRANSMISSION + "\n";
+    static final int BUFFER_SIZE = 16 * 1024;
+    static final int MAX_POOLED_BUFFERS = 256;
+
+    //a request longer than this cannot be within the token limit, so the connection is dropped
+    static final int MAX_REQUEST_BYTES = 1024 * 1024;
+
+    //reading stops once this many requests are waiting, until the backlog is worked through
+    static final int MAX_WAITING_REQUESTS = 1024;
+
+    //most requests a worker runs in one go - their responses are written together
+    static final int MAX_BATCH_REQUESTS = 64;
+
+    //no more requests are run while this many response buffers wait for a slow client
+    static final int MAX_PENDING_BUFFERS = 16;
+
+    //rows of a query result rendered in one go by a worker
+    static final int STREAM_BATCH_ROWS = 256;
+
+    //state of one client connection, attached to its selection key
+    //only ever touched by the selector thread, apart from the session used by the workers
+    static class Connection{
+        SocketChannel channel;
+        SelectionKey key;
+        DatabaseHandler session;
+
+        //start of a request whose newline has not arrived yet
+        byte[] partialRequest;
+        int partialLength;
+
+        //whole requests read ahead of the one being run
+        Deque<String> waitingRequests;
+
+        //response buffers still to be written, in order
+        Deque<ByteBuffer> pendingWrites;
+
+        boolean commandRunning;
+
+        //query result still being sent - later requests wait until it ends
+        TableRenderer activeStream;
+
+        //decided by the first byte the client sends
+        boolean protocolChosen;
+        boolean binary;
+
+        Connection(SocketChannel channel, DatabaseHandler session){
+            this.channel = channel;
+            this.session = session;
+            partialRequest = null;
+            partialLength = 0;
+            waitingRequests = new ArrayDeque<String>();
+            pendingWrites = new ArrayDeque<ByteBuffer>();
+            commandRunning = false;
+            activeStream = null;
+            protocolChosen = binary = false;
+        }
+    }
+
+    //responses made by a worker, handed back to the selector thread to be written
+    //text responses are encoded by the selector thread, binary frames are already encoded
+    static class Completion{
+        Connection connection;
+
+        //pieces of text to send in order - a whole response ends with RESPONSE_END
+        List<String> responses;
+        List<byte[]> frames;
+
+        //set when a query result has more rows to send, along with the requests left from the batch
+        TableRenderer stream;
+        List<String> unrunRequests;
+
+        Completion(Connection connection, List<String> responses, List<byte[]> frames){
+            this.connection = connection;
+            this.responses = responses;
+            this.frames = frames;
+            stream = null;
+            unrunRequests = List.of();
+        }
+    }
+
+    DBServer server;
+    Selector selector;
+    ServerSocketChannel serverChannel;
+    ExecutorService workers;
+    BufferPool bufferPool;
+    Queue<Completion> completions;
+    CharsetEncoder encoder;
+    CharsetDecoder decoder;
+    volatile boolean running;
+
+    public SelectorServer(DBServer server, int portNumber) throws IOException {
+        this(server, portNumber, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SelectorServer(DBServer server, int portNumber, int numWorkers) throws IOException {
+        this.server = server;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(portNumber));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(numWorkers, runnable -> {
+            Thread worker = new Thread(runnable, "db-worker");
+            worker.setDaemon(true);
+            return worker;
+        });
+        bufferPool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+        completions = new ConcurrentLinkedQueue<Completion>();
+        encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        running = true;
+    }
+
+    //the port actually bound, for servers started on port 0
+    public int getPort(){
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void run(){
+        try{
+            while(running){
+                selector.select();
+                handleCompletions();
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while(selectedKeys.hasNext()){
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    handleKey(key);
+                }
+            }
+        }
+        catch(IOException selectExc){
+            System.err.println("Selector failed: " + selectExc.getMessage());
+        }
+        finally{
+            shutDown();
+        }
+    }
+
+    //stops the selector thread, which then closes every connection
+    public void close(){
+        running = false;
+        selector.wakeup();
+    }
+
+    void handleKey(SelectionKey key){
+        try{
+            if(!key.isValid())
+                return;
+            if(key.isAcceptable()){
+                acceptConnection();
+                return;
+            }
+            if(key.isReadable())
+                readRequests((Connection) key.attachment());
+            //a client sending and reading at once is both readable and writable
+            if(key.isValid() && key.isWritable())
+                writeResponses((Connection) key.attachment());
+        }
+        catch(IOException connectionExc){
+            if(key.attachment() != null)
+                closeConnection((Connection) key.attachment());
+        }
+    }
+
+    void acceptConnection() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if(channel == null)
+            return;
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel, server.openSession());
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    //a buffer is only borrowed for the read itself, so idle connections hold none
+    void readRequests(Connection connection) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try{
+            int numRead = connection.channel.read(buffer);
+            if(numRead < 0){
+                closeConnection(connection);
+                return;
+            }
+            buffer.flip();
+            if(!connection.protocolChosen)
+                chooseProtocol(connection, buffer);
+            if(connection.binary)
+                splitFrames(connection, buffer);
+            else
+                splitRequests(connection, buffer);
+        }
+        finally{
+            bufferPool.release(buffer);
+        }
+        runNextRequest(connection);
+    }
+
+    //a first byte other than NUL means a text client, which may send less than a preamble
+    //the preamble may arrive over several reads, so it is gathered like a request
+    void chooseProtocol(Connection connection, ByteBuffer buffer) throws IOException {
+        if(connection.partialLength == 0 && buffer.hasRemaining()
+            && buffer.get(buffer.position()) != BinaryProtocol.PREAMBLE[0]){
+            connection.protocolChosen = true;
+            return;
+        }
+
+        int preambleLength = BinaryProtocol.PREAMBLE.length;
+        int numBytes = Math.min(buffer.remaining(), preambleLength - connection.partialLength);
+        appendPartial(connection, buffer, numBytes);
+        if(connection.partialLength < preambleLength)
+            return;
+        if(!BinaryProtocol.isPreamble(Arrays.copyOf(connection.partialRequest, preambleLength)))
+            throw new IOException("Unknown protocol");
+
+        connection.partialLength = 0;
+        connection.protocolChosen = connection.binary = true;
+        queueFrame(connection, BinaryProtocol.PREAMBLE);
+        writeResponses(connection);
+    }
+
+    //frames are gathered in the partial request buffer until all of their bytes have arrived
+    void splitFrames(Connection connection, ByteBuffer buffer) throws IOException {
+        while(true){
+            int frameEnd = 4;
+            if(connection.partialLength >= 4){
+                int frameLength = BinaryProtocol.readInt(connection.partialRequest, 0);
+                if(frameLength < 0 || frameLength > MAX_REQUEST_BYTES)
+                    throw new IOException("Request too long");
+                frameEnd += frameLength;
+                if(connection.partialLength == frameEnd){
+                    connection.waitingRequests.add(new String(connection.partialRequest, 4, frameLength,
+                        StandardCharsets.UTF_8));
+                    connection.partialLength = 0;
+                    continue;
+                }
+            }
+            if(!buffer.hasRemaining())
+                return;
+            int numBytes = Math.min(buffer.remaining(), frameEnd - connection.partialLength);
+            appendPartial(connection, buffer, numBytes);
+        }
+    }
+
+    //finds each newline ended request, keeping any unfinished request for the next read
+    void splitRequests(Connection connection, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()){
+            int lineEnd = buffer.position();
+            while(lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n')
+                lineEnd++;
+
+            int numBytes = lineEnd - buffer.position();
+            if(connection.partialLength + numBytes > MAX_REQUEST_BYTES)
+                throw new IOException("Request too long");
+
+            if(lineEnd == buffer.limit()){
+                appendPartial(connection, buffer, numBytes);
+                return;
+            }
+
+            ByteBuffer lineBytes;
+            if(connection.partialLength == 0){
+                lineBytes = buffer.slice(buffer.position(), numBytes);
+                buffer.position(lineEnd + 1);
+            }else{
+                appendPartial(connection, buffer, numBytes);
+                lineBytes = ByteBuffer.wrap(connection.partialRequest, 0, connection.partialLength);
+                connection.partialLength = 0;
+                connection.partialRequest = null;
+                buffer.get();
+            }
+            connection.waitingRequests.add(decodeLine(lineBytes));
+        }
+    }
+
+    void appendPartial(Connection connection, ByteBuffer buffer, int numBytes){
+        int newLength = connection.partialLength + numBytes;
+        if(connection.partialRequest == null)
+            connection.partialRequest = new byte[Math.max(newLength, 256)];
+        else if(newLength > connection.partialRequest.length)
+            connection.partialRequest = Arrays.copyOf(connection.partialRequest,
+                Math.max(newLength, connection.partialRequest.length * 2));
+        buffer.get(connection.partialRequest, connection.partialLength, numBytes);
+        connection.partialLength = newLength;
+    }
+
+    //as readLine, a carriage return before the newline is not part of the request
+    String decodeLine(ByteBuffer lineBytes) throws CharacterCodingException {
+        String line = decoder.reset().decode(lineBytes).toString();
+        if(line.endsWith("\r"))
+            return line.substring(0, line.length() - 1);
+        return line;
+    }
+
+    //hands the waiting requests to a worker as one batch, run in order
+    //only one batch per connection runs at a time, so responses go back in order
+    //a query result being streamed is carried on before any later request is run
+    void runNextRequest(Connection connection){
+        if(!connection.key.isValid())
+            return;
+        if(connection.commandRunning || connection.pendingWrites.size() >= MAX_PENDING_BUFFERS){
+            updateInterest(connection);
+            return;
+        }
+        if(connection.activeStream != null){
+            TableRenderer stream = connection.activeStream;
+            connection.commandRunning = true;
+            workers.execute(() -> continueStream(connection, stream));
+        }else if(!connection.waitingRequests.isEmpty()){
+            List<String> requests = new ArrayList<String>();
+            while(!connection.waitingRequests.isEmpty() && requests.size() < MAX_BATCH_REQUESTS)
+                requests.add(connection.waitingRequests.poll());
+            connection.commandRunning = true;
+            workers.execute(() -> runBatch(connection, requests));
+        }
+        updateInterest(connection);
+    }
+
+    void runBatch(Connection connection, List<String> requests){
+        List<String> responses = new ArrayList<String>(requests.size() * 2);
+        List<byte[]> frames = new ArrayList<byte[]>(requests.size());
+        Completion completion = new Completion(connection, responses, frames);
+        for(int reqCnt = 0; reqCnt < requests.size(); reqCnt++){
+            CommandResult result;
+            try{
+                result = connection.session.runCommand(requests.get(reqCnt));
+            }
+            catch(RuntimeException commandExc){
+                result = CommandResult.fromResponse("[ERROR]\nCommand Execution Failure\n");
+            }
+            if(connection.binary){
+                frames.add(BinaryProtocol.encodeResult(result));
+            }else if(result.getResultTable() == null){
+                responses.add(result.toText());
+                responses.add(RESPONSE_END);
+            }else{
+                //only the first rows are rendered now, the rest once they have been written
+                TableRenderer stream = new TableRenderer(result.getResultTable());
+                StringBuilder firstRows = new StringBuilder("[OK]\n");
+                stream.renderRows(firstRows, STREAM_BATCH_ROWS);
+                responses.add(firstRows.toString());
+                if(!stream.hasMoreRows()){
+                    responses.add(RESPONSE_END);
+                    continue;
+                }
+                completion.stream = stream;
+                completion.unrunRequests = requests.subList(reqCnt + 1, requests.size());
+                break;
+            }
+        }
+        completions.add(completion);
+        selector.wakeup();
+    }
+
+    void continueStream(Connection connection, TableRenderer stream){
+        StringBuilder rows = new StringBuilder();
+        stream.renderRows(rows, STREAM_BATCH_ROWS);
+        List<String> responses = new ArrayList<String>(2);
+        responses.add(rows.toString());
+        Completion completion = new Completion(connection, responses, List.of());
+        if(stream.hasMoreRows())
+            completion.stream = stream;
+        else
+            responses.add(RESPONSE_END);
+        completions.add(completion);
+        selector.wakeup();
+    }
+
+    //keeps reading until too many requests are waiting, so a client sending too fast is held back by TCP
+    void updateInterest(Connection connection){
+        int interestOps = 0;
+        if(connection.waitingRequests.size() < MAX_WAITING_REQUESTS)
+            interestOps |= SelectionKey.OP_READ;
+        if(!connection.pendingWrites.isEmpty())
+            interestOps |= SelectionKey.OP_WRITE;
+        connection.key.interestOps(interestOps);
+    }
+
+    void handleCompletions(){
+        Completion completion;
+        while((completion = completions.poll()) != null){
+            Connection connection = completion.connection;
+            connection.commandRunning = false;
+            if(!connection.key.isValid())
+                continue;
+            connection.activeStream = completion.stream;
+            //requests left from the batch go back ahead of any read since
+            for(int reqCnt = completion.unrunRequests.size() - 1; reqCnt >= 0; reqCnt--)
+                connection.waitingRequests.addFirst(completion.unrunRequests.get(reqCnt));
+            for(String response : completion.responses)
+                queueResponse(connection, response);
+            for(byte[] frame : completion.frames)
+                queueFrame(connection, frame);
+            try{
+                writeResponses(connection);
+            }
+            catch(IOException writeExc){
+                closeConnection(connection);
+            }
+        }
+    }
+
+    //encodes straight into pooled buffers, without building the response bytes first
+    //small responses share the last pending buffer, so a batch goes out in as few buffers as possible
+    void queueResponse(Connection connection, String response){
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(response);
+        ByteBuffer buffer = reopenLastBuffer(connection);
+        while(encoder.encode(chars, buffer, true).isOverflow()){
+            connection.pendingWrites.add(buffer.flip());
+            buffer = bufferPool.acquire();
+        }
+        while(encoder.flush(buffer).isOverflow()){
+            connection.pendingWrites.add(buffer.flip());
+            buffer = bufferPool.acquire();
+        }
+        connection.pendingWrites.add(buffer.flip());
+    }
+
+    void queueFrame(Connection connection, byte[] frame){
+        ByteBuffer buffer = reopenLastBuffer(connection);
+        int frameOffset = 0;
+        while(true){
+            int numBytes = Math.min(buffer.remaining(), frame.length - frameOffset);
+            buffer.put(frame, frameOffset, numBytes);
+            frameOffset += numBytes;
+            if(frameOffset == frame.length)
+                break;
+            connection.pendingWrites.add(buffer.flip());
+            buffer = bufferPool.acquire();
+        }
+        connection.pendingWrites.add(buffer.flip());
+    }
+
+    //the last pending buffer, made ready to take more bytes, or a new one if it is full or part written
+    ByteBuffer reopenLastBuffer(Connection connection){
+        ByteBuffer lastBuffer = connection.pendingWrites.peekLast();
+        if(lastBuffer == null || lastBuffer.position() > 0 || lastBuffer.limit() == lastBuffer.capacity())
+            return bufferPool.acquire();
+        connection.pendingWrites.pollLast();
+        lastBuffer.position(lastBuffer.limit());
+        lastBuffer.limit(lastBuffer.capacity());
+        return lastBuffer;
+    }
+
+    //writes as many of the pending buffers as the socket takes in one gathering write
+    //then waits for the socket to be writable again, or moves on to the next request
+    void writeResponses(Connection connection) throws IOException {
+        ByteBuffer[] buffers = connection.pendingWrites.toArray(new ByteBuffer[0]);
+        connection.channel.write(buffers);
+        while(!connection.pendingWrites.isEmpty() && !connection.pendingWrites.peek().hasRemaining())
+            bufferPool.release(connection.pendingWrites.poll());
+
+        runNextRequest(connection);
+    }
+
+    void closeConnection(Connection connection){
+        connection.key.cancel();
+        try{ connection.channel.close(); }
+        catch(IOException closeExc){}
+        for(ByteBuffer buffer : connection.pendingWrites)
+            bufferPool.release(buffer);
+        connection.pendingWrites.clear();
+        connection.waitingRequests.clear();
+        connection.activeStream = null;
+    }
+
+    void shutDown(){
+        workers.shutdownNow();
+        for(SelectionKey key : selector.keys())
+            if(key.attachment() != null)
+                closeConnection((Connection) key.attachment());
+        try{
+            serverChannel.close();
+            selector.close();
+        }
+        catch(IOException closeExc){}
+    }
+}
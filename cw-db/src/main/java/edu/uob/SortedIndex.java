@@ -0,0 +1,77 @@
+package edu.uob;
+
+import java.util.*;
+
+//answers every comparison apart from "LIKE"
+//strings are ordered ignoring case, in the same way as compareStrings
+public class SortedIndex extends AttributeIndex{
+    TreeMap<Double, List<Integer>> numericRows;
+    TreeMap<String, List<Integer>> stringRows;
+
+    public SortedIndex(String colName){
+        super(colName);
+        numericRows = new TreeMap<Double, List<Integer>>();
+        stringRows = new TreeMap<String, List<Integer>>(String.CASE_INSENSITIVE_ORDER);
+    }
+
+    public IndexType getType(){
+        return IndexType.SORTED;
+    }
+
+    public void addValue(String tabValue, int rowNum){
+        Double numValue = parseNumeric(tabValue);
+        if(numValue != null)
+            addRow(numericRows, numValue, rowNum);
+        else
+            addRow(stringRows, tabValue, rowNum);
+    }
+
+    public void removeValue(String tabValue, int rowNum){
+        Double numValue = parseNumeric(tabValue);
+        if(numValue != null)
+            removeRow(numericRows, numValue, rowNum);
+        else
+            removeRow(stringRows, tabValue, rowNum);
+    }
+
+    public void clear(){
+        numericRows.clear();
+        stringRows.clear();
+    }
+
+    public BitSet findCandidates(CondOperator operator, CondValue condValue){
+        if(operator == CondOperator.LIKE)
+            return null;
+
+        BitSet candidates = new BitSet();
+        if(condValue.isNumeric)
+            addAllRows(findNumericRows(operator, condValue.numericValue + 0.0).values(), candidates);
+        else
+            addAllRows(findStringRows(operator, condValue.valueText).values(), candidates);
+        return candidates;
+    }
+
+    //values equal within epsilon are found with a slightly wider range
+    SortedMap<Double, List<Integer>> findNumericRows(CondOperator operator, double condValue){
+        double margin = 2 * ArrListTable.NUMERIC_EPSILON + 2 * Math.ulp(condValue);
+        switch(operator){
+            case EQUALS: return numericRows.subMap(condValue - margin, true, condValue + margin, true);
+            case GREATER: return numericRows.tailMap(condValue, false);
+            case GREATER_EQUALS: return numericRows.tailMap(condValue, true);
+            case LESS: return numericRows.headMap(condValue, false);
+            case LESS_EQUALS: return numericRows.headMap(condValue, true);
+            default: return numericRows;
+        }
+    }
+
+    SortedMap<String, List<Integer>> findStringRows(CondOperator operator, String condValue){
+        switch(operator){
+            case EQUALS: return stringRows.subMap(condValue, true, condValue, true);
+            case GREATER: return stringRows.tailMap(condValue, false);
+            case GREATER_EQUALS: return stringRows.tailMap(condValue, true);
+            case LESS: return stringRows.headMap(condValue, false);
+            case LESS_EQUALS: return stringRows.headMap(condValue, true);
+            default: return stringRows;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package edu.uob;
+
+import java.util.*;
+
+//shared by every session, so each public method holds the cache for its whole change
+public class TableCache{
+    //default memory budget for all cached tables (64MB)
+    static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    //rough heap cost of a single cell - string object, char array and list reference
+    static final long BYTES_PER_CELL = 64;
+
+    //access ordered map so that iteration starts at the least recently used table
+    LinkedHashMap<String, ArrListTable> cachedTables;
+
+    //estimated size of each cached table when it was last stored or refreshed
+    Map<String, Long> tableSizes;
+
+    long memoryBudget;
+    long memoryUsed;
+
+    //changed tables are left for the flusher to write out, and are only evicted once clean
+    TableFlusher tableFlusher;
+
+    public TableCache(){
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    public TableCache(long memoryBudget){
+        this.memoryBudget = memoryBudget;
+        cachedTables = new LinkedHashMap<String, ArrListTable>(16, 0.75f, true);
+        tableSizes = new HashMap<String, Long>();
+        memoryUsed = 0;
+        tableFlusher = null;
+    }
+
+    public void setTableFlusher(TableFlusher tableFlusher){
+        this.tableFlusher = tableFlusher;
+    }
+
+    //tables are keyed by database and table name
+    public static String getKey(String databaseName, String tableName){
+        return databaseName + "/" + tableName;
+    }
+
+    //returns null if the table is not cached
+    public synchronized ArrListTable getTable(String databaseName, String tableName){
+        return cachedTables.get(getKey(databaseName, tableName));
+    }
+
+    public synchronized boolean containsTable(String databaseName, String tableName){
+        return cachedTables.containsKey(getKey(databaseName, tableName));
+    }
+
+    public synchronized void putTable(String databaseName, ArrListTable table){
+        String tableKey = getKey(databaseName, table.getTableName());
+        invalidateKey(tableKey);
+
+        long tableSize = estimateSize(table);
+
+        //do not cache tables which could never fit within the budget
+        if(tableSize > memoryBudget)
+            return;
+
+        cachedTables.put(tableKey, table);
+        tableSizes.put(tableKey, tableSize);
+        memoryUsed += tableSize;
+        evictToBudget(tableKey);
+    }
+
+    //re-estimates the size of a table after it has been changed in place
+    public synchronized void refreshTable(String databaseName, String tableName){
+        String tableKey = getKey(databaseName, tableName);
+        ArrListTable table = cachedTables.get(tableKey);
+        if(table == null)
+            return;
+
+        long tableSize = estimateSize(table);
+        memoryUsed += tableSize - tableSizes.get(tableKey);
+        tableSizes.put(tableKey, tableSize);
+
+        //a table which has outgrown the whole budget is simply dropped, once it has been written out
+        if(tableSize > memoryBudget && isClean(tableKey))
+            invalidateKey(tableKey);
+        else
+            evictToBudget(tableKey);
+    }
+
+    public synchronized void invalidateTable(String databaseName, String tableName){
+        invalidateKey(getKey(databaseName, tableName));
+    }
+
+    //removes every table belonging to the given database
+    public synchronized void invalidateDatabase(String databaseName){
+        String keyPrefix = getKey(databaseName, "");
+        List<String> keysToRemove = new ArrayList<String>();
+        for(String tableKey : cachedTables.keySet())
+            if(tableKey.startsWith(keyPrefix))
+                keysToRemove.add(tableKey);
+        for(String tableKey : keysToRemove)
+            invalidateKey(tableKey);
+    }
+
+    public synchronized void clear(){
+        cachedTables.clear();
+        tableSizes.clear();
+        memoryUsed = 0;
+    }
+
+    public synchronized void setMemoryBudget(long memoryBudget){
+        this.memoryBudget = memoryBudget;
+        evictToBudget(null);
+    }
+
+    public synchronized long getMemoryBudget(){
+        return memoryBudget;
+    }
+
+    public synchronized long getMemoryUsed(){
+        return memoryUsed;
+    }
+
+    public synchronized int getNumTables(){
+        return cachedTables.size();
+    }
+
+    void invalidateKey(String tableKey){
+        if(cachedTables.remove(tableKey) != null)
+            memoryUsed -= tableSizes.remove(tableKey);
+    }
+
+    //a table with unsaved changes must stay cached, otherwise a reloaded copy could be changed
+    //alongside the one waiting to be flushed - writing it out here would hold up every session on disk
+    boolean isClean(String tableKey){
+        return tableFlusher == null || !tableFlusher.dirtyTables.containsKey(tableKey);
+    }
+
+    //evicts least recently used clean tables until within budget
+    //dirty tables may keep the cache over budget until the flusher has written them out
+    //the table given by keyToKeep (if any) is never evicted
+    void evictToBudget(String keyToKeep){
+        List<String> keysToEvict = new ArrayList<String>();
+        long memoryAfter = memoryUsed;
+        for(String tableKey : cachedTables.keySet()){
+            if(memoryAfter <= memoryBudget)
+                break;
+            if(tableKey.equals(keyToKeep) || !isClean(tableKey))
+                continue;
+            keysToEvict.add(tableKey);
+            memoryAfter -= tableSizes.get(tableKey);
+        }
+        for(String tableKey : keysToEvict)
+            invalidateKey(tableKey);
+    }
+
+    //estimate is kept constant time so that it can be refreshed after every change
+    public static long estimateSize(ArrListTable table){
+        return (long) (table.getNumEntries() + 1) * table.getNumAttributes() * BYTES_PER_CELL;
+    }
+}
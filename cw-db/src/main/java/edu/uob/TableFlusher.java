@@ -0,0 +1,158 @@
+package edu.uob;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+//writes changed tables back to their table files on a background thread
+//changes are already safe within the table log, so this only keeps the logs short
+public class TableFlusher implements Runnable{
+    static final long DEFAULT_FLUSH_MILLIS = 1000;
+
+    static class DirtyTable{
+        String databaseName;
+        String tableName;
+        volatile ArrListTable table;
+
+        //when the table was first changed after its last flush
+        long dirtySince;
+
+        //set once enough changes have built up to flush straight away
+        volatile boolean flushDue;
+
+        DirtyTable(String databaseName, String tableName, ArrListTable table){
+            this.databaseName = databaseName;
+            this.tableName = tableName;
+            this.table = table;
+            dirtySince = System.currentTimeMillis();
+            flushDue = false;
+        }
+    }
+
+    String parentFolderPath;
+    LogManager logManager;
+    long flushMillis;
+
+    //changed tables keyed by database and table name
+    //repeated changes to a table share one entry, so they are written out together
+    Map<String, DirtyTable> dirtyTables;
+
+    //held while a table is written so that it cannot be dropped part way through
+    final Object flushLock;
+
+    Thread flushThread;
+    volatile boolean running;
+
+    public TableFlusher(String parentFolderPath, LogManager logManager){
+        this(parentFolderPath, logManager, DEFAULT_FLUSH_MILLIS);
+    }
+
+    public TableFlusher(String parentFolderPath, LogManager logManager, long flushMillis){
+        this.parentFolderPath = parentFolderPath;
+        this.logManager = logManager;
+        this.flushMillis = flushMillis;
+        dirtyTables = new ConcurrentHashMap<String, DirtyTable>();
+        flushLock = new Object();
+        running = true;
+        flushThread = new Thread(this, "table-flusher");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    public void run(){
+        while(running){
+            synchronized(this){
+                try{ wait(flushMillis); }
+                catch(InterruptedException interruptExc){ return; }
+            }
+            flushDueTables();
+        }
+    }
+
+    //records that a table has changed - if flushDue the flush happens without waiting for the timer
+    public void markDirty(String databaseName, String tableName, ArrListTable table, boolean flushDue){
+        String tableKey = TableCache.getKey(databaseName, tableName);
+        DirtyTable dirtyTable = dirtyTables.computeIfAbsent(tableKey,
+                newKey -> new DirtyTable(databaseName, tableName, table));
+        dirtyTable.table = table;
+
+        if(flushDue){
+            dirtyTable.flushDue = true;
+            synchronized(this){ notifyAll(); }
+        }
+    }
+
+    public boolean isDirty(String databaseName, String tableName){
+        return dirtyTables.containsKey(TableCache.getKey(databaseName, tableName));
+    }
+
+    public int getNumDirtyTables(){
+        return dirtyTables.size();
+    }
+
+    void flushDueTables(){
+        long timeNow = System.currentTimeMillis();
+        for(Map.Entry<String, DirtyTable> dirtyEntry : dirtyTables.entrySet()){
+            DirtyTable dirtyTable = dirtyEntry.getValue();
+            if(dirtyTable.flushDue || timeNow - dirtyTable.dirtySince >= flushMillis)
+                flushTable(dirtyEntry.getKey());
+        }
+    }
+
+    //writes out a single table if it has changed
+    //returns false if the table could not be written
+    public boolean flushTable(String tableKey){
+        synchronized(flushLock){
+            //removed first, so changes made during the flush mark the table dirty again
+            DirtyTable dirtyTable = dirtyTables.remove(tableKey);
+            if(dirtyTable == null)
+                return true;
+
+            TableHandler handler = new TableHandler(dirtyTable.databaseName, dirtyTable.tableName,
+                    parentFolderPath);
+            handler.setLogManager(logManager);
+            handler.currTable = dirtyTable.table;
+
+            boolean tableSaved;
+            synchronized(dirtyTable.table){ tableSaved = handler.saveTable(); }
+
+            //try again on the next pass
+            if(!tableSaved)
+                dirtyTables.putIfAbsent(tableKey, dirtyTable);
+            return tableSaved;
+        }
+    }
+
+    //writes out every changed table and forces the logs to disk
+    public boolean flushAll(){
+        boolean allFlushed = true;
+        for(String tableKey : new ArrayList<String>(dirtyTables.keySet()))
+            if(!flushTable(tableKey))
+                allFlushed = false;
+        logManager.syncAll();
+        return allFlushed;
+    }
+
+    //forgets about a table without writing it e.g. because it is being dropped
+    public void discardTable(String databaseName, String tableName){
+        synchronized(flushLock){
+            dirtyTables.remove(TableCache.getKey(databaseName, tableName));
+        }
+    }
+
+    public void discardDatabase(String databaseName){
+        String keyPrefix = TableCache.getKey(databaseName, "");
+        synchronized(flushLock){
+            dirtyTables.keySet().removeIf(tableKey -> tableKey.startsWith(keyPrefix));
+        }
+    }
+
+    //stops the background thread, then writes out whatever is left
+    //the thread is woken rather than interrupted, as an interrupt would close the log channels
+    public void close(){
+        running = false;
+        synchronized(this){ notifyAll(); }
+        try{ flushThread.join(); }
+        catch(InterruptedException interruptExc){ Thread.currentThread().interrupt(); }
+        flushAll();
+    }
+}
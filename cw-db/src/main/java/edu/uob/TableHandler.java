@@ -1,6 +1,12 @@
 package edu.uob;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 
 public class TableHandler{
     String fileSep = File.separator;
@@ -19,10 +25,18 @@ public class TableHandler{
     //database currently being worked on
     ArrListTable currTable;
 
+    //changes are appended to the table log when set, otherwise the table file is rewritten
+    LogManager logManager;
+
+    //when set, the table file is rewritten in the background rather than by the caller
+    TableFlusher tableFlusher;
+
     public TableHandler(String parentFolderPath){
         this.parentFolderPath = parentFolderPath;
         tableName = databaseName = tablePath = null;
         tableFile = null;
+        logManager = null;
+        tableFlusher = null;
     }
     
     public TableHandler(String databaseName, String tableName, String parentFolderPath){
@@ -75,56 +89,125 @@ public class TableHandler{
             catch(IOException readExc){ return false; }
         }
         
-        //load last assigned ID
-        if(!loadID())
-            return false;
-        
         try{ buffReader.close(); }
         catch(IOException closeExc){ return false; }
 
-        return true;
+        //load last assigned ID
+        boolean idLoaded = loadID();
+
+        //then apply any changes made since the table file was written
+        if(!TableLog.replay(getLogFile(), currTable))
+            return false;
+
+        //indexes are built once all the rows are in place
+        if(!loadIndexes())
+            return false;
+
+        return idLoaded;
     }
 
     //saves a given table
+    //this is also the checkpoint for the table log, which is only emptied once the table file
+    //and its last assigned ID are both on disk, so a crash never loses a change acknowledged as durable
     //returns false if save fails
     public boolean saveTable(){
         FileWriter writer;
-        String nextLine;
 
-        //delete file if already exists
-        tableFile.delete();
-
-        //create file
-        try{ tableFile.createNewFile(); }
-        catch(IOException fileCrExc){ return false; }
-
-        try{ writer = new FileWriter(tableFile); }
+        //write to a temporary file so the old table survives a failed save
+        File tempFile = new File(tablePath + ".tmp");
+        try{ writer = new FileWriter(tempFile); }
         catch(IOException writerExc){ return false; }
 
         BufferedWriter buffWriter = new BufferedWriter(writer);
 
-        for(int rowCnt = 0; rowCnt <= currTable.getNumEntries(); rowCnt++){
-            nextLine = "";
-            for(int colCnt = 0; colCnt < currTable.getNumAttributes(); colCnt++){
-                nextLine += currTable.tableData.get(colCnt).get(rowCnt);
-                if(colCnt < currTable.getNumAttributes() - 1)
-                    nextLine += "\t";
+        //deleted rows are left out, so the table file is always compact
+        try{
+            for(int rowCnt = 0; rowCnt <= currTable.getNumEntries(); rowCnt++){
+                if(currTable.isRowDeleted(rowCnt))
+                    continue;
+                if(rowCnt > 0)
+                    buffWriter.write('\n');
+                for(int colCnt = 0; colCnt < currTable.getNumAttributes(); colCnt++){
+                    buffWriter.write(currTable.tableData.get(colCnt).get(rowCnt));
+                    if(colCnt < currTable.getNumAttributes() - 1)
+                        buffWriter.write('\t');
+                }
             }
-            if(rowCnt < currTable.getNumEntries())
-                nextLine += "\n";
-            try{ buffWriter.write(nextLine); }
-            catch(IOException writeExc){ return false; }
+            buffWriter.close();
         }
+        catch(IOException writeExc){ return false; }
 
-        try{ buffWriter.close(); }
-        catch(IOException closeExc){ return false; }
+        //replace the table file with the new one
+        if(!replaceFile(tempFile, tableFile))
+            return false;
 
         //persistent storage of ID
         if(!saveID())
             return false;
 
+        //the log records are now all contained within the table file
+        if(logManager != null)
+            return logManager.truncateLog(getLogFile(), tableFile);
+        return !getLogFile().exists() || getLogFile().delete();
+    }
+
+    //records a change in the table log, or saves the whole table if there is no log
+    //the table file is rewritten once enough changes have built up in the log
+    public boolean appendToLog(String record){
+        if(logManager == null)
+            return saveTable();
+
+        TableLog tableLog = logManager.getLog(getLogFile(), tableFile);
+        if(tableLog == null || !logManager.appendRecord(tableLog, record))
+            return saveTable();
+
+        //leave the rewrite to the flusher where there is one
+        if(tableFlusher != null){
+            tableFlusher.markDirty(databaseName, tableName, currTable, tableLog.checkpointDue());
+            return true;
+        }
+
+        if(tableLog.checkpointDue())
+            return saveTable();
         return true;
     }
+
+    //logs the row at the given position, which must already be within the table
+    public boolean logInsert(int rowNum){
+        return appendToLog(TableLog.insertRecord(currTable.getRow(rowNum)));
+    }
+
+    //logs the rows from firstRow to the end of the table, all in one record
+    public boolean logInserts(int firstRow){
+        if(firstRow == currTable.getNumEntries())
+            return logInsert(firstRow);
+        List<String[]> rows = new ArrayList<String[]>();
+        for(int rowNum = firstRow; rowNum <= currTable.getNumEntries(); rowNum++)
+            rows.add(currTable.getRow(rowNum));
+        return appendToLog(TableLog.insertRowsRecord(rows));
+    }
+
+    public boolean logUpdate(boolean[] selectionList, String[][] nameValPair){
+        List<Integer> updatedIDs = getSelectedIDs(selectionList);
+        if(updatedIDs.isEmpty())
+            return true;
+        return appendToLog(TableLog.updateRecord(updatedIDs, nameValPair));
+    }
+
+    public boolean logDelete(List<Integer> deletedIDs){
+        if(deletedIDs.isEmpty())
+            return true;
+        return appendToLog(TableLog.deleteRecord(deletedIDs));
+    }
+
+    //finds the id values of the rows within a selection
+    public List<Integer> getSelectedIDs(boolean[] selectionList){
+        List<Integer> selectedIDs = new ArrayList<Integer>();
+        for(int rowCnt = 1; rowCnt <= currTable.getNumEntries(); rowCnt++)
+            if(selectionList[rowCnt - 1])
+                selectedIDs.add(currTable.getIDValues().get(rowCnt));
+        return selectedIDs;
+    }
     
     //checks whether table exists within current database
     //returns true if does exist
@@ -141,10 +224,43 @@ public class TableHandler{
     
     //returns true if table file is successfully deleted
     public boolean deleteTable(String selectedTable){
+        //remove the log first so that a new table of the same name does not replay it
+        File logToDelete = getLogFromTable(selectedTable);
+        if(logManager != null)
+            logManager.deleteLog(logToDelete);
+        else
+            logToDelete.delete();
+
+        getIndexFileFromTable(selectedTable).delete();
+
         File fileToDelete = getFileFromTable(selectedTable);
         return fileToDelete.delete();
     }
 
+    public File getLogFromTable(String selectedTable){
+        String selectedPath = parentFolderPath + fileSep + databaseName
+            + fileSep + selectedTable + ".wal";
+        return new File(selectedPath);
+    }
+
+    public File getIndexFileFromTable(String selectedTable){
+        String selectedPath = parentFolderPath + fileSep + databaseName
+            + fileSep + selectedTable + ".idx";
+        return new File(selectedPath);
+    }
+
+    public File getLogFile(){
+        return getLogFromTable(tableName);
+    }
+
+    public void setLogManager(LogManager logManager){
+        this.logManager = logManager;
+    }
+
+    public void setTableFlusher(TableFlusher tableFlusher){
+        this.tableFlusher = tableFlusher;
+    }
+
     public String getTableName(){
         return tableName;
     }
@@ -166,19 +282,35 @@ public class TableHandler{
         currTable = null;
     }
 
+    //forces the new file to disk before it replaces the old one, then forces the folder
+    //so that after a crash the file is either the old one or the whole of the new one
+    boolean replaceFile(File tempFile, File targetFile){
+        try(FileChannel tempChannel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)){
+            tempChannel.force(true);
+        }
+        catch(IOException syncExc){ return false; }
+
+        try{ Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE); }
+        catch(IOException moveExc){ return false; }
+
+        //not every platform can open a folder to force it, in which case the move is left to the system
+        try(FileChannel folderChannel = FileChannel.open(targetFile.getParentFile().toPath(),
+                StandardOpenOption.READ)){
+            folderChannel.force(true);
+        }
+        catch(IOException folderSyncExc){}
+        return true;
+    }
+
+    //written beside the old file and then moved over it, so the last assigned ID is never missing
     public boolean saveID(){
         String fileNameForID = tableName + "_ID";
         File fileForID = getFileFromTable(fileNameForID);
+        File tempFile = new File(fileForID.getPath() + ".tmp");
         FileWriter writerForID;
 
-        //delete file if already exists
-        fileForID.delete();
-
-        //create file
-        try{ fileForID.createNewFile(); }
-        catch(IOException fileCrExc){ return false; }
-
-        try{ writerForID = new FileWriter(fileForID); }
+        try{ writerForID = new FileWriter(tempFile); }
         catch(IOException writerExc){ return false; }
 
         BufferedWriter buffWriter = new BufferedWriter(writerForID);
@@ -187,7 +319,7 @@ public class TableHandler{
 
         try{ buffWriter.close(); }
         catch(IOException closeExc){ return false; }
-        return true;
+        return replaceFile(tempFile, fileForID);
     }
 
     public boolean loadID(){
@@ -212,4 +344,40 @@ public class TableHandler{
         catch(IOException closeExc){ return false; }
         return true;
     }
+
+    //writes the column and type of each index, one per line
+    //the file is removed when the table has no indexes
+    public boolean saveIndexes(){
+        File indexFile = getIndexFileFromTable(tableName);
+        List<AttributeIndex> indexes = currTable.getIndexes();
+        if(indexes.isEmpty())
+            return !indexFile.exists() || indexFile.delete();
+
+        List<String> indexLines = new ArrayList<String>();
+        for(AttributeIndex index : indexes)
+            indexLines.add(index.getColName() + "\t" + index.getType());
+        try{ Files.write(indexFile.toPath(), indexLines, StandardCharsets.UTF_8); }
+        catch(IOException writeExc){ return false; }
+        return true;
+    }
+
+    //rebuilds the indexes listed for the table - it is fine for there to be none
+    public boolean loadIndexes(){
+        File indexFile = getIndexFileFromTable(tableName);
+        if(!indexFile.exists())
+            return true;
+
+        List<String> indexLines;
+        try{ indexLines = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8); }
+        catch(IOException readExc){ return false; }
+
+        for(String indexLine : indexLines){
+            String[] indexDetails = indexLine.split("\t");
+            if(indexDetails.length != 2)
+                continue;
+            try{ currTable.createIndex(indexDetails[0], IndexType.valueOf(indexDetails[1])); }
+            catch(IllegalArgumentException unknownType){ return false; }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,248 @@
+package edu.uob;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+//append-only log of the changes made to a table since its last snapshot
+//each record is a single tab separated line, in the same format as the table file
+public class TableLog{
+    static final String INSERT_RECORD = "INSERT";
+    static final String INSERT_ROWS_RECORD = "INSERTS";
+    static final String UPDATE_RECORD = "UPDATE";
+    static final String DELETE_RECORD = "DELETE";
+
+    //logs are never checkpointed below this size
+    static final long MIN_CHECKPOINT_BYTES = 64 * 1024;
+
+    File logFile;
+    FileChannel logChannel;
+
+    //current size of the log and of the snapshot it applies to
+    long logBytes;
+    long snapshotBytes;
+
+    //records written to the log, and how many of those have been forced to disk
+    //a committer waiting on group commit waits for syncedRecords to reach its own record
+    long appendedRecords;
+    long syncedRecords;
+
+    //set when the last attempt to force the log failed, so that waiting committers give up
+    boolean syncFailed;
+
+    public TableLog(File logFile, long snapshotBytes){
+        this.logFile = logFile;
+        this.snapshotBytes = snapshotBytes;
+        logChannel = null;
+        logBytes = 0;
+        appendedRecords = syncedRecords = 0;
+        syncFailed = false;
+    }
+
+    //returns false if the log file cannot be opened
+    public synchronized boolean open(){
+        try{
+            logChannel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            logBytes = logChannel.size();
+        }
+        catch(IOException openExc){ return false; }
+        return true;
+    }
+
+    //writes a record to the end of the log - the record is visible to readers once this returns
+    //returns the number of the record within the log, or -1 if it could not be written
+    public synchronized long append(String record){
+        ByteBuffer recordBytes = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        try{
+            while(recordBytes.hasRemaining())
+                logBytes += logChannel.write(recordBytes);
+        }
+        catch(IOException writeExc){ return -1; }
+        return ++appendedRecords;
+    }
+
+    //forces any written records to disk, waking any committers waiting on them
+    public synchronized boolean sync(){
+        if(syncedRecords == appendedRecords || logChannel == null)
+            return true;
+        try{ logChannel.force(false); }
+        catch(IOException syncExc){
+            syncFailed = true;
+            notifyAll();
+            return false;
+        }
+        syncedRecords = appendedRecords;
+        syncFailed = false;
+        notifyAll();
+        return true;
+    }
+
+    //waits up to waitMillis for another thread to force the record to disk, then forces it itself
+    //so a committer is never acknowledged before its record is durable, even if no sync comes
+    public synchronized boolean awaitSync(long recordNumber, long waitMillis){
+        long waitUntil = System.currentTimeMillis() + waitMillis;
+        long millisLeft = waitMillis;
+        while(syncedRecords < recordNumber && !syncFailed && logChannel != null && millisLeft > 0){
+            try{ wait(millisLeft); }
+            catch(InterruptedException interruptExc){
+                Thread.currentThread().interrupt();
+                break;
+            }
+            millisLeft = waitUntil - System.currentTimeMillis();
+        }
+        if(syncedRecords >= recordNumber)
+            return true;
+        return !syncFailed && sync();
+    }
+
+    //empties the log once its records are contained within a new snapshot
+    public synchronized boolean truncate(long snapshotBytes){
+        this.snapshotBytes = snapshotBytes;
+        try{ logChannel.truncate(0); }
+        catch(IOException truncExc){ return false; }
+        logBytes = 0;
+
+        //the records are now held within the snapshot instead
+        syncedRecords = appendedRecords;
+        notifyAll();
+        return true;
+    }
+
+    public synchronized void close(){
+        if(logChannel == null)
+            return;
+        try{ logChannel.close(); }
+        catch(IOException closeExc){}
+        logChannel = null;
+        notifyAll();
+    }
+
+    //a checkpoint is due once the log has grown as large as the snapshot
+    //rewriting the snapshot is then paid for by the records written since the last one
+    public synchronized boolean checkpointDue(){
+        return logBytes > Math.max(MIN_CHECKPOINT_BYTES, snapshotBytes);
+    }
+
+    public static String insertRecord(String[] rowValues){
+        return INSERT_RECORD + "\t" + String.join("\t", rowValues);
+    }
+
+    //rows inserted together, as one line so that a partly written batch is never replayed
+    //the number of values in each row comes first, then the values of every row including their ids
+    public static String insertRowsRecord(List<String[]> rows){
+        StringBuilder record = new StringBuilder(INSERT_ROWS_RECORD);
+        record.append('\t').append(rows.get(0).length);
+        for(String[] rowValues : rows)
+            for(String value : rowValues)
+                record.append('\t').append(value);
+        return record.toString();
+    }
+
+    //the number of attributes comes first, then the name value pairs, then the ids of rows updated
+    public static String updateRecord(List<Integer> updatedIDs, String[][] nameValPair){
+        StringBuilder record = new StringBuilder(UPDATE_RECORD);
+        record.append('\t').append(nameValPair[0].length);
+        for(int attrCount = 0; attrCount < nameValPair[0].length; attrCount++)
+            record.append('\t').append(nameValPair[0][attrCount])
+                .append('\t').append(nameValPair[1][attrCount]);
+        for(Integer idValue : updatedIDs)
+            record.append('\t').append(idValue);
+        return record.toString();
+    }
+
+    public static String deleteRecord(List<Integer> deletedIDs){
+        StringBuilder record = new StringBuilder(DELETE_RECORD);
+        for(Integer idValue : deletedIDs)
+            record.append('\t').append(idValue);
+        return record.toString();
+    }
+
+    //applies all complete records within the log file to a freshly loaded table
+    //replaying a log onto a snapshot which already contains some of its records gives the same table
+    //returns false if the log exists but cannot be read
+    public static boolean replay(File logFile, ArrListTable table){
+        if(!logFile.exists())
+            return true;
+
+        String logText;
+        try{ logText = new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8); }
+        catch(IOException readExc){ return false; }
+
+        //ignore a partially written final record
+        logText = logText.substring(0, logText.lastIndexOf('\n') + 1);
+        if(logText.isEmpty())
+            return true;
+
+        Set<Integer> presentIDs = new HashSet<Integer>(table.getIDValues().subList(1, table.getIDValues().size()));
+
+        for(String record : logText.split("\n")){
+            String[] recordValues = record.split("\t");
+            if(recordValues[0].equals(INSERT_RECORD))
+                replayInsert(table, Arrays.copyOfRange(recordValues, 1, recordValues.length), presentIDs);
+            else if(recordValues[0].equals(INSERT_ROWS_RECORD))
+                replayInsertRows(table, recordValues, presentIDs);
+            else if(recordValues[0].equals(UPDATE_RECORD))
+                replayUpdate(table, recordValues);
+            else if(recordValues[0].equals(DELETE_RECORD))
+                replayDelete(table, recordValues, presentIDs);
+        }
+        return true;
+    }
+
+    //takes the values of the row, starting with its id
+    static void replayInsert(ArrListTable table, String[] rowValues, Set<Integer> presentIDs){
+        int idValue;
+        try{ idValue = Integer.parseInt(rowValues[0]); }
+        catch(NumberFormatException notInt){ return; }
+
+        //row already within the snapshot
+        if(presentIDs.contains(idValue))
+            return;
+
+        if(table.addRow(rowValues, true)){
+            presentIDs.add(idValue);
+            table.lastAssignedID = Math.max(table.lastAssignedID, idValue);
+        }
+    }
+
+    static void replayInsertRows(ArrListTable table, String[] recordValues, Set<Integer> presentIDs){
+        int rowLength = Integer.parseInt(recordValues[1]);
+        for(int rowStart = 2; rowStart + rowLength <= recordValues.length; rowStart += rowLength)
+            replayInsert(table, Arrays.copyOfRange(recordValues, rowStart, rowStart + rowLength), presentIDs);
+    }
+
+    static void replayUpdate(ArrListTable table, String[] recordValues){
+        int numAttributes = Integer.parseInt(recordValues[1]);
+        String[][] nameValPair = new String[2][numAttributes];
+        for(int attrCount = 0; attrCount < numAttributes; attrCount++){
+            nameValPair[0][attrCount] = recordValues[2 + 2 * attrCount];
+            nameValPair[1][attrCount] = recordValues[3 + 2 * attrCount];
+        }
+
+        //skip updates to columns which no longer exist
+        for(String attribute : nameValPair[0])
+            if(!table.checkAttributeExists(attribute))
+                return;
+
+        Set<Integer> updatedIDs = getRecordIDs(recordValues, 2 + 2 * numAttributes);
+        table.updateTable(table.selectIDs(updatedIDs), nameValPair);
+    }
+
+    static void replayDelete(ArrListTable table, String[] recordValues, Set<Integer> presentIDs){
+        Set<Integer> deletedIDs = getRecordIDs(recordValues, 1);
+        table.removeRows(table.selectIDs(deletedIDs));
+        presentIDs.removeAll(deletedIDs);
+    }
+
+    static Set<Integer> getRecordIDs(String[] recordValues, int firstID){
+        Set<Integer> recordIDs = new HashSet<Integer>();
+        for(int valCnt = firstID; valCnt < recordValues.length; valCnt++)
+            recordIDs.add(Integer.parseInt(recordValues[valCnt]));
+        return recordIDs;
+    }
+}
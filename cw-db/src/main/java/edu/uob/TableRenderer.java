@@ -0,0 +1,115 @@
+package edu.uob;
+
+import java.io.*;
+
+//renders a table as tab aligned text, as sent by the text protocol, a batch of rows at a time
+//column widths are found in one pass before any row is rendered, so each batch can be sent as soon as it is made
+//values are copied straight from the table into the output, without stripping quotes into new strings
+public class TableRenderer{
+    static final int TAB_WIDTH = 4;
+
+    //rows rendered between writes when writing to a Writer
+    static final int WRITE_BATCH_ROWS = 256;
+
+    TableStructure table;
+
+    //tabs needed to hold the widest value of each column
+    int[] maxColTabs;
+
+    //next row to render - the header is row 0
+    int nextRow;
+
+    //reused for every batch written to a Writer
+    StringBuilder rowBuffer;
+    char[] writeBuffer;
+
+    public TableRenderer(TableStructure table){
+        this.table = table;
+        maxColTabs = new int[table.getNumAttributes()];
+        for(int colCnt = 0; colCnt < table.getNumAttributes(); colCnt++){
+            int maxColWidth = 0;
+            for(int rowCnt = 0; rowCnt <= table.getNumEntries(); rowCnt++)
+                if(!table.isRowDeleted(rowCnt))
+                    maxColWidth = Math.max(maxColWidth, table.getValue(colCnt, rowCnt).length());
+            maxColTabs[colCnt] = getTabs(maxColWidth);
+        }
+        nextRow = 0;
+        rowBuffer = null;
+        writeBuffer = null;
+    }
+
+    //tabs needed to "contain" a value of the given width
+    static int getTabs(int valueWidth){
+        return (valueWidth + TAB_WIDTH) / TAB_WIDTH;
+    }
+
+    public boolean hasMoreRows(){
+        return nextRow <= table.getNumEntries();
+    }
+
+    //renders up to maxRows more rows onto the end of the output
+    public void renderRows(StringBuilder output, int maxRows){
+        int numRendered = 0;
+        while(hasMoreRows() && numRendered < maxRows){
+            if(!table.isRowDeleted(nextRow)){
+                renderRow(output, nextRow);
+                numRendered++;
+            }
+            nextRow++;
+        }
+    }
+
+    //the rest of the table as one string, sized from the column widths so it is never regrown
+    public String renderAll(){
+        int rowWidth = 1;
+        for(int colTabs : maxColTabs)
+            rowWidth += colTabs * TAB_WIDTH;
+        long estimate = (long) rowWidth * (table.getNumEntries() + 1 - nextRow);
+        StringBuilder output = new StringBuilder((int) Math.min(estimate, 1 << 24));
+        renderRows(output, Integer.MAX_VALUE);
+        return output.toString();
+    }
+
+    //writes up to maxRows more rows, through a buffer reused between calls
+    public void writeRows(Writer writer, int maxRows) throws IOException {
+        if(rowBuffer == null)
+            rowBuffer = new StringBuilder();
+        rowBuffer.setLength(0);
+        renderRows(rowBuffer, maxRows);
+        if(writeBuffer == null || writeBuffer.length < rowBuffer.length())
+            writeBuffer = new char[rowBuffer.capacity()];
+        rowBuffer.getChars(0, rowBuffer.length(), writeBuffer, 0);
+        writer.write(writeBuffer, 0, rowBuffer.length());
+    }
+
+    public void writeAll(Writer writer) throws IOException {
+        while(hasMoreRows())
+            writeRows(writer, WRITE_BATCH_ROWS);
+    }
+
+    void renderRow(StringBuilder output, int rowNum){
+        int numAttributes = table.getNumAttributes();
+        for(int colCnt = 0; colCnt < numAttributes; colCnt++){
+            String tabValue = table.getValue(colCnt, rowNum);
+            appendValue(output, tabValue);
+
+            if(colCnt < numAttributes - 1)
+                for(int tabCnt = maxColTabs[colCnt] - getTabs(tabValue.length()); tabCnt >= 0; tabCnt--)
+                    output.append('\t');
+        }
+        output.append('\n');
+    }
+
+    //as ArrListTable.removeStrLitQuotes, and NULL values are not displayed
+    static void appendValue(StringBuilder output, String value){
+        int valueStart = 0;
+        int valueEnd = value.length();
+        if(valueEnd >= 2 && value.charAt(0) == '\'' && value.charAt(valueEnd - 1) == '\''){
+            valueStart++;
+            valueEnd--;
+        }
+        if(valueEnd - valueStart == 4 && value.regionMatches(true, valueStart, "NULL", 0, 4))
+            return;
+        output.append(value, valueStart, valueEnd);
+    }
+}
@@ -0,0 +1,43 @@
+package edu.uob;
+
+//state shared by every client session - cached tables, table logs and the background flusher
+//each session keeps its own current database and table within its DatabaseHandler
+public class TableStore{
+    //folder within which all data is stored
+    String parentFolderPath;
+
+    //tables kept in memory between commands
+    TableCache tableCache;
+
+    //logs of changes made to tables since they were last saved
+    LogManager logManager;
+
+    //rewrites changed table files in the background
+    TableFlusher tableFlusher;
+
+    //table locks taken by each command before it touches the shared tables
+    LockManager lockManager;
+
+    public TableStore(String parentFolderPath){
+        this(parentFolderPath, TableCache.DEFAULT_MEMORY_BUDGET);
+    }
+
+    public TableStore(String parentFolderPath, long cacheMemoryBudget){
+        this.parentFolderPath = parentFolderPath;
+        tableCache = new TableCache(cacheMemoryBudget);
+        logManager = new LogManager();
+        tableFlusher = new TableFlusher(parentFolderPath, logManager);
+        tableCache.setTableFlusher(tableFlusher);
+        lockManager = new LockManager();
+    }
+
+    public void setDurabilityMode(DurabilityMode durabilityMode, long groupCommitMillis){
+        logManager.setDurabilityMode(durabilityMode, groupCommitMillis);
+    }
+
+    //writes out all changed tables, then forces out and closes all table logs
+    public void close(){
+        tableFlusher.close();
+        logManager.close();
+    }
+}
@@ -10,6 +10,13 @@ public interface TableStructure{
     String[] getRow(int rowNum);
 
     List<String> getColumn(String colName);
+
+    //returns -1 if the column does not exist
+    int getColumnIndex(String colName);
+
+    List<String> getColumn(int colIndex);
+
+    String getValue(int colIndex, int rowNum);
     
     boolean removeRow(int rowNum);
 
@@ -17,6 +24,15 @@ public interface TableStructure{
     
     int getNumEntries();
 
+    //tables which mark rows as deleted rather than removing them straight away override these
+    default int getNumLiveEntries(){
+        return getNumEntries();
+    }
+
+    default boolean isRowDeleted(int rowNum){
+        return false;
+    }
+
     int getNumAttributes();
 
     boolean checkAttributeExists(String colName);
@@ -27,7 +43,23 @@ public interface TableStructure{
     
     String printTable();
 
-    ConditionResult evaluateCondition(String colName, String comparator, String condValue, int rowNum);
+    ConditionResult evaluateCondition(int colIndex, CondOperator operator, CondValue condValue, int rowNum);
+
+    //rows which could satisfy the comparison according to an index
+    //returns null if no index on the column can answer it, in which case every row must be checked
+    BitSet findCandidateRows(int colIndex, CondOperator operator, CondValue condValue);
+
+    //one off comparisons - compiled conditions parse the comparator and value once instead
+    default ConditionResult evaluateCondition(String colName, String comparator, String condValue,
+                                              int rowNum){
+        return evaluateCondition(getColumnIndex(colName), comparator, condValue, rowNum);
+    }
+
+    default ConditionResult evaluateCondition(int colIndex, String comparator, String condValue,
+                                              int rowNum){
+        return evaluateCondition(colIndex, CondOperator.fromText(comparator), new CondValue(condValue),
+                rowNum);
+    }
     
     String getTableName();
 
@@ -2,8 +2,15 @@ package edu.uob;
 
 public class Token{
     String tokenText;
+    TokenType tokenType;
 
+    //type found from the text, as the tokeniser would give it
     public Token(String tokenText){
+        this(tokenText, Tokeniser.findTokenType(tokenText));
+    }
+
+    public Token(String tokenText, TokenType tokenType){
         this.tokenText = tokenText;
+        this.tokenType = tokenType;
     }
 }
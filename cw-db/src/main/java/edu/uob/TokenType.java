@@ -0,0 +1,10 @@
+package edu.uob;
+
+public enum TokenType{
+    KEYWORD, //SQL keyword e.g. SELECT, TRUE or NULL
+    IDENTIFIER, //table, database or attribute name
+    STRING, //string literal with its quote marks
+    INTEGER, //signed or unsigned integer literal
+    FLOAT, //signed or unsigned decimal literal
+    OPERATOR; //comparators, brackets and any other symbol
+}
@@ -1,189 +1,196 @@
 package edu.uob;
 
 import java.util.*;
-import java.util.regex.*;
 
+//scans a command in one pass, giving typed tokens
+//only spaces separate tokens - any other symbol is a token of its own
+//e.g. "<" "=" becomes "<=", "-" "12" becomes "-12" and "3" "." "14" becomes "3.14", even with spaces between
+//a string literal runs from a quote mark to the next, or to the end of the command
 public class Tokeniser{
-    public static List<Token> extractTokens(String commandStr){
-        List<Token> tokens = new ArrayList<Token>();
-        List<String> tokenStrings;
-
-        //start off by splitting by spaces
-        tokenStrings = splitBySpaces(commandStr);
-        
-        //now split the sub strings by non-plaintext characters
-        List<String> splitSubStr;
-        for(int strCnt = 0; strCnt < tokenStrings.size(); strCnt++){
-            String subStr = tokenStrings.get(strCnt);
-            splitSubStr = new ArrayList<String>();
-            String plaintextStr = "";
-            
-            //go through all characters in sub-string
-            for(char currChar : subStr.toCharArray()){
-                
-                if(Character.isLetterOrDigit(currChar)){
-                    //group plaintext characters
-                    plaintextStr += currChar;
-                }else{
-                    if(plaintextStr.length() > 0){
-                        splitSubStr.add(plaintextStr);
-                        plaintextStr = "";
-                    }
-                    //add non-plaintext characters as separate tokens
-                    splitSubStr.add(Character.toString(currChar));
-                }
-            }
-            
-            //add any remaining plaintext from the sub-string
-            if(plaintextStr.length() > 0)
-                splitSubStr.add(plaintextStr);
-            
-            //a length greater than one means the string has been split
-            if(splitSubStr.size() > 1){
-                //replace the string at strCnt with the decomposed list
-                tokenStrings.remove(strCnt);
-                tokenStrings.addAll(strCnt, splitSubStr);
-                //increase strCnt to offset changing size of list array
-                strCnt += splitSubStr.size() - 1;
-            }
-        }
-        
-        //combine symbolic tokens as appropriate
-        tokenStrings = combineSymbolTokens(tokenStrings);
-        
-        //convert token strings to tokens
-        for(String subStr : tokenStrings) {
-            tokens.add(new Token(subStr));
-        }
-        
-        return tokens;
+    //words of the grammar, which may still be used as names where not reserved
+    static final Set<String> keywords = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+    static{
+        keywords.addAll(SQLSimpGrammar.reservedWords);
+        keywords.addAll(List.of("TRUE", "FALSE", "NULL", "HASH", "SORTED", "PREPARE", "AS", "EXECUTE", "USING",
+                "LOAD", "DATA"));
     }
-    
-    //after splitting apart token string, recombines select strings
-    //e.g. "<" + "=" becomes "<="
-    public static List<String> combineSymbolTokens(List<String> tokenStrings) {
-        List<String> combinedStrings = new ArrayList<String>();
-        
-        Pattern compFirstChars = Pattern.compile("=|<|>|!");
-        
-        for(int strCnt = 0; strCnt < tokenStrings.size(); strCnt++){
-            String currStr = tokenStrings.get(strCnt);
-            int strAfter = tokenStrings.size() - strCnt - 1;
-            String nextStr = (strAfter >= 1 ? tokenStrings.get(strCnt + 1) : null);
-            String twoStrAfter = (strAfter >= 2 ? tokenStrings.get(strCnt + 2) : null);
-            String threeStrAft = (strAfter >= 3 ? tokenStrings.get(strCnt + 3) : null);
-            Matcher compChMatcher = compFirstChars.matcher(currStr);
-            boolean strCombined = false;
-
-            //deal with string literals
-            //e.g. 'xyz\tuv', 'xyz!!)(', 'xyz ! abc'
-            if(currStr.equals("'") && strAfter >= 1){
-                String strLit = currStr;
-                strCnt++;
-                do{
-                    currStr = tokenStrings.get(strCnt); //get next token string
-                    strLit += currStr; //keep combining until closing quote
-                    strCnt++;
-                }
-                while(strCnt < tokenStrings.size() && !currStr.equals("'"));
 
-                //prevent overcounting of token
-                strCnt--;
+    String commandStr;
+    int commandLength;
 
-                combinedStrings.add(strLit);
-                strCombined = true;
-            }
+    //position of the next character to scan
+    int position;
 
-            //combine to give "==", "<=", ">=", "!="
-            if(compChMatcher.matches() && strAfter >= 1 && !strCombined){
-                if(nextStr.equals("=")){
-                    combinedStrings.add(currStr + nextStr);
-                    strCnt++;
-                    strCombined = true;
-                }
-            }
+    List<Token> tokens;
 
-            //combine "+", "3", ".", "14" to "3.14"
-            if((currStr.equals("+") || currStr.equals("-")) && strAfter >= 3 && !strCombined){
-                if(isNumeric(nextStr) && twoStrAfter.equals(".") && isNumeric(threeStrAft)){
-                    //do not add the "+" - there is no need
-                    String decimalStr = "";
-                    if(currStr.equals("-"))
-                        decimalStr = "-";
-                    decimalStr += (nextStr + twoStrAfter + threeStrAft);
-
-                    combinedStrings.add(decimalStr);
-                    strCnt += 3;
-                    strCombined = true;
-                }
-            }
+    //when scanning for a command's shape, only literals are kept as tokens
+    //every other token is written to the shape, and each literal is written as "?"
+    StringBuilder commandShape;
 
-            //combine "-", "12" to "-12"
-            if((currStr.equals("+") || currStr.equals("-")) && strAfter >= 1 && !strCombined){
-                if(isNumeric(nextStr)){
-                    //do not add the "+" - there is no need
-                    String integerStr = "";
-                    if(currStr.equals("-"))
-                        integerStr = "-";
-                    integerStr += nextStr;
-
-                    combinedStrings.add(integerStr);
-                    strCnt += 1;
-                    strCombined = true;
-                }
-            }
+    Tokeniser(String commandStr){
+        this.commandStr = commandStr;
+        commandLength = commandStr.length();
+        position = 0;
+        tokens = new ArrayList<Token>();
+        commandShape = null;
+    }
 
-            //combine "3", ".", "14" to "3.14"
-            if(isNumeric(currStr) && strAfter >= 2 && !strCombined){
-                if(nextStr.equals(".") && isNumeric(twoStrAfter)){
-                    combinedStrings.add(currStr + nextStr + twoStrAfter);
-                    strCnt += 2;
-                    strCombined = true;
-                }
-            }
-            
-            //if none of the above happened then add string without combining
-            if(!strCombined)
-                combinedStrings.add(currStr);
-        }
-        return combinedStrings;
+    public static List<Token> extractTokens(String commandStr){
+        return new Tokeniser(commandStr).scanTokens();
+    }
+
+    //scans the command with the same rules as extractTokens, writing its tokens to commandShape
+    //separated by spaces, so commands differing only in their literals or spacing have the same shape
+    //returns the literals in order
+    public static List<Token> extractLiterals(String commandStr, StringBuilder commandShape){
+        Tokeniser tokeniser = new Tokeniser(commandStr);
+        tokeniser.commandShape = commandShape;
+        return tokeniser.scanTokens();
     }
 
-    //splits a string by spaces but preserves spaces within string literals
-    //e.g. "this string" is split into "this", "string"
-    //e.g. "'this string'" is not split
-    public static List<String> splitBySpaces(String commandStr){
-        List<String> tokenStrings = new ArrayList<String>();
+    public static boolean isLiteral(TokenType tokenType){
+        return tokenType == TokenType.STRING || tokenType == TokenType.INTEGER || tokenType == TokenType.FLOAT;
+    }
+
+    List<Token> scanTokens(){
+        position = skipSpaces(0);
+        while(position < commandLength){
+            char currChar = commandStr.charAt(position);
+            if(currChar == '\'')
+                scanStringLiteral();
+            else if(Character.isLetterOrDigit(currChar))
+                scanWord();
+            else
+                scanSymbol(currChar);
+            position = skipSpaces(position);
+        }
+        return tokens;
+    }
 
-        //whether or not currently within string literal
-        boolean withinStrLiteral = false;
+    //a quote mark as the last character is left as a symbol
+    void scanStringLiteral(){
+        if(position == commandLength - 1){
+            addToken(position, commandLength, TokenType.OPERATOR);
+            return;
+        }
+        int closingQuote = commandStr.indexOf('\'', position + 1);
+        int literalEnd = (closingQuote < 0 ? commandLength : closingQuote + 1);
+        addToken(position, literalEnd, TokenType.STRING);
+    }
 
-        String currStr = "";
-        for(char currChar : commandStr.toCharArray()){
-            if(currChar == ' ' && !withinStrLiteral){
-                tokenStrings.add(currStr);
-                currStr = "";
+    //a run of letters and digits - an integer may carry on as a decimal
+    void scanWord(){
+        int wordEnd = findWordEnd(position);
+        if(!isDigitRun(position, wordEnd)){
+            if(commandShape != null){
+                addToken(position, wordEnd, TokenType.IDENTIFIER);
+                return;
             }
-            else currStr += currChar;
+            String word = commandStr.substring(position, wordEnd);
+            tokens.add(new Token(word, keywords.contains(word) ? TokenType.KEYWORD : TokenType.IDENTIFIER));
+            position = wordEnd;
+            return;
+        }
+        if(!scanFraction("", position, wordEnd))
+            addToken(position, wordEnd, TokenType.INTEGER);
+    }
 
-            if(currChar == '\''){
-                withinStrLiteral = !withinStrLiteral;
+    //combines comparators, and signs with the number after them - a "+" sign is dropped
+    void scanSymbol(char currChar){
+        int nextStart = skipSpaces(position + 1);
+        boolean hasNext = (nextStart < commandLength);
+
+        if("=<>!".indexOf(currChar) >= 0 && hasNext && commandStr.charAt(nextStart) == '='){
+            if(commandShape != null)
+                commandShape.append(currChar).append("= ");
+            else
+                tokens.add(new Token(currChar + "=", TokenType.OPERATOR));
+            position = nextStart + 1;
+            return;
+        }
+
+        if((currChar == '+' || currChar == '-') && hasNext){
+            int digitsEnd = findWordEnd(nextStart);
+            if(digitsEnd > nextStart && isDigitRun(nextStart, digitsEnd)){
+                String sign = (currChar == '-' ? "-" : "");
+                if(!scanFraction(sign, nextStart, digitsEnd)){
+                    String integerStr = (currChar == '-' && nextStart == position + 1)
+                            ? commandStr.substring(position, digitsEnd)
+                            : sign + commandStr.substring(nextStart, digitsEnd);
+                    keepToken(new Token(integerStr, TokenType.INTEGER));
+                    position = digitsEnd;
+                }
+                return;
             }
         }
 
-        //add the last sub-string from the loop
-        tokenStrings.add(currStr);
+        addToken(position, position + 1, TokenType.OPERATOR);
+    }
+
+    //adds a decimal if the digits from digitsStart are followed by "." and more digits
+    boolean scanFraction(String sign, int digitsStart, int digitsEnd){
+        int pointStart = skipSpaces(digitsEnd);
+        if(pointStart >= commandLength || commandStr.charAt(pointStart) != '.')
+            return false;
+        int fractionStart = skipSpaces(pointStart + 1);
+        int fractionEnd = findWordEnd(fractionStart);
+        if(fractionEnd == fractionStart || !isDigitRun(fractionStart, fractionEnd))
+            return false;
+
+        //without spaces the decimal is taken straight from the command
+        String decimalStr;
+        if(pointStart == digitsEnd && fractionStart == pointStart + 1)
+            decimalStr = sign + commandStr.substring(digitsStart, fractionEnd);
+        else
+            decimalStr = sign + commandStr.substring(digitsStart, digitsEnd) + "."
+                    + commandStr.substring(fractionStart, fractionEnd);
+        keepToken(new Token(decimalStr, TokenType.FLOAT));
+        position = fractionEnd;
+        return true;
+    }
 
-        //finally - remove all empty strings from the list
-        tokenStrings.removeAll(List.of(""));
+    void addToken(int tokenStart, int tokenEnd, TokenType tokenType){
+        if(commandShape != null && !isLiteral(tokenType))
+            commandShape.append(commandStr, tokenStart, tokenEnd).append(' ');
+        else
+            keepToken(new Token(commandStr.substring(tokenStart, tokenEnd), tokenType));
+        position = tokenEnd;
+    }
 
-        return tokenStrings;
+    //when scanning for the shape, only literals reach here
+    void keepToken(Token token){
+        tokens.add(token);
+        if(commandShape != null)
+            commandShape.append("? ");
     }
 
-    public static boolean isNumeric(String strIn){
-        for(char chOfStr : strIn.toCharArray())
-            if(!Character.isDigit(chOfStr))
+    int skipSpaces(int fromPos){
+        while(fromPos < commandLength && commandStr.charAt(fromPos) == ' ')
+            fromPos++;
+        return fromPos;
+    }
+
+    int findWordEnd(int fromPos){
+        while(fromPos < commandLength && Character.isLetterOrDigit(commandStr.charAt(fromPos)))
+            fromPos++;
+        return fromPos;
+    }
+
+    boolean isDigitRun(int runStart, int runEnd){
+        for(int charPos = runStart; charPos < runEnd; charPos++)
+            if(!Character.isDigit(commandStr.charAt(charPos)))
                 return false;
         return true;
     }
+
+    //type of a token given as text, e.g. one made outside the tokeniser
+    public static TokenType findTokenType(String tokenText){
+        if(tokenText.length() >= 2 && tokenText.charAt(0) == '\'')
+            return TokenType.STRING;
+        List<Token> scanned = extractTokens(tokenText);
+        if(scanned.size() == 1 && scanned.get(0).tokenText.equals(tokenText))
+            return scanned.get(0).tokenType;
+        return TokenType.OPERATOR;
+    }
 }
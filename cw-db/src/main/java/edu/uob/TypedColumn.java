@@ -0,0 +1,329 @@
+package edu.uob;
+
+import java.util.*;
+
+//a table column held by type - whole numbers in long arrays, decimals in double arrays, anything else as text
+//the type is inferred from the values as they are added, and NULL values are kept in a bitmap
+//values are only stored as numbers if they print back to exactly the same text, so the column still reads
+//as the strings it was given - a column mixing "65" and "6.5" is held as text, as "65" would come back as "65.0"
+//values are kept in chunks which versions of a table share, in the same way as ChunkedList
+//index 0 holds the column name, as for every other column of an ArrListTable
+public class TypedColumn extends AbstractList<String> implements RandomAccess{
+    static final int CHUNK_SHIFT = ChunkedList.CHUNK_SHIFT;
+    static final int CHUNK_SIZE = ChunkedList.CHUNK_SIZE;
+
+    String colName;
+    DataType colType;
+
+    //each chunk is a long[], double[] or String[] depending on the column type
+    Object[] valueChunks;
+    //one bit per value, set for NULL values
+    long[][] nullChunks;
+    //set for chunks which another version may be reading
+    boolean[] chunkShared;
+
+    //values not counting the column name
+    int numValues;
+    int numNulls;
+
+    public TypedColumn(String colName){
+        this.colName = colName;
+        colType = DataType.INTEGER;
+        valueChunks = new Object[4];
+        nullChunks = new long[4][];
+        chunkShared = new boolean[4];
+        numValues = numNulls = 0;
+    }
+
+    //copies only the chunk references - every chunk is then shared by both columns
+    public TypedColumn snapshot(){
+        int numChunks = getNumChunks();
+        Arrays.fill(chunkShared, 0, numChunks, true);
+        TypedColumn snapshot = new TypedColumn(colName);
+        snapshot.colType = colType;
+        int chunkSlots = Math.max(numChunks, 1);
+        snapshot.valueChunks = Arrays.copyOf(valueChunks, chunkSlots);
+        snapshot.nullChunks = Arrays.copyOf(nullChunks, chunkSlots);
+        snapshot.chunkShared = new boolean[chunkSlots];
+        Arrays.fill(snapshot.chunkShared, true);
+        snapshot.numValues = numValues;
+        snapshot.numNulls = numNulls;
+        return snapshot;
+    }
+
+    public DataType getType(){
+        return colType;
+    }
+
+    //row numbers as within the table, so row 1 is the first value
+    public boolean isNull(int rowNum){
+        int valIndex = rowNum - 1;
+        return (nullChunks[valIndex >>> CHUNK_SHIFT][(valIndex & (CHUNK_SIZE - 1)) >>> 6] & (1L << valIndex)) != 0;
+    }
+
+    public boolean isNumeric(){
+        return colType != DataType.STRING;
+    }
+
+    //only valid for numeric columns and values which are not NULL
+    public double getDouble(int rowNum){
+        int valIndex = rowNum - 1;
+        Object valueChunk = valueChunks[valIndex >>> CHUNK_SHIFT];
+        if(colType == DataType.INTEGER)
+            return ((long[]) valueChunk)[valIndex & (CHUNK_SIZE - 1)];
+        return ((double[]) valueChunk)[valIndex & (CHUNK_SIZE - 1)];
+    }
+
+    //only valid for integer columns and values which are not NULL
+    public long getLong(int rowNum){
+        int valIndex = rowNum - 1;
+        return ((long[]) valueChunks[valIndex >>> CHUNK_SHIFT])[valIndex & (CHUNK_SIZE - 1)];
+    }
+
+    //gives the value as it would be held within a table file
+    public String get(int index){
+        Objects.checkIndex(index, numValues + 1);
+        if(index == 0)
+            return colName;
+        if(isNull(index))
+            return DataType.NULL_VALUE;
+
+        int valIndex = index - 1;
+        Object valueChunk = valueChunks[valIndex >>> CHUNK_SHIFT];
+        int chunkIndex = valIndex & (CHUNK_SIZE - 1);
+        if(colType == DataType.INTEGER)
+            return Long.toString(((long[]) valueChunk)[chunkIndex]);
+        if(colType == DataType.DOUBLE)
+            return Double.toString(((double[]) valueChunk)[chunkIndex]);
+        return ((String[]) valueChunk)[chunkIndex];
+    }
+
+    public String set(int index, String value){
+        String oldValue = get(index);
+        if(index == 0){
+            colName = value;
+            return oldValue;
+        }
+
+        boolean valueIsNull = value.equals(DataType.NULL_VALUE);
+        if(!valueIsNull && colType != DataType.STRING){
+            DataType valueType = DataType.inferType(value);
+            if(valueType != colType)
+                changeType(numNulls == numValues ? valueType : DataType.STRING);
+        }
+
+        int valIndex = index - 1;
+        int chunkNum = valIndex >>> CHUNK_SHIFT;
+        int chunkIndex = valIndex & (CHUNK_SIZE - 1);
+        Object valueChunk = writableChunk(chunkNum);
+        setNull(chunkNum, chunkIndex, valueIsNull);
+        if(valueIsNull){
+            //strings are let go, numbers are simply ignored while NULL
+            if(colType == DataType.STRING)
+                ((String[]) valueChunk)[chunkIndex] = null;
+        }
+        else if(colType == DataType.INTEGER)
+            ((long[]) valueChunk)[chunkIndex] = Long.parseLong(value);
+        else if(colType == DataType.DOUBLE)
+            ((double[]) valueChunk)[chunkIndex] = Double.parseDouble(value);
+        else
+            ((String[]) valueChunk)[chunkIndex] = value;
+        return oldValue;
+    }
+
+    //values are only ever added at the end of a table column
+    //adding elsewhere shifts the later values along one at a time
+    public void add(int index, String value){
+        Objects.checkIndex(index, numValues + 2);
+        if(index == 0)
+            throw new UnsupportedOperationException("column name is always first");
+        appendNull();
+        for(int valCnt = numValues; valCnt > index; valCnt--)
+            set(valCnt, get(valCnt - 1));
+        set(index, value);
+        modCount++;
+    }
+
+    //copies a value from another column without going through its text where the types match
+    //an empty or all NULL column takes on the type of the column it is copied from
+    public void addFrom(TypedColumn fromColumn, int rowNum){
+        if(fromColumn.isNull(rowNum)){
+            appendNull();
+            return;
+        }
+        if(colType != fromColumn.colType && numNulls == numValues)
+            changeType(fromColumn.colType);
+        if(colType != fromColumn.colType){
+            add(fromColumn.get(rowNum));
+            return;
+        }
+
+        appendNull();
+        copyValue(fromColumn, rowNum, numValues);
+        modCount++;
+    }
+
+    //moves values up over the deleted rows in a single pass, keeping their types
+    public void removeRows(BitSet deletedRows){
+        int writeRow = 1;
+        for(int rowCnt = 1; rowCnt <= numValues; rowCnt++){
+            if(deletedRows.get(rowCnt))
+                continue;
+            if(writeRow != rowCnt)
+                copyValue(this, rowCnt, writeRow);
+            writeRow++;
+        }
+        removeRange(writeRow, numValues + 1);
+    }
+
+    public String remove(int index){
+        String oldValue = get(index);
+        if(index == 0)
+            throw new UnsupportedOperationException("column name cannot be removed");
+        for(int valCnt = index; valCnt < numValues; valCnt++)
+            copyValue(this, valCnt + 1, valCnt);
+        removeRange(numValues, numValues + 1);
+        return oldValue;
+    }
+
+    //removing from the end drops whole chunks without touching the values before
+    protected void removeRange(int fromIndex, int toIndex){
+        if(fromIndex == 0 && toIndex > 0)
+            throw new UnsupportedOperationException("column name cannot be removed");
+        int numRemoved = toIndex - fromIndex;
+        for(int valCnt = fromIndex; valCnt <= numValues - numRemoved; valCnt++)
+            copyValue(this, valCnt + numRemoved, valCnt);
+        for(int valCnt = numValues - numRemoved + 1; valCnt <= numValues; valCnt++)
+            if(isNull(valCnt))
+                numNulls--;
+
+        int newSize = numValues - numRemoved;
+        int numChunks = (newSize + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        for(int chunkCnt = numChunks; chunkCnt < getNumChunks(); chunkCnt++){
+            valueChunks[chunkCnt] = null;
+            nullChunks[chunkCnt] = null;
+            chunkShared[chunkCnt] = false;
+        }
+        //strings past the end are let go
+        if(colType == DataType.STRING && (newSize & (CHUNK_SIZE - 1)) != 0)
+            Arrays.fill((String[]) writableChunk(numChunks - 1), newSize & (CHUNK_SIZE - 1), CHUNK_SIZE, null);
+        numValues = newSize;
+        modCount++;
+    }
+
+    //includes the column name
+    public int size(){
+        return numValues + 1;
+    }
+
+    //the values read as ids, with 0 for the column name, as used by ArrListTable.idValues
+    //ids are held as numbers, so they are read without parsing unless written with e.g. leading zeros
+    public List<Integer> asIDValues(){
+        return new IDValues();
+    }
+
+    class IDValues extends AbstractList<Integer> implements RandomAccess{
+        public Integer get(int rowNum){
+            if(rowNum == 0)
+                return 0;
+            if(colType == DataType.INTEGER && !isNull(rowNum))
+                return (int) getLong(rowNum);
+            return Integer.parseInt(TypedColumn.this.get(rowNum));
+        }
+
+        public int size(){
+            return numValues + 1;
+        }
+    }
+
+    void appendNull(){
+        int chunkNum = numValues >>> CHUNK_SHIFT;
+        if(chunkNum == valueChunks.length){
+            valueChunks = Arrays.copyOf(valueChunks, chunkNum * 2);
+            nullChunks = Arrays.copyOf(nullChunks, chunkNum * 2);
+            chunkShared = Arrays.copyOf(chunkShared, chunkNum * 2);
+        }
+        if(valueChunks[chunkNum] == null){
+            valueChunks[chunkNum] = newChunk(colType);
+            nullChunks[chunkNum] = new long[CHUNK_SIZE / 64];
+            chunkShared[chunkNum] = false;
+        }
+        writableChunk(chunkNum);
+
+        //the slot may still hold the bit of a value removed earlier
+        int chunkIndex = numValues & (CHUNK_SIZE - 1);
+        nullChunks[chunkNum][chunkIndex >>> 6] &= ~(1L << chunkIndex);
+        numValues++;
+        setNull(chunkNum, chunkIndex, true);
+    }
+
+    //copies the value at fromRow of a column of the same type to toRow of this column
+    void copyValue(TypedColumn fromColumn, int fromRow, int toRow){
+        int fromIndex = fromRow - 1;
+        int toIndex = toRow - 1;
+        Object fromChunk = fromColumn.valueChunks[fromIndex >>> CHUNK_SHIFT];
+        int toChunkNum = toIndex >>> CHUNK_SHIFT;
+        Object toChunk = writableChunk(toChunkNum);
+        System.arraycopy(fromChunk, fromIndex & (CHUNK_SIZE - 1), toChunk, toIndex & (CHUNK_SIZE - 1), 1);
+        setNull(toChunkNum, toIndex & (CHUNK_SIZE - 1), fromColumn.isNull(fromRow));
+    }
+
+    //a column of only NULL values can take any type
+    //otherwise values are converted to strings, keeping their printed text
+    void changeType(DataType newType){
+        for(int chunkCnt = 0; chunkCnt < getNumChunks(); chunkCnt++){
+            Object newChunk = newChunk(newType);
+            if(newType == DataType.STRING){
+                int chunkStart = chunkCnt << CHUNK_SHIFT;
+                int chunkEnd = Math.min(chunkStart + CHUNK_SIZE, numValues);
+                for(int valIndex = chunkStart; valIndex < chunkEnd; valIndex++)
+                    if(!isNull(valIndex + 1))
+                        ((String[]) newChunk)[valIndex - chunkStart] = get(valIndex + 1);
+            }
+            valueChunks[chunkCnt] = newChunk;
+            nullChunks[chunkCnt] = nullChunks[chunkCnt].clone();
+            chunkShared[chunkCnt] = false;
+        }
+        colType = newType;
+    }
+
+    static Object newChunk(DataType chunkType){
+        if(chunkType == DataType.INTEGER)
+            return new long[CHUNK_SIZE];
+        if(chunkType == DataType.DOUBLE)
+            return new double[CHUNK_SIZE];
+        return new String[CHUNK_SIZE];
+    }
+
+    void setNull(int chunkNum, int chunkIndex, boolean valueIsNull){
+        long[] nullBits = nullChunks[chunkNum];
+        boolean wasNull = (nullBits[chunkIndex >>> 6] & (1L << chunkIndex)) != 0;
+        if(valueIsNull)
+            nullBits[chunkIndex >>> 6] |= (1L << chunkIndex);
+        else
+            nullBits[chunkIndex >>> 6] &= ~(1L << chunkIndex);
+        if(wasNull != valueIsNull)
+            numNulls += (valueIsNull ? 1 : -1);
+    }
+
+    int getNumChunks(){
+        return (numValues + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    }
+
+    Object writableChunk(int chunkNum){
+        if(chunkShared[chunkNum]){
+            valueChunks[chunkNum] = cloneChunk(valueChunks[chunkNum]);
+            nullChunks[chunkNum] = nullChunks[chunkNum].clone();
+            chunkShared[chunkNum] = false;
+        }
+        return valueChunks[chunkNum];
+    }
+
+    static Object cloneChunk(Object valueChunk){
+        if(valueChunk instanceof long[] longChunk)
+            return longChunk.clone();
+        if(valueChunk instanceof double[] doubleChunk)
+            return doubleChunk.clone();
+        return ((String[]) valueChunk).clone();
+    }
+}
@@ -7,10 +7,18 @@ import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.file.Files;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 import java.io.File;
 import java.nio.file.Paths;
 
@@ -109,36 +117,13 @@ public class ExampleDBTests {
 
     @Test
     public void testToken(){
-        //TESTS FOR "SPLIT BY SPACES" METHOD
-        List<String> tokStrings;
-
-        //empty string
-        tokStrings = Tokeniser.splitBySpaces("");
-        assertTrue(tokStrings.size() == 0);
-
-        //string with only spaces
-        tokStrings = Tokeniser.splitBySpaces("    ");
-        assertTrue(tokStrings.size() == 0);
-
-        //string with leading and trailing spaces
-        tokStrings = Tokeniser.splitBySpaces(" string with leading and trailing spaces  ");
-        assertTrue(tokStrings.size() == 6);
-
-        //string with variable internal spacing
-        tokStrings = Tokeniser.splitBySpaces("string with  varied    spaces");
-        assertTrue(tokStrings.size() == 4);
-
-        //string with string literal with spaces
-        tokStrings = Tokeniser.splitBySpaces("string with 'string literal $$'");
-        assertTrue(tokStrings.size() == 3);
-
-        //string with irregular arrangement of single quotes
-        tokStrings = Tokeniser.splitBySpaces("odd string: ''''");
-        assertTrue(tokStrings.size() == 3);
-
-        //string with single quote character
-        tokStrings = Tokeniser.splitBySpaces("'");
-        assertTrue(tokStrings.size() == 1);
+        //SPACES ARE SKIPPED BY THE SCANNER, EXCEPT WITHIN STRING LITERALS
+        assertTrue(Tokeniser.extractTokens("").size() == 0);
+        assertTrue(Tokeniser.extractTokens("    ").size() == 0);
+        assertTrue(Tokeniser.extractTokens(" string with leading and trailing spaces  ").size() == 6);
+        assertTrue(Tokeniser.extractTokens("string with  varied    spaces").size() == 4);
+        List<Token> literalTokens = Tokeniser.extractTokens("string with 'string literal $$'");
+        assertTrue(literalTokens.size() == 3 && literalTokens.get(2).tokenText.equals("'string literal $$'"));
 
         //TESTS FOR "EXTRACT TOKENS" METHOD
         List<Token> tokensRegularSp;
@@ -216,6 +201,29 @@ public class ExampleDBTests {
         assertTrue(compareTokens(tokensForTest, tokensRegularSp));
     }
 
+    @Test
+    public void testTokenTypes(){
+        List<Token> tokens = Tokeniser.extractTokens("SELECT name FROM marks WHERE mark>=- 5 OR avg < 3 . 5 AND note=='a b';");
+        String[] texts = {"SELECT", "name", "FROM", "marks", "WHERE", "mark", ">=", "-5", "OR", "avg", "<", "3.5",
+                "AND", "note", "==", "'a b'", ";"};
+        TokenType[] types = {TokenType.KEYWORD, TokenType.IDENTIFIER, TokenType.KEYWORD, TokenType.IDENTIFIER,
+                TokenType.KEYWORD, TokenType.IDENTIFIER, TokenType.OPERATOR, TokenType.INTEGER, TokenType.KEYWORD,
+                TokenType.IDENTIFIER, TokenType.OPERATOR, TokenType.FLOAT, TokenType.KEYWORD, TokenType.IDENTIFIER,
+                TokenType.OPERATOR, TokenType.STRING, TokenType.OPERATOR};
+        assertTrue(tokens.size() == texts.length);
+        for(int tokCnt = 0; tokCnt < texts.length; tokCnt++){
+            assertTrue(tokens.get(tokCnt).tokenText.equals(texts[tokCnt]));
+            assertTrue(tokens.get(tokCnt).tokenType == types[tokCnt]);
+        }
+
+        //keywords are found whatever their case, and tokens made from text are typed the same way
+        assertTrue(Tokeniser.extractTokens("true 12abc 007").get(0).tokenType == TokenType.KEYWORD);
+        assertTrue(Tokeniser.extractTokens("true 12abc 007").get(1).tokenType == TokenType.IDENTIFIER);
+        assertTrue(Tokeniser.extractTokens("true 12abc 007").get(2).tokenType == TokenType.INTEGER);
+        assertTrue(new Token("-12.5").tokenType == TokenType.FLOAT);
+        assertTrue(new Token("'").tokenType == TokenType.OPERATOR);
+    }
+
     @Test
     public void testParser(){
         String command;
@@ -292,6 +300,20 @@ public class ExampleDBTests {
         command = "JOIN 66MUSIC AND PARTIES101 ON PEOPL3 AND TA5TES;";
         assertTrue(parseTreeNuLeavesCorrect(command, 9));
 
+        //VALID "FLUSH" COMMANDS
+        command = "FLUSH;";
+        assertTrue(parseTreeNuLeavesCorrect(command, 2));
+
+        //VALID AND INVALID "INDEX" COMMANDS
+        command = "CREATE INDEX ON marks (mark);";
+        assertTrue(parseTreeNuLeavesCorrect(command, 8));
+        command = "CREATE SORTED INDEX ON marks (mark);";
+        assertTrue(parseTreeNuLeavesCorrect(command, 9));
+        command = "DROP INDEX ON marks (mark);";
+        assertTrue(parseTreeNuLeavesCorrect(command, 8));
+        command = "CREATE TREE INDEX ON marks (mark);";
+        assertTrue(parseTreeNuLeavesCorrect(command, 0));
+
         //VALID COMMANDS WITH VARYING SPACES
         command = "     JOIN MUSIC AND PARTIES ON PEOPLE AND TASTES     ;";
         assertTrue(parseTreeNuLeavesCorrect(command, 9));
@@ -753,6 +775,1086 @@ public class ExampleDBTests {
         assertTrue(response.contains(tagOK));
     }
 
+    @Test
+    public void testTableCache(){
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+
+        //first select loads the table into the cache
+        String response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.contains("Simon"));
+        assertTrue(server.databaseHandler.tableCache.containsTable(randomName, "marks"));
+
+        //changes made through the cached copy are visible and persisted
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35);");
+        assertTrue(sendCommandToServer("SELECT * FROM marks;").contains("Rob"));
+        server = new DBServer();
+        sendCommandToServer("USE " + randomName + ";");
+        assertTrue(sendCommandToServer("SELECT * FROM marks;").contains("Rob"));
+
+        //alter and drop remove the table from the cache
+        sendCommandToServer("ALTER TABLE marks ADD pass;");
+        assertFalse(server.databaseHandler.tableCache.containsTable(randomName, "marks"));
+        assertTrue(sendCommandToServer("SELECT pass FROM marks;").contains("[OK]"));
+        sendCommandToServer("DROP TABLE marks;");
+        assertFalse(server.databaseHandler.tableCache.containsTable(randomName, "marks"));
+        sendCommandToServer("CREATE TABLE marks (name);");
+        assertFalse(sendCommandToServer("SELECT * FROM marks;").contains("Rob"));
+
+        //least recently used tables are evicted once over budget
+        TableCache tableCache = new TableCache(TableCache.BYTES_PER_CELL * 4);
+        tableCache.putTable(randomName, new ArrListTable("first", new String[]{"a"}));
+        tableCache.putTable(randomName, new ArrListTable("second", new String[]{"a"}));
+        tableCache.putTable(randomName, new ArrListTable("third", new String[]{"a"}));
+        assertFalse(tableCache.containsTable(randomName, "first"));
+        assertTrue(tableCache.containsTable(randomName, "third"));
+
+        //tables with unsaved changes are left for the flusher rather than evicted
+        String storageFolderPath = Paths.get("databases").toAbsolutePath().toString();
+        TableFlusher tableFlusher = new TableFlusher(storageFolderPath, new LogManager(), 60000);
+        tableCache.setTableFlusher(tableFlusher);
+        ArrListTable dirtyTable = new ArrListTable("second", new String[]{"a"});
+        tableCache.putTable(randomName, dirtyTable);
+        tableFlusher.markDirty(randomName, "second", dirtyTable, false);
+        tableCache.getTable(randomName, "third");
+        tableCache.putTable(randomName, new ArrListTable("fourth", new String[]{"a"}));
+        assertTrue(tableCache.containsTable(randomName, "second"));
+        assertFalse(tableCache.containsTable(randomName, "third"));
+        tableFlusher.discardTable(randomName, "second");
+        tableCache.putTable(randomName, new ArrListTable("fifth", new String[]{"a"}));
+        assertFalse(tableCache.containsTable(randomName, "second"));
+        tableFlusher.close();
+
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+        assertFalse(server.databaseHandler.tableCache.containsTable(randomName, "marks"));
+    }
+
+    @Test
+    public void testTableLog() throws IOException {
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);");
+        sendCommandToServer("UPDATE marks SET mark = 40 WHERE name == 'Rob';");
+        sendCommandToServer("DELETE FROM marks WHERE name == 'Chris';");
+
+        //changes go to the log rather than the table file
+        File databaseFolder = Paths.get("databases", randomName).toFile();
+        assertTrue(new File(databaseFolder, "marks.wal").exists());
+
+        //log is replayed when the table is next loaded
+        server = new DBServer();
+        sendCommandToServer("USE " + randomName + ";");
+        String response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.contains("Simon"));
+        assertTrue(response.contains("40"));
+        assertFalse(response.contains("Chris"));
+        sendCommandToServer("INSERT INTO marks VALUES ('Sion', 55);");
+        assertTrue(sendCommandToServer("SELECT id FROM marks WHERE name == 'Sion';").contains("4"));
+
+        //replaying a log over a snapshot which already holds its records changes nothing
+        server.databaseHandler.tableHandler.saveTable();
+        Files.writeString(new File(databaseFolder, "marks.wal").toPath(),
+                "INSERT\t1\t'Simon'\t65\nDELETE\t3\nUPDATE\t1\tmark\t40\t2\n");
+        server = new DBServer();
+        server.databaseHandler.setDurabilityMode(DurabilityMode.FSYNC_PER_COMMAND, 0);
+        sendCommandToServer("USE " + randomName + ";");
+        response = sendCommandToServer("SELECT * FROM marks;");
+        assertTrue(response.split("Simon").length == 2);
+        assertFalse(response.contains("Chris"));
+
+        //under group commit a command only returns once the batched sync has covered its record
+        server.databaseHandler.setDurabilityMode(DurabilityMode.GROUP_COMMIT, 50);
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35);");
+        TableLog tableLog = server.databaseHandler.logManager.getLog(new File(databaseFolder, "marks.wal"),
+                new File(databaseFolder, "marks.tab"));
+        assertTrue(tableLog.appendedRecords > 0 && tableLog.syncedRecords == tableLog.appendedRecords);
+
+        //dropping the table removes its log
+        sendCommandToServer("DROP TABLE marks;");
+        assertFalse(new File(databaseFolder, "marks.wal").exists());
+        server.databaseHandler.close();
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testServerOptions(){
+        //the durability mode and group commit interval are chosen when the server starts
+        DBServer optionServer = new DBServer();
+        LogManager logManager = optionServer.tableStore.logManager;
+        assertTrue(optionServer.applyOptions(new String[]{"--durability=group_commit", "--group-commit-millis=5"}));
+        assertTrue(logManager.getDurabilityMode() == DurabilityMode.GROUP_COMMIT);
+        assertTrue(logManager.groupCommitMillis == 5 && !optionServer.useSelector);
+        assertTrue(optionServer.applyOptions(new String[]{"--nio", "--durability=FSYNC-PER-COMMAND"}));
+        assertTrue(logManager.getDurabilityMode() == DurabilityMode.FSYNC_PER_COMMAND && optionServer.useSelector);
+        assertTrue(optionServer.applyOptions(new String[0]));
+        assertTrue(logManager.getDurabilityMode() == DurabilityMode.NO_FSYNC);
+
+        //unknown options and values leave the server as it was
+        String[][] badOptions = {{"--durability=sometimes"}, {"--group-commit-millis=0"},
+                {"--group-commit-millis=soon"}, {"--durability=group_commit", "--fast"}};
+        for(String[] options : badOptions)
+            assertFalse(optionServer.applyOptions(options));
+        assertTrue(logManager.getDurabilityMode() == DurabilityMode.NO_FSYNC);
+        optionServer.close();
+    }
+
+    @Test
+    public void testTableFlusher() throws IOException {
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35);");
+
+        //FLUSH writes changed tables straight away and empties their logs
+        File databaseFolder = Paths.get("databases", randomName).toFile();
+        assertTrue(sendCommandToServer("FLUSH;").contains("[OK]"));
+        assertFalse(server.databaseHandler.tableFlusher.isDirty(randomName, "marks"));
+        assertTrue(Files.readString(new File(databaseFolder, "marks.tab").toPath()).contains("Rob"));
+        assertTrue(new File(databaseFolder, "marks.wal").length() == 0);
+
+        //the table file and last assigned ID are each swapped in whole, leaving no temporary files
+        assertTrue(Files.readString(new File(databaseFolder, "marks_ID.tab").toPath()).equals("2"));
+        assertTrue(databaseFolder.list((folder, fileName) -> fileName.endsWith(".tmp")).length == 0);
+
+        //changes to the same table are written out together
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 20);");
+        sendCommandToServer("UPDATE marks SET mark = 25 WHERE name == 'Chris';");
+        assertTrue(server.databaseHandler.tableFlusher.getNumDirtyTables() <= 1);
+
+        //closing the server writes out whatever is left
+        server.close();
+        assertTrue(Files.readString(new File(databaseFolder, "marks.tab").toPath()).contains("25"));
+        assertTrue(new File(databaseFolder, "marks.wal").length() == 0);
+
+        //dropped tables are not written back by the flusher
+        server = new DBServer();
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("INSERT INTO marks VALUES ('Sion', 55);");
+        sendCommandToServer("DROP TABLE marks;");
+        server.close();
+        assertFalse(new File(databaseFolder, "marks.tab").exists());
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testTypedColumns(){
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark, average, pass);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65, 6.5, TRUE);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Sion', 55, 5.5, NULL);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', NULL, 3.75, FALSE);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', -20, 2.50, FALSE);");
+
+        //column types are inferred as the table is loaded, keeping the text of every value
+        TableHandler handler = new TableHandler(randomName, "marks", Paths.get("databases").toString());
+        assertTrue(handler.loadTable());
+        ArrListTable table = handler.currTable;
+        assertTrue(((TypedColumn) table.getColumn("id")).getType() == DataType.INTEGER);
+        assertTrue(((TypedColumn) table.getColumn("mark")).getType() == DataType.INTEGER);
+        assertTrue(((TypedColumn) table.getColumn("average")).getType() == DataType.STRING);
+        assertTrue(((TypedColumn) table.getColumn("name")).getType() == DataType.STRING);
+        assertTrue(table.getValue(3, 4).equals("2.50") && table.getValue(2, 3).equals("NULL"));
+        assertTrue(((TypedColumn) table.getColumn("mark")).isNull(3));
+
+        //ids are only held in the id column
+        assertTrue(table.idsInColumn && table.getIDValues().equals(List.of(0, 1, 2, 3, 4)));
+
+        //numeric columns give the same results as comparing the text of each value
+        String[][] conditions = {{"mark", ">", "50"}, {"mark", "==", "NULL"}, {"mark", "<", "'abc'"},
+                {"mark", "LIKE", "5"}, {"average", ">=", "3.75"}, {"name", "==", "'rob'"}, {"id", "!=", "2"}};
+        for(String[] condition : conditions)
+            for(int rowCnt = 1; rowCnt <= table.getNumEntries(); rowCnt++)
+                assertTrue(table.evaluateCondition(condition[0], condition[1], condition[2], rowCnt)
+                        == ArrListTable.evaluateValues(table.getValue(table.getColumnIndex(condition[0]), rowCnt),
+                        CondOperator.fromText(condition[1]), new CondValue(condition[2])));
+
+        //values which do not fit a column turn it into strings, and snapshots keep their own types
+        ArrListTable snapshot = table.getSnapshot();
+        table.addRow(new String[]{"'Amy'", "49.5", "NULL", "TRUE"}, false);
+        assertTrue(((TypedColumn) table.getColumn("mark")).getType() == DataType.STRING);
+        assertTrue(((TypedColumn) snapshot.getColumn("mark")).getType() == DataType.INTEGER);
+        assertTrue(table.getValue(2, 1).equals("65") && table.getValue(2, 5).equals("49.5"));
+
+        //selections and compaction keep the types and nulls in step
+        TableStructure selection = snapshot.selectRows(new boolean[]{false, true, true, false});
+        assertTrue(((TypedColumn) selection.getColumn("mark")).getType() == DataType.INTEGER);
+        assertTrue(selection.getValue(2, 1).equals("55") && selection.getValue(2, 2).equals("NULL"));
+        table.removeRows(new boolean[]{true, true, false, false, false});
+        assertTrue(table.getNumEntries() == 3 && table.getValue(2, 1).equals("NULL"));
+        assertTrue(table.getIDValues().equals(List.of(0, 3, 4, 5)));
+
+        //a column of only NULL values takes the type of the first value added
+        table.addColumn("grade");
+        table.addRow(new String[]{"'Dave'", "70", "7.0", "TRUE", "6.5"}, false);
+        assertTrue(((TypedColumn) table.getColumn("grade")).getType() == DataType.DOUBLE);
+        assertTrue(table.getValue(5, 1).equals("NULL"));
+
+        assertTrue(sendCommandToServer("SELECT name FROM marks WHERE mark > 50;").contains("Sion"));
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testTableRenderer() throws IOException {
+        String[] attributes = {"name", "mark"};
+        ArrListTable table = new ArrListTable("marks", attributes);
+        table.addRow(new String[]{"'Simon'", "65"}, false);
+        table.addRow(new String[]{"'Alexandria Jones'", "NULL"}, false);
+        table.addRow(new String[]{"'null'", "-20"}, false);
+        table.addRow(new String[]{"''", "5"}, false);
+        table.removeRows(new boolean[]{false, true, false, false});
+
+        //quotes and NULL values are dropped, and deleted rows no longer widen their column
+        String expected = "id\tname\tmark\n1\tSimon\t65\n3\t\t-20\n4\t\t\t5\n";
+        assertTrue(table.printTable().equals(expected));
+        StringWriter written = new StringWriter();
+        new TableRenderer(table).writeAll(written);
+        assertTrue(written.toString().equals(expected));
+
+        //large tables are rendered in a single pass
+        ArrListTable largeTable = new ArrListTable("large", attributes);
+        for(int rowCnt = 0; rowCnt < 10000; rowCnt++)
+            largeTable.addRow(new String[]{"'Student" + rowCnt + "'", Integer.toString(rowCnt)}, false);
+        String largeOutput = assertTimeoutPreemptively(Duration.ofMillis(1000), () -> largeTable.printTable());
+        assertTrue(largeOutput.endsWith("10000\tStudent9999\t9999\n"));
+    }
+
+    @Test
+    public void testColumnIndex(){
+        ArrListTable table = new ArrListTable("marks", new String[]{"name", "Mark", "pass"});
+        table.addRow(new String[]{"'Simon'", "65", "TRUE"}, false);
+
+        //lookups ignore case and follow columns being added and removed
+        assertTrue(table.getColumnIndex("MARK") == 2);
+        assertTrue(table.getColumnIndex("missing") == -1);
+        assertTrue(table.removeColumn("name"));
+        assertTrue(table.getColumnIndex("name") == -1);
+        assertTrue(table.getColumnIndex("mark") == 1);
+        assertTrue(table.getValue(table.getColumnIndex("pass"), 1).equals("TRUE"));
+        table.addColumn("grade");
+        assertTrue(table.getColumnIndex("Grade") == 3);
+        assertTrue(table.evaluateCondition(1, ">", "60", 1) == ConditionResult.TRUE);
+
+        //a table built from repeated columns finds the first of them
+        List<List<String>> columns = List.of(table.getColumn("pass"), table.getColumn("mark"),
+                table.getColumn("pass"));
+        ArrListTable selection = ArrListTable.fromColumns("", columns, table.getIDValues());
+        assertTrue(selection.getColumnIndex("pass") == 0);
+        assertTrue(selection.getColumnIndex("mark") == 1);
+    }
+
+    @Test
+    public void testHashJoin(){
+        ArrListTable marks = new ArrListTable("marks", new String[]{"name", "mark"});
+        marks.addRow(new String[]{"'Simon'", "65"}, false);
+        marks.addRow(new String[]{"'Rob'", "35"}, false);
+        ArrListTable fines = new ArrListTable("fines", new String[]{"person", "fine"});
+        fines.addRow(new String[]{"'Rob'", "10"}, false);
+        fines.addRow(new String[]{"'Simon'", "20"}, false);
+        fines.addRow(new String[]{"'Rob'", "30"}, false);
+        fines.addRow(new String[]{"'rob'", "40"}, false);
+
+        //rows come out in nested loop order whichever table is hashed
+        String[] expectedRows = {"65\t20", "35\t10", "35\t30"};
+        ArrListTable joinTable = new HashJoin(marks, "NAME", fines, "person").joinTables();
+        ArrListTable reversedJoin = new HashJoin(fines, "person", marks, "name").joinTables();
+        assertTrue(joinTable.getNumEntries() == 3);
+        assertTrue(reversedJoin.getNumEntries() == 3);
+        assertTrue(String.join(",", joinTable.getRow(0)).equals("id,marks.mark,fines.fine"));
+        for(int rowCnt = 1; rowCnt <= 3; rowCnt++){
+            String[] row = joinTable.getRow(rowCnt);
+            assertTrue(row[0].equals(Integer.toString(rowCnt)));
+            assertTrue(String.join("\t", row[1], row[2]).equals(expectedRows[rowCnt - 1]));
+        }
+        assertTrue(reversedJoin.getRow(1)[1].equals("10"));
+        assertTrue(reversedJoin.getRow(3)[1].equals("30"));
+
+        //joining on id keeps the other attributes, and missing attributes give no table
+        assertTrue(new HashJoin(marks, "id", fines, "id").joinTables().getNumAttributes() == 5);
+        assertTrue(new HashJoin(marks, "missing", fines, "fine").joinTables() == null);
+    }
+
+    @Test
+    public void testConditionCompiler(){
+        ArrListTable marks = new ArrListTable("marks", new String[]{"name", "mark"});
+        marks.addRow(new String[]{"'Simon'", "65"}, false);
+        marks.addRow(new String[]{"'Rob'", "35"}, false);
+        //each condition with its expected result for both rows
+        String[] conditions = {"mark > 50 OR name > 5", "(mark < 50) AND name == 'Rob'",
+                "name LIKE 'im' OR mark == 35", "mark >= 35 AND (name != 'simon' OR id < 1)",
+                "name == 'Rob' AND mark > 'x'"};
+        ConditionResult[][] expectedResults = {
+                {ConditionResult.INVALID, ConditionResult.INVALID},
+                {ConditionResult.FALSE, ConditionResult.TRUE},
+                {ConditionResult.TRUE, ConditionResult.TRUE},
+                {ConditionResult.FALSE, ConditionResult.TRUE},
+                {ConditionResult.INVALID, ConditionResult.INVALID}};
+
+        for(int condCnt = 0; condCnt < conditions.length; condCnt++){
+            String command = "SELECT * FROM marks WHERE " + conditions[condCnt] + ";";
+            Node parseTree = SQLSimpGrammar.command.parseTokens(Tokeniser.extractTokens(command), 0);
+            RowPredicate condition = ConditionCompiler.compile(
+                    parseTree.findByRuleName(RuleName.CONDITION), marks);
+            for(int rowCnt = 1; rowCnt <= 2; rowCnt++){
+                ConditionResult expected = expectedResults[condCnt][rowCnt - 1];
+                assertTrue(condition.evaluate(rowCnt) == expected);
+                assertTrue(condition.matches(rowCnt) == (expected == ConditionResult.TRUE));
+            }
+        }
+    }
+
+    @Test
+    public void testAttributeIndex(){
+        ArrListTable marks = new ArrListTable("marks", new String[]{"name", "mark"});
+        String[] names = {"'Simon'", "'Rob'", "'Chris'", "'sion'", "NULL"};
+        String[] markValues = {"65", "35.00001", "20", "'absent'", "-0.0"};
+        for(int rowCnt = 0; rowCnt < names.length; rowCnt++)
+            marks.addRow(new String[]{names[rowCnt], markValues[rowCnt]}, false);
+        ArrListTable unindexed = (ArrListTable) marks.selectRows(new boolean[]{true, true, true, true, true});
+
+        assertTrue(marks.createIndex("name", IndexType.HASH));
+        assertTrue(marks.createIndex("MARK", IndexType.SORTED));
+        assertFalse(marks.createIndex("mark", IndexType.SORTED));
+        assertFalse(marks.createIndex("missing", IndexType.HASH));
+
+        //indexed and unindexed tables select the same rows, including after changes
+        String[] conditions = {"name == 'rob'", "name != 'Simon'", "mark == 35", "mark >= 0", "mark < 35",
+                "mark > 'a'", "name LIKE 'i' AND mark <= 65", "mark == 0 OR name == 'Chris'", "mark > 20"};
+        String[] changes = {"UPDATE marks SET mark = 70 WHERE name == 'Rob';",
+                "DELETE FROM marks WHERE mark == 20;", "INSERT INTO marks VALUES ('Dave', 35);"};
+        for(int changeCnt = 0; changeCnt <= changes.length; changeCnt++){
+            for(String condition : conditions){
+                String command = "SELECT * FROM marks WHERE " + condition + ";";
+                Node condNode = SQLSimpGrammar.command.parseTokens(Tokeniser.extractTokens(command), 0)
+                        .findByRuleName(RuleName.CONDITION);
+                RowPredicate indexedCond = ConditionCompiler.compile(condNode, marks);
+                RowPredicate scannedCond = ConditionCompiler.compile(condNode, unindexed);
+                BitSet candidates = indexedCond.findCandidates();
+                if(!condition.contains("LIKE"))
+                    assertTrue(candidates != null);
+                for(int rowCnt = 1; rowCnt <= marks.getNumEntries(); rowCnt++){
+                    if(marks.isRowDeleted(rowCnt))
+                        continue;
+                    boolean rowMatches = scannedCond.matches(rowCnt);
+                    assertTrue(indexedCond.matches(rowCnt) == rowMatches);
+                    if(rowMatches && candidates != null)
+                        assertTrue(candidates.get(rowCnt));
+                }
+            }
+            if(changeCnt == changes.length)
+                break;
+            applyChange(marks, changes[changeCnt]);
+            applyChange(unindexed, changes[changeCnt]);
+        }
+
+        assertTrue(marks.removeColumn("mark"));
+        assertTrue(marks.getIndexes("mark").isEmpty());
+        assertTrue(marks.dropIndexes("name"));
+        assertFalse(marks.dropIndexes("name"));
+    }
+
+    @Test
+    public void testIDIndex(){
+        ArrListTable marks = new ArrListTable("marks", new String[]{"name", "mark"});
+        for(int rowCnt = 1; rowCnt <= 200; rowCnt++)
+            marks.addRow(new String[]{"'Student" + rowCnt + "'", Integer.toString(rowCnt % 100)}, false);
+        ArrListTable scanned = (ArrListTable) marks.selectRows(new boolean[200]);
+        assertTrue(marks.getRowNum(150) == 150);
+        assertTrue(marks.getRowNum(201) == 0);
+
+        //deleted rows keep their place until the table is compacted, which moves later rows up
+        applyChange(marks, "DELETE FROM marks WHERE mark < 10;");
+        assertTrue(marks.getRowNum(150) == 150);
+        assertTrue(marks.getRowNum(105) == 0);
+        assertTrue(marks.getNumLiveEntries() == 180);
+
+        //id conditions are answered from the index and agree with evaluating every row
+        String[] conditions = {"id == 150", "id == 149.99999", "id == 'x'", "id > 190", "id <= 20.5",
+                "id >= 199 OR id < 11", "id != 3", "id LIKE '15'"};
+        for(String condition : conditions){
+            String command = "SELECT * FROM marks WHERE " + condition + ";";
+            Node condNode = SQLSimpGrammar.command.parseTokens(Tokeniser.extractTokens(command), 0)
+                    .findByRuleName(RuleName.CONDITION);
+            RowPredicate indexedCond = ConditionCompiler.compile(condNode, marks);
+            BitSet candidates = indexedCond.findCandidates();
+            int numMatches = 0;
+            for(int rowCnt = 1; rowCnt <= marks.getNumEntries(); rowCnt++){
+                if(marks.isRowDeleted(rowCnt))
+                    continue;
+                String idText = marks.getValue(0, rowCnt);
+                ConditionResult scanResult = ArrListTable.evaluateValues(idText,
+                        CondOperator.fromText(condNode.findTokenString(RuleName.COMPARATOR)),
+                        new CondValue(condNode.getAttributesOrVals(RuleName.VALUE).get(0)));
+                if(!condition.contains("OR"))
+                    assertTrue(indexedCond.evaluate(rowCnt) == scanResult);
+                if(indexedCond.matches(rowCnt)){
+                    numMatches++;
+                    assertTrue(candidates == null || candidates.get(rowCnt));
+                }
+            }
+            if(condition.startsWith("id == 1"))
+                assertTrue(numMatches == 1);
+        }
+        marks.compactRows();
+        assertTrue(marks.getRowNum(150) == 131);
+        assertTrue(marks.getNumEntries() == 180);
+
+        //repeated or out of order ids stop the index being relied on, without changing results
+        scanned.addRow(new String[]{"5", "'Late'", "50"}, true);
+        scanned.addRow(new String[]{"5", "'Later'", "55"}, true);
+        assertTrue(scanned.selectIDs(Set.of(5))[1]);
+        Node condNode = SQLSimpGrammar.command.parseTokens(
+                Tokeniser.extractTokens("SELECT * FROM marks WHERE id == 5;"), 0).findByRuleName(RuleName.CONDITION);
+        assertTrue(ConditionCompiler.compile(condNode, scanned).findCandidates() == null);
+    }
+
+    @Test
+    public void testTombstoneDeletes(){
+        ArrListTable marks = new ArrListTable("marks", new String[]{"name", "mark"});
+        for(int rowCnt = 1; rowCnt <= 8; rowCnt++)
+            marks.addRow(new String[]{"'Student" + rowCnt + "'", Integer.toString(rowCnt * 10)}, false);
+
+        //below the compaction threshold, deleted rows stay in place but are never seen
+        boolean[] selection = new boolean[8];
+        selection[2] = selection[5] = true;
+        assertTrue(marks.removeRows(selection));
+        assertFalse(marks.removeRow(3));
+        assertTrue(marks.getNumEntries() == 8 && marks.getNumLiveEntries() == 6);
+        assertFalse(marks.printTable().contains("Student3"));
+        assertTrue(marks.selectRows(new boolean[]{true, true, true, true, true, true, true, true})
+                .getNumEntries() == 6);
+        assertTrue(new HashJoin(marks, "mark", marks, "mark").joinTables().getNumEntries() == 6);
+
+        //passing the threshold drops the deleted rows from the columns
+        selection = new boolean[8];
+        selection[0] = true;
+        marks.removeRows(selection);
+        assertTrue(marks.getNumEntries() == 5 && marks.getNumLiveEntries() == 5);
+        assertTrue(marks.getValue(1, 2).equals("'Student4'"));
+        assertTrue(marks.getIDValues().get(5) == 8);
+        assertTrue(marks.getRowNum(8) == 5);
+    }
+
+    //applies a simple insert, update or delete directly to a table
+    private static void applyChange(ArrListTable table, String command){
+        Node parseTree = SQLSimpGrammar.command.parseTokens(Tokeniser.extractTokens(command), 0);
+        if(parseTree.findByRuleName(RuleName.INSERT) != null){
+            List<String> values = parseTree.getAttributesOrVals(RuleName.VALUE);
+            table.addRow(values.toArray(new String[0]), false);
+            return;
+        }
+        RowPredicate condition = ConditionCompiler.compile(parseTree.findByRuleName(RuleName.CONDITION), table);
+        boolean[] selection = new boolean[table.getNumEntries()];
+        for(int rowCnt = 1; rowCnt <= table.getNumEntries(); rowCnt++)
+            selection[rowCnt - 1] = condition.matches(rowCnt);
+        if(parseTree.findByRuleName(RuleName.UPDATE) != null){
+            Node nameValList = parseTree.findByRuleName(RuleName.NAME_VALUE_LIST);
+            table.updateTable(selection, new String[][]{
+                    nameValList.getAttributesOrVals(RuleName.ATTRIBUTE).toArray(new String[0]),
+                    nameValList.getAttributesOrVals(RuleName.VALUE).toArray(new String[0])});
+            return;
+        }
+        table.removeRows(selection);
+    }
+
+    @Test
+    public void testIndexCommands(){
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Rob', 35);");
+        assertTrue(sendCommandToServer("CREATE INDEX ON marks (name);").contains("[OK]"));
+        assertTrue(sendCommandToServer("CREATE SORTED INDEX ON marks (mark);").contains("[OK]"));
+        assertTrue(sendCommandToServer("CREATE HASH INDEX ON marks (name);").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("CREATE INDEX ON marks (grade);").contains("[ERROR]"));
+        assertTrue(sendCommandToServer("CREATE INDEX ON fines (name);").contains("[ERROR]"));
+
+        //indexes are rebuilt when the table is next loaded
+        server = new DBServer();
+        sendCommandToServer("USE " + randomName + ";");
+        String response = sendCommandToServer("SELECT name FROM marks WHERE mark > 50;");
+        assertTrue(response.contains("Simon") && !response.contains("Rob"));
+        sendCommandToServer("INSERT INTO marks VALUES ('Chris', 80);");
+        response = sendCommandToServer("SELECT name FROM marks WHERE mark > 50 AND name != 'simon';");
+        assertTrue(response.contains("Chris") && !response.contains("Simon"));
+
+        assertTrue(sendCommandToServer("DROP INDEX ON marks (mark);").contains("[OK]"));
+        assertTrue(sendCommandToServer("DROP INDEX ON marks (mark);").contains("[ERROR]"));
+        response = sendCommandToServer("SELECT name FROM marks WHERE mark < 50;");
+        assertTrue(response.contains("Rob") && !response.contains("Chris"));
+
+        //INDEX and FLUSH are only keywords where a command expects them, so they can still be names
+        assertTrue(sendCommandToServer("CREATE TABLE index (flush, mark);").contains("[OK]"));
+        assertTrue(sendCommandToServer("INSERT INTO index VALUES (1, 65);").contains("[OK]"));
+        assertTrue(sendCommandToServer("CREATE INDEX ON index (flush);").contains("[OK]"));
+        assertTrue(sendCommandToServer("SELECT flush FROM index WHERE flush == 1;").contains("1"));
+        assertTrue(sendCommandToServer("DROP INDEX ON index (flush);").contains("[OK]"));
+        assertTrue(sendCommandToServer("DROP TABLE index;").contains("[OK]"));
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        String randomName = generateRandomName();
+        DatabaseHandler session1 = server.openSession();
+        DatabaseHandler session2 = server.openSession();
+        session1.respondToCommand("CREATE DATABASE " + randomName + ";");
+        session1.respondToCommand("USE " + randomName + ";");
+        session1.respondToCommand("CREATE TABLE marks (name, mark);");
+
+        //the current database belongs to the session, not the server
+        assertTrue(session2.respondToCommand("SELECT * FROM marks;").contains("specify database"));
+        assertTrue(sendCommandToServer("SELECT * FROM marks;").contains("specify database"));
+        session2.respondToCommand("USE " + randomName + ";");
+
+        //sessions on separate threads all change the same shared table
+        List<Thread> clients = new ArrayList<Thread>();
+        for(int clientCnt = 0; clientCnt < 4; clientCnt++){
+            DatabaseHandler session = server.openSession();
+            session.respondToCommand("USE " + randomName + ";");
+            String clientName = "'client" + clientCnt + "'";
+            clients.add(new Thread(() -> {
+                for(int rowCnt = 0; rowCnt < 50; rowCnt++)
+                    session.respondToCommand("INSERT INTO marks VALUES (" + clientName + ", " + rowCnt + ");");
+            }));
+        }
+        for(Thread client : clients)
+            client.start();
+        for(Thread client : clients)
+            client.join();
+
+        String response = session2.respondToCommand("SELECT id FROM marks WHERE mark == 49;");
+        assertTrue(response.trim().split("\n").length == 6);
+        response = session1.respondToCommand("SELECT * FROM marks WHERE id == 200;");
+        assertTrue(response.contains("client"));
+        assertFalse(session1.respondToCommand("SELECT * FROM marks WHERE id == 201;").contains("client"));
+
+        //dropping the database from one session leaves the other without one
+        session2.respondToCommand("DROP DATABASE " + randomName + ";");
+        assertTrue(session1.respondToCommand("SELECT * FROM marks;").contains("[ERROR]"));
+    }
+
+    @Test
+    public void testTableLocks() throws Exception {
+        LockManager lockManager = new LockManager();
+        List<String> joinTables = Arrays.asList("marks", "coursework");
+
+        //shared locks do not block each other, from any thread
+        List<Lock> readLocks = lockManager.lockTables("db", joinTables, false);
+        Thread otherReader = new Thread(() ->
+            lockManager.unlockAll(lockManager.lockTables("db", List.of("coursework"), false)));
+        otherReader.start();
+        otherReader.join(1000);
+        assertFalse(otherReader.isAlive());
+
+        //a writer waits for readers of its table but not of any other table
+        assertFalse(lockManager.getTableLock("db", "marks").writeLock().tryLock());
+        assertTrue(lockManager.getTableLock("db", "other").writeLock().tryLock());
+        lockManager.getTableLock("db", "other").writeLock().unlock();
+        assertFalse(lockManager.catalogLock.writeLock().tryLock());
+        lockManager.unlockAll(readLocks);
+        assertTrue(lockManager.getTableLock("db", "marks").writeLock().tryLock());
+        lockManager.getTableLock("db", "marks").writeLock().unlock();
+
+        //a table joined with itself is only locked once
+        assertTrue(lockManager.lockTables("db", List.of("marks", "marks"), true).size() == 2);
+
+        //readers and writers of one table from several sessions leave it consistent
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        List<Thread> clients = new ArrayList<Thread>();
+        List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        for(int clientCnt = 0; clientCnt < 4; clientCnt++){
+            DatabaseHandler session = server.openSession();
+            session.respondToCommand("USE " + randomName + ";");
+            boolean isWriter = clientCnt % 2 == 0;
+            clients.add(new Thread(() -> {
+                for(int cmdCnt = 0; cmdCnt < 50; cmdCnt++){
+                    String response = isWriter
+                        ? session.respondToCommand("INSERT INTO marks VALUES ('Simon', " + cmdCnt + ");")
+                        : session.respondToCommand("SELECT * FROM marks WHERE mark >= 0;");
+                    if(!response.contains("[OK]"))
+                        failures.add(response);
+                }
+            }));
+        }
+        for(Thread client : clients)
+            client.start();
+        for(Thread client : clients)
+            client.join();
+        assertTrue(failures.isEmpty());
+        String response = sendCommandToServer("SELECT id FROM marks WHERE mark < 50;");
+        assertTrue(response.trim().split("\\n").length == 102);
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testSnapshotReads() throws Exception {
+        ArrListTable table = new ArrListTable("marks", new String[]{"name", "mark"});
+        for(int rowCnt = 0; rowCnt < 300; rowCnt++)
+            table.addRow(new String[]{"'Simon'", Integer.toString(rowCnt)}, false);
+        table.createIndex("mark", IndexType.SORTED);
+        ArrListTable snapshot = table.getSnapshot();
+        assertTrue(table.getSnapshot() == snapshot);
+
+        //changes to the table are not seen by a snapshot taken before them
+        applyChange(table, "UPDATE marks SET name = 'Rob' WHERE mark == 5;");
+        applyChange(table, "DELETE FROM marks WHERE mark < 3;");
+        table.addRow(new String[]{"'Chris'", "300"}, false);
+        assertTrue(snapshot.getValue(1, 6).equals("'Simon'"));
+        assertFalse(snapshot.isRowDeleted(1));
+        assertTrue(snapshot.getNumEntries() == 300);
+        assertTrue(table.getValue(1, 6).equals("'Rob'") && table.isRowDeleted(1));
+
+        //only the changed chunks were copied
+        TypedColumn tableNames = (TypedColumn) table.getColumn(1);
+        TypedColumn snapshotNames = (TypedColumn) snapshot.getColumn(1);
+        assertFalse(tableNames.valueChunks[0] == snapshotNames.valueChunks[0]);
+        assertTrue(tableNames.valueChunks[1] == snapshotNames.valueChunks[1]);
+
+        //snapshots build their own indexes from their own rows
+        RowPredicate condition = ConditionCompiler.compile(
+            SQLSimpGrammar.command.parseTokens(Tokeniser.extractTokens(
+                "SELECT * FROM marks WHERE mark < 3;"), 0).findByRuleName(RuleName.CONDITION), snapshot);
+        assertTrue(condition.findCandidates().cardinality() == 3);
+        table.publishSnapshot();
+        assertTrue(table.getSnapshot().getNumLiveEntries() == 298);
+        assertTrue(snapshot.getNumLiveEntries() == 300);
+
+        //SELECT reads the published version while a writer holds the table
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65);");
+        DatabaseHandler reader = server.openSession();
+        reader.respondToCommand("USE " + randomName + ";");
+        Lock writeLock = server.tableStore.lockManager.getTableLock(randomName, "marks").writeLock();
+        writeLock.lock();
+        try{
+            String response = assertTimeoutPreemptively(Duration.ofMillis(1000),
+                () -> reader.respondToCommand("SELECT * FROM marks WHERE mark > 50;"));
+            assertTrue(response.contains("Simon"));
+        }finally{
+            writeLock.unlock();
+        }
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testSelectorServer() throws Exception {
+        SelectorServer selectorServer = new SelectorServer(server, 0, 2);
+        Thread selectorThread = new Thread(selectorServer);
+        selectorThread.start();
+        String randomName = generateRandomName();
+        try(Socket socket = new Socket("localhost", selectorServer.getPort())){
+            socket.setSoTimeout(2000);
+            OutputStream output = socket.getOutputStream();
+            InputStream input = socket.getInputStream();
+
+            //requests may arrive split across reads, or several within one read
+            output.write(("CREATE DATABASE " + randomName + ";\nUSE ").getBytes());
+            output.flush();
+            Thread.sleep(50);
+            output.write((randomName + ";\r\nCREATE TABLE marks (name, mark);\n").getBytes());
+            output.flush();
+            for(int respCnt = 0; respCnt < 3; respCnt++)
+                assertTrue(readResponse(input).startsWith("[OK]"));
+
+            //a response larger than a pooled buffer is written out in full
+            StringBuilder longName = new StringBuilder("'");
+            for(int charCnt = 0; charCnt < 200; charCnt++)
+                longName.append("x");
+            longName.append("'");
+            StringBuilder inserts = new StringBuilder();
+            for(int rowCnt = 0; rowCnt < 200; rowCnt++)
+                inserts.append("INSERT INTO marks VALUES (" + longName + ", " + rowCnt + ");\n");
+            output.write(inserts.toString().getBytes());
+            output.flush();
+            for(int respCnt = 0; respCnt < 200; respCnt++)
+                assertTrue(readResponse(input).startsWith("[OK]"));
+            output.write("SELECT * FROM marks;\n".getBytes());
+            output.flush();
+            String response = readResponse(input);
+            assertTrue(response.length() > SelectorServer.BUFFER_SIZE);
+            assertTrue(response.contains("199"));
+
+            //each connection has its own session
+            try(Socket otherSocket = new Socket("localhost", selectorServer.getPort())){
+                otherSocket.setSoTimeout(2000);
+                otherSocket.getOutputStream().write("SELECT * FROM marks;\n".getBytes());
+                assertTrue(readResponse(otherSocket.getInputStream()).contains("specify database"));
+            }
+            output.write(("DROP DATABASE " + randomName + ";\n").getBytes());
+            assertTrue(readResponse(input).startsWith("[OK]"));
+        }
+        finally{
+            selectorServer.close();
+            selectorThread.join(2000);
+        }
+        assertFalse(selectorThread.isAlive());
+    }
+
+    @Test
+    public void testPipelinedBatch() throws Exception {
+        SelectorServer selectorServer = new SelectorServer(server, 0, 2);
+        Thread selectorThread = new Thread(selectorServer);
+        selectorThread.start();
+        String randomName = generateRandomName();
+        List<String> commands = new ArrayList<String>();
+        commands.add("CREATE DATABASE " + randomName + ";");
+        commands.add("USE " + randomName + ";");
+        commands.add("CREATE TABLE marks (name, mark);");
+        for(int rowCnt = 0; rowCnt < 900; rowCnt++)
+            commands.add("INSERT INTO marks VALUES ('Simon', " + rowCnt + ");");
+        commands.add("SELECT id FROM marks WHERE mark >= 898;");
+        commands.add("DROP DATABASE " + randomName + ";");
+
+        //every command is sent before any response is read, and responses come back in order
+        List<String> responses = new ArrayList<String>();
+        try(Socket socket = new Socket("localhost", selectorServer.getPort())){
+            socket.setSoTimeout(5000);
+            DBClient.sendBatch(socket, commands, responses::add);
+        }
+        finally{
+            selectorServer.close();
+            selectorThread.join(2000);
+        }
+        assertTrue(responses.size() == commands.size());
+        for(String response : responses)
+            assertTrue(response.startsWith("[OK]"));
+        String selectResponse = responses.get(responses.size() - 2);
+        assertTrue(selectResponse.contains("899") && selectResponse.contains("900"));
+        assertFalse(selectResponse.contains("898"));
+    }
+
+    @Test
+    public void testStreamedResults() throws Exception {
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+        for(int rowCnt = 0; rowCnt < 700; rowCnt++)
+            sendCommandToServer("INSERT INTO marks VALUES ('Simon', " + rowCnt + ");");
+        String expected = sendCommandToServer("SELECT * FROM marks;");
+
+        //a result of several batches comes out the same, with later pipelined commands answered after it
+        StringWriter streamed = new StringWriter();
+        server.databaseHandler.runCommand("SELECT * FROM marks;").writeText(streamed, 100);
+        assertTrue(streamed.toString().equals(expected));
+
+        SelectorServer selectorServer = new SelectorServer(server, 0, 2);
+        Thread selectorThread = new Thread(selectorServer);
+        selectorThread.start();
+        List<String> commands = List.of("USE " + randomName + ";", "SELECT * FROM marks;",
+            "SELECT mark FROM marks WHERE id == 3;", "SELECT * FROM marks;");
+        List<String> responses = new ArrayList<String>();
+        try(Socket socket = new Socket("localhost", selectorServer.getPort())){
+            socket.setSoTimeout(5000);
+            DBClient.sendBatch(socket, commands, responses::add);
+        }
+        finally{
+            selectorServer.close();
+            selectorThread.join(2000);
+        }
+        assertTrue(responses.size() == commands.size());
+        assertTrue(responses.get(1).trim().equals(expected.trim()));
+        assertTrue(responses.get(2).trim().equals("[OK]\nmark\n2"));
+        assertTrue(responses.get(3).trim().equals(expected.trim()));
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testBinaryProtocol() throws Exception {
+        //the same frames are served by the selector server and the thread per connection server
+        SelectorServer selectorServer = new SelectorServer(server, 0, 2);
+        Thread selectorThread = new Thread(selectorServer);
+        selectorThread.start();
+        try{
+            checkBinaryProtocol(selectorServer.getPort());
+        }
+        finally{
+            selectorServer.close();
+            selectorThread.join(2000);
+        }
+
+        try(ServerSocket serverSocket = new ServerSocket(0)){
+            Thread connectionThread = new Thread(() -> {
+                try{ server.handleSessionConnection(serverSocket.accept()); }
+                catch(IOException acceptExc){}
+            });
+            connectionThread.start();
+            checkBinaryProtocol(serverSocket.getLocalPort());
+            connectionThread.join(2000);
+        }
+    }
+
+    private void checkBinaryProtocol(int portNumber) throws IOException {
+        String randomName = generateRandomName();
+        try(Socket socket = new Socket("localhost", portNumber)){
+            socket.setSoTimeout(2000);
+            OutputStream output = socket.getOutputStream();
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            output.write(BinaryProtocol.PREAMBLE);
+            assertTrue(BinaryProtocol.isPreamble(input.readNBytes(BinaryProtocol.PREAMBLE.length)));
+
+            String[] commands = {"CREATE DATABASE " + randomName + ";", "USE " + randomName + ";",
+                "CREATE TABLE marks (name, mark, pass);", "INSERT INTO marks VALUES ('Simon', 65, TRUE);",
+                "INSERT INTO marks VALUES ('Rob', NULL, FALSE);", "INSERT INTO marks VALUES ('Chris', 20, FALSE);",
+                "SELECT * FROM marks WHERE pass == FALSE;", "SELECT * FROM missing;"};
+            for(String command : commands)
+                output.write(BinaryProtocol.encodeRequest(command));
+            output.flush();
+
+            BinaryProtocol.ResultSet resultSet = null;
+            for(int respCnt = 0; respCnt < commands.length - 1; respCnt++){
+                resultSet = BinaryProtocol.readResult(input);
+                assertTrue(resultSet.isSuccess());
+            }
+
+            //columns are typed, with quotes removed from strings and NULL values marked
+            assertTrue(resultSet.hasRows() && resultSet.getNumRows() == 2 && resultSet.getNumColumns() == 4);
+            assertTrue(resultSet.getColumnName(1).equals("name"));
+            assertTrue(resultSet.getColumnType(0) == DataType.INTEGER);
+            assertTrue(resultSet.getColumnType(2) == DataType.INTEGER);
+            assertTrue(resultSet.getValue(0, 1).equals(3L));
+            assertTrue(resultSet.getValue(1, 0).equals("Rob"));
+            assertTrue(resultSet.getValue(2, 0) == null);
+            assertTrue(resultSet.getValue(2, 1).equals(20L));
+
+            //errors carry a status code and their message
+            resultSet = BinaryProtocol.readResult(input);
+            assertFalse(resultSet.isSuccess() || resultSet.hasRows());
+            assertTrue(resultSet.getMessage().contains("Table does not exist"));
+
+            output.write(BinaryProtocol.encodeRequest("DROP DATABASE " + randomName + ";"));
+            assertTrue(BinaryProtocol.readResult(input).isSuccess());
+        }
+    }
+
+    //reads up to and including the end of transmission line
+    private static String readResponse(InputStream input) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        int nextByte;
+        while((nextByte = input.read()) != 4){
+            if(nextByte < 0)
+                fail("Connection closed before end of response");
+            response.write(nextByte);
+        }
+        input.read();
+        return response.toString();
+    }
+
+    @Test
+    public void testTypedCommands(){
+        SQLCommand command = Parser.parseCommand(Tokeniser.extractTokens(
+                "SELECT name, mark FROM Marks WHERE (pass == TRUE) AND id > 2;"));
+        assertTrue(command instanceof SQLCommand.SelectCommand);
+        SQLCommand.SelectCommand select = (SQLCommand.SelectCommand) command;
+        assertTrue(select.getTableName().equals("marks") && select.isReadOnly());
+        assertTrue(select.columnNames.equals(List.of("name", "mark")));
+        assertTrue(select.attributeNames.equals(List.of("name", "mark", "pass", "id")));
+        assertTrue(select.condition.nodeRule.ruleName == RuleName.CONDITION);
+
+        command = Parser.parseCommand(Tokeniser.extractTokens("UPDATE marks SET mark = 38, pass = FALSE WHERE id == 1;"));
+        SQLCommand.UpdateCommand update = (SQLCommand.UpdateCommand) command;
+        assertTrue(update.columnNames.equals(List.of("mark", "pass")));
+        assertTrue(update.values.equals(List.of("38", "FALSE")));
+        assertFalse(update.isReadOnly() || update.changesCatalog());
+
+        command = Parser.parseCommand(Tokeniser.extractTokens("INSERT INTO marks VALUES ('Simon', -2.5, NULL);"));
+        assertTrue(((SQLCommand.InsertCommand) command).values.equals(List.of("'Simon'", "-2.5", "NULL")));
+        command = Parser.parseCommand(Tokeniser.extractTokens("CREATE SORTED INDEX ON marks (mark);"));
+        assertTrue(((SQLCommand.CreateIndexCommand) command).indexType == IndexType.SORTED);
+        command = Parser.parseCommand(Tokeniser.extractTokens("JOIN coursework AND marks ON submission AND id;"));
+        assertTrue(command.tableNames.equals(List.of("coursework", "marks")));
+        assertTrue(((SQLCommand.JoinCommand) command).secondAttribute.equals("id"));
+        command = Parser.parseCommand(Tokeniser.extractTokens("CREATE TABLE marks;"));
+        assertTrue(command.changesCatalog() && ((SQLCommand.CreateTableCommand) command).columnNames == null);
+        assertFalse(Parser.parseCommand(Tokeniser.extractTokens("CREATE TABLE marks (select);"))
+                .checkNoReservedWordsUsed());
+        assertTrue(Parser.parseCommand(Tokeniser.extractTokens("SELECT * FROM;")) == null);
+
+        //only FLUSH itself gives a flush, a rule without a command gives none
+        assertTrue(Parser.parseCommand(Tokeniser.extractTokens("FLUSH;")) instanceof SQLCommand.FlushCommand);
+        Node unmappedNode = new Node(null, false, SQLSimpGrammar.attrList, null);
+        assertTrue(SQLCommand.fromTypeNode(unmappedNode) == null);
+    }
+
+    @Test
+    public void testPlanCache(){
+        String randomName = generateRandomName();
+        DatabaseHandler session = server.openSession();
+        session.respondToCommand("CREATE DATABASE " + randomName + ";");
+        session.respondToCommand("USE " + randomName + ";");
+        session.respondToCommand("CREATE TABLE marks (name, mark);");
+        long startMisses = session.getPlanCacheMisses();
+
+        //commands differing only in literals and spacing share a plan
+        session.respondToCommand("INSERT INTO marks VALUES ('Simon', 65);");
+        session.respondToCommand("INSERT INTO marks VALUES ( 'Rob' , -2.5 );");
+        session.respondToCommand("INSERT  INTO marks VALUES ('Chris', 20);");
+        assertTrue(session.getPlanCacheMisses() == startMisses + 1 && session.getPlanCacheHits() == 2);
+        String response = session.respondToCommand("SELECT name FROM marks WHERE mark > 0;");
+        assertTrue(response.contains("Simon") && response.contains("Chris") && !response.contains("Rob"));
+        response = session.respondToCommand("SELECT name FROM marks WHERE mark > 30;");
+        assertTrue(response.contains("Simon") && !response.contains("Chris"));
+        assertTrue(session.getPlanCacheHits() == 3);
+
+        //a literal used as a name is never bound, nor is one the grammar would not take
+        session.respondToCommand("SELECT 1 FROM marks;");
+        session.respondToCommand("SELECT 2 FROM marks;");
+        assertTrue(session.getPlanCacheHits() == 3);
+        response = session.respondToCommand("INSERT INTO marks VALUES ('a|b', 5);");
+        assertTrue(response.startsWith("[ERROR]") && session.getPlanCacheHits() == 3);
+
+        session.respondToCommand("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testPreparedCommands(){
+        String randomName = generateRandomName();
+        DatabaseHandler session = server.openSession();
+        session.respondToCommand("CREATE DATABASE " + randomName + ";");
+        session.respondToCommand("USE " + randomName + ";");
+        session.respondToCommand("CREATE TABLE marks (name, mark, pass);");
+
+        assertTrue(session.respondToCommand("PREPARE add AS INSERT INTO marks VALUES (?, ?, FALSE);")
+                .startsWith("[OK]"));
+        session.respondToCommand("EXECUTE add USING ('Simon', 65);");
+        session.respondToCommand("EXECUTE add USING ('Rob', 20);");
+        session.respondToCommand("execute ADD using ('Chris', 45);");
+        session.respondToCommand("PREPARE pass AS UPDATE marks SET pass = TRUE WHERE mark > ?;");
+        session.respondToCommand("EXECUTE pass USING (40);");
+
+        //the compiled condition is reused with new values, and compiled again when its column moves
+        session.respondToCommand("PREPARE find AS SELECT name FROM marks WHERE pass == ? AND mark < ?;");
+        String response = session.respondToCommand("EXECUTE find USING (TRUE, 60);");
+        assertTrue(response.contains("Chris") && !response.contains("Simon") && !response.contains("Rob"));
+        response = session.respondToCommand("EXECUTE find USING (FALSE, 60);");
+        assertTrue(response.contains("Rob") && !response.contains("Chris"));
+        session.respondToCommand("ALTER TABLE marks DROP name;");
+        session.respondToCommand("ALTER TABLE marks ADD name;");
+        response = session.respondToCommand("EXECUTE find USING (TRUE, 70);");
+        assertTrue(response.equals("[OK]\nname\n\n\n"));
+
+        assertTrue(session.respondToCommand("EXECUTE find USING (TRUE);").startsWith("[ERROR]"));
+        assertTrue(session.respondToCommand("EXECUTE missing;").startsWith("[ERROR]"));
+        assertTrue(session.respondToCommand("SELECT * FROM marks WHERE mark > ?;").startsWith("[ERROR]"));
+        assertTrue(server.openSession().respondToCommand("EXECUTE find USING (TRUE, 70);").startsWith("[ERROR]"));
+
+        session.respondToCommand("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testMultiRowInsert(){
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark);");
+
+        //far more than 1000 tokens, which only an INSERT may use
+        StringBuilder insert = new StringBuilder("INSERT INTO marks VALUES ('Simon', 65)");
+        for(int rowCnt = 2; rowCnt <= 400; rowCnt++)
+            insert.append(", ('Student").append(rowCnt).append("', ").append(rowCnt % 100).append(")");
+        assertTrue(sendCommandToServer(insert + ";").startsWith("[OK]"));
+        String response = sendCommandToServer("SELECT * FROM marks WHERE id == 400;");
+        assertTrue(response.contains("400\tStudent400\t0"));
+
+        //one bad row stops the whole batch
+        response = sendCommandToServer("INSERT INTO marks VALUES ('Rob', 20), ('Chris');");
+        assertTrue(response.startsWith("[ERROR]"));
+        assertTrue(sendCommandToServer("SELECT * FROM marks WHERE name == 'Rob';").equals("[OK]\nid\tname\tmark\n"));
+        insert.setLength(0);
+        insert.append("SELECT * FROM marks WHERE id == 1").append(" OR id == 1".repeat(300)).append(";");
+        assertTrue(sendCommandToServer(insert.toString()).contains("Command length exceeds limit"));
+
+        //the batch is logged as one record, which is replayed into a new server
+        server = new DBServer();
+        sendCommandToServer("USE " + randomName + ";");
+        response = sendCommandToServer("SELECT name FROM marks WHERE mark == 99;");
+        assertTrue(response.split("\n").length == 6 && response.contains("Student399"));
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testLoadData() throws IOException {
+        String randomName = generateRandomName();
+        sendCommandToServer("CREATE DATABASE " + randomName + ";");
+        sendCommandToServer("USE " + randomName + ";");
+        sendCommandToServer("CREATE TABLE marks (name, mark, pass);");
+        sendCommandToServer("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+
+        //large enough to be parsed as several chunks
+        StringBuilder dataText = new StringBuilder("Rob\t20\tFALSE\r\n'Chris'\t\t\n\n");
+        for(int rowCnt = 4; rowCnt <= 900; rowCnt++)
+            dataText.append("Student ").append("x".repeat(200)).append(rowCnt).append('\t').append(rowCnt % 100)
+                    .append("\tTRUE\n");
+        //data files are only read from within the databases folder
+        File dataFile = Paths.get("databases", randomName, "marks.tsv").toFile();
+        Files.writeString(dataFile.toPath(), dataText);
+        String loadCommand = "LOAD DATA '" + randomName + "/marks.tsv' INTO TABLE marks;";
+        String response = sendCommandToServer(loadCommand);
+        assertTrue(response.startsWith("[OK]"));
+        response = sendCommandToServer("SELECT * FROM marks WHERE mark < 30;");
+        String[] rowValues = response.split("\n")[2].split("\t+");
+        assertTrue(String.join(",", rowValues).equals("2,Rob,20,FALSE") && !response.contains("Chris"));
+        response = sendCommandToServer("SELECT * FROM marks WHERE id == 3;");
+        assertTrue(String.join(",", response.split("\n")[2].split("\t+")).equals("3,Chris"));
+        assertTrue(sendCommandToServer("SELECT name FROM marks WHERE id == 900;").contains("x900"));
+
+        //a bad row stops the whole load
+        Files.writeString(dataFile.toPath(), "Sion\t55\tTRUE\nBad\t10\n");
+        response = sendCommandToServer(loadCommand);
+        assertTrue(response.contains("line 2"));
+        assertFalse(sendCommandToServer("SELECT * FROM marks;").contains("Sion"));
+        response = sendCommandToServer("LOAD DATA 'missing.tsv' INTO TABLE marks;");
+        assertTrue(response.startsWith("[ERROR]"));
+
+        //a file with more rows than the table can take is rejected before it is parsed
+        Files.writeString(dataFile.toPath(), "Sion\t55\tTRUE\n".repeat(101));
+        assertTrue(sendCommandToServer(loadCommand).contains("limit exceeded"));
+        assertFalse(sendCommandToServer("SELECT * FROM marks;").contains("Sion"));
+
+        //paths leading outside the databases folder are refused
+        String outsidePath = new File("pom.xml").getAbsolutePath();
+        assertTrue(sendCommandToServer("LOAD DATA '" + outsidePath + "' INTO TABLE marks;").startsWith("[ERROR]"));
+        assertTrue(sendCommandToServer("LOAD DATA '../pom.xml' INTO TABLE marks;").startsWith("[ERROR]"));
+        assertTrue(sendCommandToServer("LOAD DATA '" + randomName + "/../../pom.xml' INTO TABLE marks;")
+                .startsWith("[ERROR]"));
+        assertFalse(sendCommandToServer("SELECT * FROM marks;").contains("project"));
+
+        //the loaded rows were saved with the table
+        server = new DBServer();
+        sendCommandToServer("USE " + randomName + ";");
+        assertTrue(sendCommandToServer("SELECT id FROM marks WHERE mark == 99;").split("\n").length == 11);
+        sendCommandToServer("DROP DATABASE " + randomName + ";");
+    }
+
+    @Test
+    public void testDeepConditions(){
+        //deeply nested and long compound conditions parse without retrying alternatives
+        String nested = "SELECT * FROM marks WHERE " + "(".repeat(300) + "mark > 5" + ")".repeat(300) + ";";
+        assertTimeoutPreemptively(Duration.ofMillis(1000), () -> assertTrue(parseTreeNuLeavesCorrect(nested, 609)));
+        String chained = "DELETE FROM marks WHERE " + "(mark > 5) AND ".repeat(300) + "id == 1;";
+        assertTimeoutPreemptively(Duration.ofMillis(1000), () -> assertTrue(parseTreeNuLeavesCorrect(chained, 1808)));
+        assertTrue(parseTreeNuLeavesCorrect("DELETE FROM marks WHERE (mark > 5) id == 1;", 0));
+    }
+
     public static boolean parseTreeNuLeavesCorrect(String command, int correctNuLeaves){
         //get the tokens and parse tree
         List<Token> tokensForTest = Tokeniser.extractTokens(command);